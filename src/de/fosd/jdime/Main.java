@@ -28,7 +28,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.security.Permission;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Map;
@@ -449,36 +448,13 @@ public final class Main {
         if (mode == DumpMode.FILE_DUMP || artifact.isDirectory()) {
             System.out.println(artifact.dump(mode));
         } else {
-            SecurityManager prevSecManager = System.getSecurityManager();
-            SecurityManager noExitManager = new SecurityManager() {
-                @Override
-                public void checkPermission(Permission perm) {
-                    // allow anything.
-                }
-
-                @Override
-                public void checkPermission(Permission perm, Object context) {
-                    // allow anything.
-                }
-
-                @Override
-                public void checkExit(int status) {
-                    super.checkExit(status);
-                    throw new SecurityException("Captured attempt to exit JVM.");
-                }
-            };
-
             ASTNodeArtifact astArtifact;
 
-            System.setSecurityManager(noExitManager);
-
             try {
                 astArtifact = new ASTNodeArtifact(artifact);
             } catch (RuntimeException e) {
                 LOG.log(Level.WARNING, e, () -> "Could not parse " + artifact + " to an ASTNodeArtifact.");
                 return;
-            } finally {
-                System.setSecurityManager(prevSecManager);
             }
 
             System.out.println(astArtifact.dump(mode));
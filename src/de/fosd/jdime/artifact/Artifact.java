@@ -24,10 +24,8 @@
 package de.fosd.jdime.artifact;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -88,9 +86,9 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
     protected HashMap<String, T> variants;
 
     /**
-     * Map to store matches.
+     * Stores the matches indexed by the <code>Revision</code> of the matching <code>Artifact</code>.
      */
-    protected Map<Revision, Matching<T>> matches;
+    private MatchingSlots<T> matches;
 
     /**
      * Whether the artifact has been already merged.
@@ -112,6 +110,33 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     private int number;
 
+    /**
+     * The cached result of {@link #getSubtreeSize()} or -1 if it has to be computed.
+     */
+    private int subtreeSize = -1;
+
+    /**
+     * The cached result of {@link #getMaxDepth()} or -1 if it has to be computed.
+     */
+    private int maxDepth = -1;
+
+    /**
+     * The cached result of {@link #hasChanges()} or <code>null</code> if it has to be computed.
+     */
+    private Boolean changes;
+
+    /**
+     * Bit <code>i</code> is set if the result of {@link #hasUnmatched(Revision)} for the <code>Revision</code> with
+     * slot <code>i</code> is cached in {@link #unmatched}.
+     */
+    private int unmatchedKnown;
+
+    /**
+     * Bit <code>i</code> is the cached result of {@link #hasUnmatched(Revision)} for the <code>Revision</code> with
+     * slot <code>i</code>.
+     */
+    private int unmatched;
+
     /**
      * Constructs a new <code>Artifact</code>.
      *
@@ -121,7 +146,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      *         the DFS index of the <code>Artifact</code> in the <code>Artifact</code> tree it is a part of
      */
     protected Artifact(Revision rev, int number) {
-        this.matches = new LinkedHashMap<>();
+        this.matches = new MatchingSlots<>();
         this.revision = rev;
         this.number = number;
     }
@@ -143,6 +168,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     public void addMatching(Matching<T> matching) {
         matches.put(matching.getMatchingArtifact(this).getRevision(), matching);
+        invalidateSubtreeMetrics();
     }
 
     /**
@@ -153,14 +179,17 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     @SuppressWarnings("unchecked")
     public void cloneMatches(T other) {
-        matches = new LinkedHashMap<>();
+        MatchingSlots<T> clones = new MatchingSlots<>();
 
-        for (Map.Entry<Revision, Matching<T>> entry : other.matches.entrySet()) {
-            Matching<T> m = entry.getValue().clone();
+        ((Artifact<T>) other).matches.forEach((rev, matching) -> {
+            Matching<T> m = matching.clone();
             m.updateMatching((T) this);
 
-            matches.put(entry.getKey(), m);
-        }
+            clones.put(rev, m);
+        });
+
+        matches = clones;
+        invalidateSubtreeMetrics();
     }
 
     public abstract T clone();
@@ -244,6 +273,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      * @return child <code>Artifact</code> at position i
      */
     public T getChild(int i) {
+        materializeChildren();
         assert (children != null);
         return children.get(i);
     }
@@ -258,6 +288,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
             return new ArtifactList<>();
         }
 
+        materializeChildren();
         return children;
     }
 
@@ -291,16 +322,17 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      * @return the <code>Matching</code>s
      */
     public Set<Matching<T>> getMatchings() {
-        return new HashSet<>(matches.values());
+        return new HashSet<>(matches.asMap().values());
     }
 
     /**
-     * Returns an unmodifiable view of the map used to store the <code>Matchings</code> of this <code>Artifact</code>.
+     * Returns an unmodifiable view of the <code>Matchings</code> of this <code>Artifact</code>. The view reflects later
+     * changes to the <code>Matchings</code>.
      *
      * @return the matchings
      */
     public Map<Revision, Matching<T>> getMatches() {
-        return Collections.unmodifiableMap(matches);
+        return matches.asMap();
     }
 
     /**
@@ -329,6 +361,11 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     private void renumber(Supplier<Integer> number) {
         this.number = number.get();
+        materializeChildren();
+
+        if (children == null) {
+            return;
+        }
 
         for (Artifact<T> child : children) {
             child.renumber(number);
@@ -345,6 +382,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
             return 0;
         }
 
+        materializeChildren();
         return children == null ? 0 : children.size();
     }
 
@@ -372,15 +410,42 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      * @return the maximum depth
      */
     public int getMaxDepth() {
-        return 1 + children.parallelStream().map(T::getMaxDepth).max(Integer::compare).orElse(0);
+
+        if (maxDepth < 0) {
+            int depth = 0;
+
+            for (int i = 0; i < getNumChildren(); i++) {
+                depth = Math.max(depth, getChild(i).getMaxDepth());
+            }
+
+            maxDepth = 1 + depth;
+        }
+
+        return maxDepth;
     }
 
     /**
-     * Returns the size of the subtree. The <code>Artifact</code> itself is not included.
+     * Returns the size of the subtree. The <code>Artifact</code> itself is not included. The size is cached until the
+     * subtree is modified.
      *
      * @return size of subtree
      */
     public int getSubtreeSize() {
+
+        if (subtreeSize < 0) {
+            subtreeSize = computeSubtreeSize();
+        }
+
+        return subtreeSize;
+    }
+
+    /**
+     * Computes the size of the subtree. The <code>Artifact</code> itself is not included.
+     *
+     * @return size of subtree
+     * @see #getSubtreeSize()
+     */
+    protected int computeSubtreeSize() {
         int size = getNumChildren();
 
         for (int i = 0; i < getNumChildren(); i++) {
@@ -390,6 +455,29 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
         return size;
     }
 
+    /**
+     * Discards the cached results of {@link #getSubtreeSize()}, {@link #getMaxDepth()}, {@link #hasChanges()} and
+     * {@link #hasChanges(Revision)} for this <code>Artifact</code> and its ancestors. Must be called whenever the children or matches of the
+     * <code>Artifact</code> change. Metrics are always computed for a whole subtree, so the walk up the tree stops at
+     * the first <code>Artifact</code> that has nothing cached.
+     */
+    protected void invalidateSubtreeMetrics() {
+
+        for (Artifact<T> artifact = this; artifact != null; artifact = artifact.getParent()) {
+
+            if (artifact.subtreeSize < 0 && artifact.maxDepth < 0 && artifact.changes == null
+                    && artifact.unmatchedKnown == 0) {
+                break;
+            }
+
+            artifact.subtreeSize = -1;
+            artifact.maxDepth = -1;
+            artifact.changes = null;
+            artifact.unmatchedKnown = 0;
+            artifact.unmatched = 0;
+        }
+    }
+
     /**
      * Returns the size of the tree. The <code>Artifact</code> itself is also included.
      *
@@ -400,42 +488,86 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
     }
 
     /**
-     * Returns whether the <code>Artifact</code> or its subtree has changes.
+     * Returns whether the <code>Artifact</code> or its subtree has changes, i.e., contains an <code>Artifact</code>
+     * that is not matched at all. Deletions can only be detected relative to another revision, see
+     * {@link #hasChanges(Revision)}.
      *
      * @return whether the <code>Artifact</code> or its subtree has changes
      */
     public boolean hasChanges() {
-        // FIXME: this method does currently not detect deletions as changes.
 
-        boolean hasChanges = !hasMatches();
+        if (changes == null) {
+            boolean hasChanges = !hasMatches();
 
-        for (int i = 0; !hasChanges && i < getNumChildren(); i++) {
-            hasChanges = getChild(i).hasChanges();
+            for (int i = 0; i < getNumChildren(); i++) {
+                hasChanges |= getChild(i).hasChanges(); // visit every child so that the whole subtree is cached
+            }
+
+            changes = hasChanges;
         }
 
-        return hasChanges;
+        return changes;
     }
 
     /**
      * Returns whether the <code>Artifact</code> or its subtree has changes compared to <code>Revision</code> revision.
+     * There are changes if the subtree contains an <code>Artifact</code> that is not matched in <code>revision</code>
+     * (an insertion) or if the subtree of the matching <code>Artifact</code> in <code>revision</code> contains an
+     * <code>Artifact</code> that is not matched in the revision of this one (a deletion).
      *
      * @param revision <Code>Revision</Code> to compare to
      * @return whether the <code>Artifact</code> or its subtree has changes compared to <code>Revision</code> revision
      */
     public boolean hasChanges(Revision revision) {
 
-        boolean hasChanges = !hasMatching(revision);
+        if (hasUnmatched(revision)) {
+            return true;
+        }
+
+        Matching<T> matching = getMatching(revision);
+        return matching != null && matching.getMatchingArtifact(this).hasUnmatched(getRevision());
+    }
 
-        if (!hasChanges) {
-            T baseArtifact = getMatching(revision).getMatchingArtifact(this);
-            hasChanges = baseArtifact.hasChanges();
+    /**
+     * Returns whether the <code>Artifact</code> or any <code>Artifact</code> in its subtree has no
+     * <code>Matching</code> for the given <code>Revision</code>. For <code>Revision</code>s having a slot (see
+     * {@link Revision#getSlot()}) the result is computed for the whole subtree in one bottom-up pass and cached in
+     * every <code>Artifact</code> of it until the subtree or its matches change.
+     *
+     * @param revision
+     *         the <code>Revision</code> to look for <code>Matching</code>s with
+     * @return whether there is an <code>Artifact</code> without a <code>Matching</code> for <code>revision</code>
+     */
+    protected final boolean hasUnmatched(Revision revision) {
+        int slot = revision.getSlot();
+
+        if (slot == Revision.NO_SLOT) {
+            boolean hasUnmatched = !hasMatching(revision);
+
+            for (int i = 0; !hasUnmatched && i < getNumChildren(); i++) {
+                hasUnmatched = getChild(i).hasUnmatched(revision);
+            }
+
+            return hasUnmatched;
         }
 
-        for (int i = 0; !hasChanges && i < getNumChildren(); i++) {
-            hasChanges = getChild(i).hasChanges(revision);
+        int bit = 1 << slot;
+
+        if ((unmatchedKnown & bit) == 0) {
+            boolean hasUnmatched = !hasMatching(revision);
+
+            for (int i = 0; i < getNumChildren(); i++) {
+                hasUnmatched |= getChild(i).hasUnmatched(revision); // visit every child so that the whole subtree is cached
+            }
+
+            if (hasUnmatched) {
+                unmatched |= bit;
+            }
+
+            unmatchedKnown |= bit;
         }
 
-        return hasChanges;
+        return (unmatched & bit) != 0;
     }
     /**
      * Returns true if the <code>Artifact</code> is a change.
@@ -477,7 +609,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
         if (LOG.isLoggable(Level.FINEST)) {
             LOG.finest(getId() + ".hasMatching(" + rev + ")");
             if (!matches.isEmpty()) {
-                for (Revision r : matches.keySet()) {
+                for (Revision r : matches.asMap().keySet()) {
                     LOG.finest("Matching found with: " + r + " (" + matches.get(r).getMatchingArtifact(this).getId() + ")");
                     LOG.finest("hasMatching(" + r + ") = " + hasMatching);
                 }
@@ -513,7 +645,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
         if (LOG.isLoggable(Level.FINEST)) {
             LOG.finest(getId() + ".hasMatching(" + other.getId() + ")");
             if (!matches.isEmpty()) {
-                for (Revision r : matches.keySet()) {
+                for (Revision r : matches.asMap().keySet()) {
                     LOG.finest("Matching found with: " + r + " (" + other.getId() + ")");
                     LOG.finest("hasMatching(" + r + ") = " + hasMatching);
                 }
@@ -607,6 +739,15 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     public abstract boolean matches(T other);
 
+    /**
+     * Returns a hash code of the information compared by {@link #matches(Artifact)}. <code>Artifact</code>s that
+     * match each other are expected to have equal label hashes unless they are special cases like the roots
+     * of two directory trees.
+     *
+     * @return the hash code of the label of this <code>Artifact</code>
+     */
+    public abstract int getLabelHash();
+
     /**
      * Performs a merge on the provided merge triple.
      * This method selects the <code>MergeStrategy</code> and triggers the merge.
@@ -618,6 +759,15 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     public abstract void merge(MergeOperation<T> operation, MergeContext context);
 
+    /**
+     * Called before the <code>children</code> of this <code>Artifact</code> are accessed. Implementations that create
+     * their children lazily override this method to do so on the first access. Lazily created children must have the
+     * <code>Revision</code> of this <code>Artifact</code>. The default implementation does nothing.
+     */
+    protected void materializeChildren() {
+
+    }
+
     /**
      * Sets the children of the <code>Artifact</code>.
      *
@@ -626,6 +776,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
      */
     public void setChildren(ArtifactList<T> children) {
         this.children = children;
+        invalidateSubtreeMetrics();
     }
 
     /**
@@ -739,8 +890,19 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
         setRevision(revision, false);
     }
 
+    /**
+     * Sets the <code>Revision</code> and optionally that of every <code>Artifact</code> in the subtree. The cached
+     * metrics (see {@link #invalidateSubtreeMetrics()}) of the changed <code>Artifact</code>s and their ancestors are
+     * discarded.
+     *
+     * @param revision
+     *            the <code>Revision</code> to set
+     * @param recursive
+     *            whether to also set the <code>Revision</code> of the subtree
+     */
     public void setRevision(Revision revision, boolean recursive) {
         this.revision = revision;
+        invalidateSubtreeMetrics();
 
         if (recursive && children != null) {
             for (T child : children) {
@@ -777,6 +939,7 @@ public abstract class Artifact<T extends Artifact<T>> implements Comparable<T>,
             return Optional.of(this);
         }
 
+        materializeChildren();
         return children.stream().map(c -> c.find(number)).filter(Optional::isPresent).findFirst().map(Optional::get);
     }
 }
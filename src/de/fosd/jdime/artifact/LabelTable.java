@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A symbol table interning the labels used to decide whether two <code>Artifact</code>s match. Every distinct label
+ * is mapped to a unique <code>int</code> so that {@link Artifact#matches(Artifact)} can be implemented as a single
+ * comparison of the ids stored in the artifacts instead of a comparison of (possibly expensive to build)
+ * <code>String</code>s.
+ * <p>
+ * A table lives for one run of JDime (see {@link #beginRun()}) and may be used concurrently. Every
+ * <code>MergeOperation</code> applied marks a run, nested operations share the table of the outermost one. Once the
+ * last running merge ends, the table is replaced by an empty one so that the labels do not accumulate over many runs
+ * in the same JVM. Artifacts therefore have to remember the table their id was interned in and intern their label again if it
+ * is no longer the {@link #current()} one.
+ */
+public final class LabelTable {
+
+    private static volatile LabelTable current = new LabelTable();
+    private static int runs = 0;
+
+    private final Map<String, Integer> ids;
+    private final AtomicInteger nextId;
+
+    /**
+     * Constructs a new empty <code>LabelTable</code>.
+     */
+    private LabelTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.nextId = new AtomicInteger();
+    }
+
+    /**
+     * Returns the <code>LabelTable</code> of the current run.
+     *
+     * @return the current <code>LabelTable</code>
+     */
+    public static LabelTable current() {
+        return current;
+    }
+
+    /**
+     * Marks the beginning of a run. Runs may overlap, they share the current table.
+     */
+    public static synchronized void beginRun() {
+        runs++;
+    }
+
+    /**
+     * Marks the end of a run. If no other run is active, the current table is replaced by an empty one.
+     */
+    public static synchronized void endRun() {
+
+        if (runs > 0 && --runs == 0) {
+            current = new LabelTable();
+        }
+    }
+
+    /**
+     * Returns the id of the given <code>label</code>. Equal labels are guaranteed to produce the same id, different
+     * labels are guaranteed to produce different ids.
+     *
+     * @param label
+     *         the label to intern
+     * @return the id of the label
+     */
+    public int intern(String label) {
+        return ids.computeIfAbsent(label, l -> nextId.getAndIncrement());
+    }
+
+    /**
+     * Returns the number of distinct labels interned so far.
+     *
+     * @return the number of labels in the table
+     */
+    public int size() {
+        return ids.size();
+    }
+}
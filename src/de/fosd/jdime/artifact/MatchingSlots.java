@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.matcher.matching.Matching;
+
+/**
+ * Stores the <code>Matching</code>s of an <code>Artifact</code> indexed by the <code>Revision</code> of the
+ * matching <code>Artifact</code>. <code>Revision</code>s having one of the fixed slots (see
+ * {@link Revision#getSlot()}) are looked up in a small array, a <code>HashMap</code> is only created for the
+ * <code>Revision</code>s of N-way merges. Neither is allocated before the first <code>Matching</code> is stored.
+ *
+ * @param <T>
+ *         the type of the <code>Artifact</code>s
+ */
+final class MatchingSlots<T extends Artifact<T>> {
+
+    /**
+     * The <code>Revision</code>s the <code>Matching</code>s in {@link #slots} were stored for.
+     */
+    private Revision[] revisions;
+
+    /**
+     * The <code>Matching</code>s for <code>Revision</code>s having a fixed slot, indexed by slot.
+     */
+    private Matching<T>[] slots;
+
+    /**
+     * The <code>Matching</code>s for <code>Revision</code>s without a fixed slot.
+     */
+    private Map<Revision, Matching<T>> others;
+
+    /**
+     * The view returned by {@link #asMap()} or <code>null</code> if it was not requested yet.
+     */
+    private Map<Revision, Matching<T>> view;
+
+    /**
+     * Stores the <code>Matching</code> for the given <code>Revision</code> replacing any previously stored one.
+     *
+     * @param rev
+     *         the <code>Revision</code>
+     * @param matching
+     *         the <code>Matching</code> to store
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void put(Revision rev, Matching<T> matching) {
+        int slot = rev == null ? Revision.NO_SLOT : rev.getSlot();
+
+        if (slot == Revision.NO_SLOT) {
+
+            if (others == null) {
+                others = new HashMap<>();
+            }
+
+            others.put(rev, matching);
+            return;
+        }
+
+        if (slots == null) {
+            revisions = new Revision[Revision.NUM_SLOTS];
+            slots = new Matching[Revision.NUM_SLOTS];
+        }
+
+        revisions[slot] = rev;
+        slots[slot] = matching;
+    }
+
+    /**
+     * Returns the <code>Matching</code> stored for the given <code>Revision</code> or <code>null</code> if there is
+     * none.
+     *
+     * @param rev
+     *         the <code>Revision</code>
+     * @return the <code>Matching</code> or <code>null</code>
+     */
+    Matching<T> get(Revision rev) {
+        int slot = rev == null ? Revision.NO_SLOT : rev.getSlot();
+
+        if (slot == Revision.NO_SLOT) {
+            return others == null ? null : others.get(rev);
+        }
+
+        return slots == null ? null : slots[slot];
+    }
+
+    /**
+     * Returns whether a <code>Matching</code> is stored for the given <code>Revision</code>.
+     *
+     * @param rev
+     *         the <code>Revision</code>
+     * @return true iff a <code>Matching</code> is stored for <code>rev</code>
+     */
+    boolean containsKey(Revision rev) {
+        return get(rev) != null;
+    }
+
+    /**
+     * Returns whether no <code>Matching</code>s are stored.
+     *
+     * @return true iff there are no <code>Matching</code>s
+     */
+    boolean isEmpty() {
+
+        if (slots != null) {
+            for (Matching<T> matching : slots) {
+                if (matching != null) {
+                    return false;
+                }
+            }
+        }
+
+        return others == null || others.isEmpty();
+    }
+
+    /**
+     * Performs the given action for every stored <code>Matching</code>. The <code>Revision</code>s having fixed slots
+     * come first in the order of their slots.
+     *
+     * @param action
+     *         the action to perform for every <code>Revision</code> and its <code>Matching</code>
+     */
+    void forEach(BiConsumer<Revision, Matching<T>> action) {
+
+        if (slots != null) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null) {
+                    action.accept(revisions[i], slots[i]);
+                }
+            }
+        }
+
+        if (others != null) {
+            others.forEach(action);
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the stored <code>Matching</code>s as a <code>Map</code>. The view reflects later
+     * changes to this <code>MatchingSlots</code>. The <code>Revision</code>s having fixed slots come first in the
+     * order of their slots.
+     *
+     * @return the <code>Matching</code>s indexed by <code>Revision</code>
+     */
+    Map<Revision, Matching<T>> asMap() {
+
+        if (view == null) {
+            view = new View();
+        }
+
+        return view;
+    }
+
+    /**
+     * The unmodifiable <code>Map</code> view returned by {@link #asMap()}.
+     */
+    private final class View extends AbstractMap<Revision, Matching<T>> {
+
+        private final Set<Entry<Revision, Matching<T>>> entries = new AbstractSet<Entry<Revision, Matching<T>>>() {
+
+            @Override
+            public Iterator<Entry<Revision, Matching<T>>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return View.this.size();
+            }
+        };
+
+        @Override
+        public Set<Entry<Revision, Matching<T>>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public Matching<T> get(Object key) {
+            return key == null || key instanceof Revision ? MatchingSlots.this.get((Revision) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return MatchingSlots.this.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            int size = others == null ? 0 : others.size();
+
+            if (slots != null) {
+                for (Matching<T> matching : slots) {
+                    if (matching != null) {
+                        size++;
+                    }
+                }
+            }
+
+            return size;
+        }
+    }
+
+    /**
+     * Iterates over the fixed slots and then the entries of {@link #others}.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<Revision, Matching<T>>> {
+
+        private int slot = nextSlot(0);
+        private Iterator<Map.Entry<Revision, Matching<T>>> rest;
+
+        @Override
+        public boolean hasNext() {
+
+            if (slot < Revision.NUM_SLOTS) {
+                return true;
+            }
+
+            if (rest == null) {
+                rest = others == null ? Collections.emptyIterator() : others.entrySet().iterator();
+            }
+
+            return rest.hasNext();
+        }
+
+        @Override
+        public Map.Entry<Revision, Matching<T>> next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (slot < Revision.NUM_SLOTS) {
+                Map.Entry<Revision, Matching<T>> entry = new AbstractMap.SimpleImmutableEntry<>(revisions[slot], slots[slot]);
+                slot = nextSlot(slot + 1);
+                return entry;
+            }
+
+            return new AbstractMap.SimpleImmutableEntry<>(rest.next());
+        }
+
+        /**
+         * Returns the first occupied slot starting at <code>from</code> or {@link Revision#NUM_SLOTS} if there is none.
+         *
+         * @param from
+         *         the slot to start at
+         * @return the next occupied slot
+         */
+        private int nextSlot(int from) {
+            int slot = from;
+
+            while (slots != null && slot < Revision.NUM_SLOTS && slots[slot] == null) {
+                slot++;
+            }
+
+            return slots == null ? Revision.NUM_SLOTS : slot;
+        }
+    }
+}
@@ -24,18 +24,23 @@
 package de.fosd.jdime.artifact.ast;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import beaver.Symbol;
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
 import de.fosd.jdime.artifact.Artifacts;
+import de.fosd.jdime.artifact.LabelTable;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
@@ -47,17 +52,23 @@ import de.fosd.jdime.operations.Operation;
 import de.fosd.jdime.stats.KeyEnums;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import org.jastadd.extendj.ast.ASTNode;
+import org.jastadd.extendj.ast.BodyDecl;
 import org.jastadd.extendj.ast.BytecodeParser;
 import org.jastadd.extendj.ast.BytecodeReader;
 import org.jastadd.extendj.ast.ClassDecl;
+import org.jastadd.extendj.ast.CompilationUnit;
 import org.jastadd.extendj.ast.ConstructorDecl;
+import org.jastadd.extendj.ast.FileClassSource;
 import org.jastadd.extendj.ast.ImportDecl;
 import org.jastadd.extendj.ast.InterfaceDecl;
 import org.jastadd.extendj.ast.JavaParser;
 import org.jastadd.extendj.ast.Literal;
 import org.jastadd.extendj.ast.MethodDecl;
+import org.jastadd.extendj.ast.Opt;
 import org.jastadd.extendj.ast.Program;
+import org.jastadd.extendj.ast.Stmt;
 import org.jastadd.extendj.ast.TryStmt;
+import org.jastadd.extendj.ast.TypeDecl;
 
 import static de.fosd.jdime.strdump.DumpMode.PLAINTEXT_TREE;
 
@@ -69,8 +80,6 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
 
     private static final Logger LOG = Logger.getLogger(ASTNodeArtifact.class.getCanonicalName());
 
-    private boolean initialized = false;
-
     /**
      * Initializes parser.
      *
@@ -85,6 +94,14 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         p.initBytecodeReader(bytecodeParser);
     }
 
+    /**
+     * ExtendJ keeps the state of its attribute evaluation and rewrites in a static field shared by all ASTs. Only the
+     * syntactic parsing of files (see {@link #parseCompilationUnit(FileArtifact)}) may therefore run concurrently.
+     * All other work on ASTs that may run concurrently with other uses of ExtendJ must hold this lock. This includes
+     * the strategies merging the ASTs of several files concurrently.
+     */
+    public static final Object EXTENDJ_LOCK = new Object();
+
     /**
      * Parses the content of the given <code>FileArtifact</code> to an AST. If the <code>artifact</code> is empty,
      * an empty <code>ASTNode</code> obtained via {@link ASTNode#ASTNode()} will be returned.
@@ -93,24 +110,65 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      *         the <code>FileArtifact</code> to parse
      * @return the root of the resulting AST
      */
-    private static ASTNode<?> parse(FileArtifact artifact) {
-        ASTNode<?> astNode;
+    static ASTNode<?> parse(FileArtifact artifact) {
 
         if (artifact.isEmpty()) {
-            astNode = new ASTNode<>();
-        } else {
-            Program p = initProgram();
+            return new ASTNode<>();
+        }
 
-            try {
-                p.addSourceFile(artifact.getPath());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+        CompilationUnit cu = parseCompilationUnit(artifact);
 
-            astNode = p;
+        synchronized (EXTENDJ_LOCK) {
+            return attach(artifact, cu);
         }
+    }
+
+    /**
+     * Syntactically parses the content of the given (non-empty) <code>FileArtifact</code> using the
+     * <code>ParserContext</code> of the current thread. No attributes are evaluated, this method may therefore be
+     * called concurrently.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> to parse
+     * @return the resulting <code>CompilationUnit</code> that is not yet part of a <code>Program</code>
+     * @see #attach(FileArtifact, CompilationUnit)
+     */
+    static CompilationUnit parseCompilationUnit(FileArtifact artifact) {
 
-        return astNode;
+        try {
+            return ParserContext.get().parse(artifact.getPath(), artifact.getFileContent());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds the <code>CompilationUnit</code> parsed from <code>artifact</code> to a new <code>Program</code> exactly
+     * as {@link Program#addSourceFile(String)} would, but without accessing the file again. The caller must hold the
+     * {@link #EXTENDJ_LOCK} if ExtendJ may be used concurrently.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> <code>cu</code> was parsed from
+     * @param cu
+     *         the <code>CompilationUnit</code> obtained from {@link #parseCompilationUnit(FileArtifact)}
+     * @return the new <code>Program</code> containing <code>cu</code>
+     */
+    static Program attach(FileArtifact artifact, CompilationUnit cu) {
+        Program p = initProgram();
+
+        p.initJavaParser((is, fileName) -> cu);
+
+        try {
+            FileClassSource source = ParserContext.source(artifact.getPath(), artifact.getFileContent());
+            CompilationUnit unit = source.parseCompilationUnit(p);
+
+            p.addClassPath(new SourcePackagePath(unit.packageName()));
+            p.addCompilationUnit(unit);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return p;
     }
 
     /**
@@ -119,7 +177,7 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      * @return program
      */
     private static Program initProgram() {
-        Program program = new Program();
+        Program program = new NoExitProgram();
         program.state().reset();
         initParser(program);
         return program;
@@ -140,7 +198,7 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         try {
             program = old.clone();
         } catch (CloneNotSupportedException e) {
-            program = new Program();
+            program = new NoExitProgram();
         }
 
         ASTNodeArtifact p = new ASTNodeArtifact(artifact.getRevision(), program);
@@ -154,6 +212,36 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      */
     private ASTNode<?> astnode = null;
 
+    /**
+     * The id of the label of the encapsulated <code>ASTNode</code> in {@link #labelTable}. Two
+     * <code>ASTNodeArtifact</code>s match iff their label ids are equal. Computed lazily by {@link #labelId()}.
+     */
+    private int labelId;
+
+    /**
+     * The <code>LabelTable</code> {@link #labelId} was interned in or <code>null</code> if it was not computed yet.
+     */
+    private volatile LabelTable labelTable;
+
+    /**
+     * The sizes of the trees rooted in the <code>ASTNode</code>s of the tree this artifact was created from, indexed
+     * by their DFS index in that tree, or <code>null</code> if they were not computed yet. The array is computed
+     * once for the root and shared by all artifacts created from its tree. Only used as long as the children of this
+     * <code>ASTNodeArtifact</code> have not been materialized.
+     */
+    private int[] treeSizes;
+
+    /**
+     * The index of the size of the tree rooted in {@link #astnode} in {@link #treeSizes}.
+     */
+    private int treeIndex;
+
+    /**
+     * The <code>ASTNodeArtifact</code> this one is a copy of (see {@link #clone()}) or <code>null</code>. As long as
+     * the children of the copy have not been created, the subtree of the original is shared and must not be modified.
+     */
+    private ASTNodeArtifact copyOf;
+
     /**
      * Constructs a new <code>ASTNodeArtifact</code> (tree) representing the AST of the code in <code>artifact</code>.
      * All members of the tree will be in the same <code>Revision</code> as <code>artifact</code>.
@@ -162,7 +250,7 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      *         the <code>FileArtifact</code> containing the code to be parsed
      */
     public ASTNodeArtifact(FileArtifact artifact) {
-        this(artifact.getRevision(), new AtomicInteger()::getAndIncrement, parse(artifact));
+        this(artifact.getRevision(), 0, parse(artifact), null, 0);
     }
 
     /**
@@ -173,54 +261,199 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      *         the <code>Revision</code> for this <code>ASTNodeArtifact</code>
      */
     private ASTNodeArtifact(Revision revision) {
-        this(revision, new AtomicInteger()::getAndIncrement, new ASTNode<>());
+        this(revision, 0, new ASTNode<>(), new int[] { 1 }, 0);
     }
 
     /**
      * Constructs a new <code>ASTNodeArtifact</code> encapsulating the given <code>ASTNode</code>. Children
-     * <code>ASTNodeArtifact</code>s for all the children of <code>astNode</code> will be added.
+     * <code>ASTNodeArtifact</code>s for the children of <code>astNode</code> will be created when they are first
+     * accessed.
      *
      * @param revision
      *         the <code>Revision</code> for this <code>ASTNodeArtifact</code>
      * @param astNode
      *         the <code>ASTNode</code> to encapsulate
      */
-    private ASTNodeArtifact(Revision revision, ASTNode<?> astNode) {
-        this(revision, new AtomicInteger()::getAndIncrement, astNode);
+    ASTNodeArtifact(Revision revision, ASTNode<?> astNode) {
+        this(revision, 0, astNode, null, 0);
     }
 
     /**
      * Constructs a new <code>ASTNodeArtifact</code> encapsulating the given <code>ASTNode</code>. Children
-     * <code>ASTNodeArtifact</code>s for all the children of <code>astNode</code> will be added.
+     * <code>ASTNodeArtifact</code>s for the children of <code>astNode</code> will be created when they are first
+     * accessed.
      *
      * @param revision
      *         the <code>Revision</code> for this <code>ASTNodeArtifact</code>
      * @param number
-     *         supplies first the number for this artifact and then in DFS order the number for its children
+     *         the DFS index of this artifact in the tree it is a part of
      * @param astNode
      *         the <code>ASTNode</code> to encapsulate
+     * @param treeSizes
+     *         the sizes of the trees in the tree <code>astNode</code> is a part of (see {@link #treeSizes}) or
+     *         <code>null</code> if they are not known yet
+     * @param treeIndex
+     *         the index of the size of the tree rooted in <code>astNode</code> in <code>treeSizes</code>
      */
-    private ASTNodeArtifact(Revision revision, Supplier<Integer> number, ASTNode<?> astNode) {
-        super(revision, number.get());
+    private ASTNodeArtifact(Revision revision, int number, ASTNode<?> astNode, int[] treeSizes, int treeIndex) {
+        super(revision, number);
 
         this.astnode = astNode;
-        initializeChildren(number);
+        this.treeSizes = treeSizes;
+        this.treeIndex = treeIndex;
+    }
+
+    /**
+     * Returns the id of the label of this <code>ASTNodeArtifact</code> in the current {@link LabelTable}. Copies
+     * (see {@link #clone()}) share the label of their original.
+     *
+     * @return the label id
+     */
+    private int labelId() {
+        LabelTable table = LabelTable.current();
+
+        if (labelTable != table) {
+            labelId = copyOf != null ? copyOf.labelId() : table.intern(label(astnode));
+            labelTable = table;
+        }
+
+        return labelId;
     }
 
-    private void initializeChildren(Supplier<Integer> number) {
+    /**
+     * Returns the label used to intern the given <code>ASTNode</code> in the {@link LabelTable}. Two labels are equal
+     * iff {@link ASTNode#matches(ASTNode)} would return <code>true</code> for the nodes.
+     *
+     * @param astNode
+     *         the <code>ASTNode</code> to compute the label for
+     * @return the label of the <code>ASTNode</code>
+     */
+    private static String label(ASTNode<?> astNode) {
+        return astNode.getClass().getName() + ':' + astNode.getMatchingRepresentation();
+    }
+
+    /**
+     * Creates the <code>ASTNodeArtifact</code>s for the children of the encapsulated <code>ASTNode</code> if that was
+     * not done yet. The children are numbered as if the whole tree had been numbered in DFS order when it was
+     * constructed, so numbers are stable regardless of the order in which subtrees are materialized.
+     */
+    @Override
+    protected void materializeChildren() {
+
+        if (children != null) {
+            return;
+        }
+
         ArtifactList<ASTNodeArtifact> children = new ArtifactList<>();
-        for (int i = 0; i < astnode.getNumChild(); i++) {
+
+        if (copyOf != null) {
+
+            for (ASTNodeArtifact child : copyOf.getChildren()) {
+                ASTNodeArtifact copy = child.clone();
+                copy.setRevision(getRevision());
+                copy.astnode.setParent(astnode);
+                copy.setParent(this);
+                copy.getSubtreeSize(); // cache the known size, the cached size of this artifact may depend on it
+                children.add(copy);
+            }
+
+            this.children = children;
+            return;
+        }
+
+        int[] treeSizes = treeSizes();
+        int number = getNumber() + 1;
+        int index = treeIndex + 1;
+
+        for (int i = 0; astnode != null && i < astnode.getNumChild(); i++) {
+            ASTNode<?> childNode = astnode.getChild(i);
+            int childTreeSize = treeSizes[index];
+
+            ASTNodeArtifact child = new ASTNodeArtifact(getRevision(), number, childNode, treeSizes, index);
+            child.setParent(this);
+            child.getSubtreeSize(); // cache the known size, the cached size of this artifact may depend on it
+            children.add(child);
+
+            number += childTreeSize;
+            index += childTreeSize;
+        }
+
+        this.children = children;
+    }
+
+    /**
+     * Returns the sizes of the trees in the tree {@link #astnode} is a part of (see {@link #treeSizes}). If they were
+     * not computed yet, this <code>ASTNodeArtifact</code> becomes the root of a new array of sizes.
+     *
+     * @return the sizes of the trees
+     */
+    private int[] treeSizes() {
+
+        if (treeSizes == null && astnode != null) {
+            List<Integer> sizes = new ArrayList<>();
+
+            treeSizes(astnode, sizes);
+            treeSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+            treeIndex = 0;
+        }
+
+        return treeSizes;
+    }
+
+    /**
+     * Adds the sizes of all trees in the tree rooted in the given <code>ASTNode</code> to <code>sizes</code> in DFS
+     * order. The sizes are computed in one post-order traversal.
+     *
+     * @param astNode
+     *         the root of the tree
+     * @param sizes
+     *         the <code>List</code> to add the sizes to
+     * @return the size of the tree rooted in <code>astNode</code>
+     */
+    private static int treeSizes(ASTNode<?> astNode, List<Integer> sizes) {
+        int index = sizes.size();
+        int size = 1;
+
+        sizes.add(size);
+
+        for (int i = 0; i < astNode.getNumChild(); i++) {
+            size += treeSizes(astNode.getChild(i), sizes);
+        }
+
+        sizes.set(index, size);
+
+        return size;
+    }
+
+    @Override
+    public int getNumChildren() {
+
+        if (children == null) {
+
+            if (copyOf != null) {
+                return copyOf.getNumChildren();
+            }
+
             if (astnode != null) {
-                ASTNodeArtifact child = new ASTNodeArtifact(getRevision(), number, astnode.getChild(i));
-                child.setParent(this);
-                children.add(child);
-                if (!child.initialized) {
-                    child.initializeChildren(number);
-                }
+                return astnode.getNumChild();
             }
         }
-        setChildren(children);
-        initialized = true;
+
+        return super.getNumChildren();
+    }
+
+    @Override
+    protected int computeSubtreeSize() {
+
+        if (children == null && copyOf != null) {
+            return copyOf.getSubtreeSize();
+        }
+
+        if (children == null && astnode != null) {
+            return treeSizes()[treeIndex] - 1;
+        }
+
+        return super.computeSubtreeSize();
     }
 
     /**
@@ -232,29 +465,21 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         return astnode;
     }
 
+    /**
+     * Returns a copy-on-write copy of this <code>ASTNodeArtifact</code>. Only this node is copied immediately, the
+     * children of the copy are copied from the ones of this <code>ASTNodeArtifact</code> when they are first accessed
+     * (e.g. because a child is added to the copy). If that never happens, {@link #rebuildAST()} copies only the
+     * <code>ASTNode</code>s of the subtree. This <code>ASTNodeArtifact</code> must not be modified while it is shared.
+     *
+     * @return the copy
+     */
     @Override
     public ASTNodeArtifact clone() {
         assert (exists());
 
-        ASTNodeArtifact clone = null;
-
-        try {
-            clone = new ASTNodeArtifact(getRevision(), astnode.clone());
-            clone.setRevision(getRevision());
-            clone.setNumber(getNumber());
-            clone.cloneMatches(this);
-
-            ArtifactList<ASTNodeArtifact> cloneChildren = new ArtifactList<>();
-            for (ASTNodeArtifact child : children) {
-                ASTNodeArtifact cloneChild = child.clone();
-                cloneChild.astnode.setParent(clone.astnode);
-                cloneChild.setParent(clone);
-                cloneChildren.add(cloneChild);
-            }
-            clone.setChildren(cloneChildren);
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
-        }
+        ASTNodeArtifact clone = new ASTNodeArtifact(getRevision(), getNumber(), astnode.copy(), null, 0);
+        clone.cloneMatches(this);
+        clone.copyOf = this;
 
         assert (clone.exists());
 
@@ -268,8 +493,10 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         assert (this.exists());
         assert (child.exists());
 
+        materializeChildren();
         child.setParent(this);
         children.add(child);
+        invalidateSubtreeMetrics();
 
         return child;
     }
@@ -280,11 +507,20 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
     }
 
     public void deleteChildren() {
+
+        if (children == null) {
+            children = new ArtifactList<>(); // there are no wrappers for the children yet
+            invalidateSubtreeMetrics();
+            return;
+        }
+
         while (hasChildren()) {
             ASTNodeArtifact child = getChild(0);
             child.astnode = null;
             children.remove(0);
         }
+
+        invalidateSubtreeMetrics();
     }
 
     @Override
@@ -314,6 +550,536 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         return prettyprint;
     }
 
+    /**
+     * Pretty-prints the merged tree rooted in this <code>ASTNodeArtifact</code> by reusing the source code of
+     * <code>original</code> for all parts of the tree that are unchanged copies (see {@link #clone()}) of it. Only the
+     * subtrees that differ from their original, e.g., because they were merged or contain a conflict, are
+     * pretty-printed and spliced into <code>source</code> in place of the code of their original. Formatting and
+     * comments of the unchanged parts are retained. If the positions of the original nodes do not allow splicing,
+     * the whole tree is pretty-printed as by {@link #prettyPrint()}.
+     * <p>
+     * If <code>original</code> is not the root of its tree (e.g., because only a single declaration was merged), only
+     * the code replacing the source code of <code>original</code> is returned.
+     *
+     * @param original
+     *         the node of the tree this tree was merged from whose source code is to be reused
+     * @param source
+     *         the source code <code>original</code> was parsed from
+     * @return the pretty-printed source code
+     */
+    public String prettyPrintSpliced(ASTNodeArtifact original, String source) {
+        assert (astnode != null);
+        assert (isRoot());
+
+        ASTNode<?> parent = original.isRoot() ? null : original.astnode.getParent();
+        int index = parent == null ? -1 : parent.getIndexOfChild(original.astnode);
+
+        if (index < 0) {
+            return splice(original, source);
+        }
+
+        // names are resolved using the ancestors of the ASTNodes, this tree temporarily takes the place of original
+        ASTNode<?> mergedParent = astnode.getParent();
+        parent.setChild(astnode, index);
+
+        try {
+            return splice(original, source);
+        } finally {
+            parent.setChild(original.astnode, index);
+            astnode.setParent(mergedParent);
+        }
+    }
+
+    /**
+     * Implements {@link #prettyPrintSpliced(ASTNodeArtifact, String)}.
+     *
+     * @param original
+     *         the node of the tree this tree was merged from whose source code is to be reused
+     * @param source
+     *         the source code <code>original</code> was parsed from
+     * @return the pretty-printed source code
+     */
+    private String splice(ASTNodeArtifact original, String source) {
+        List<Splice> splices = new ArrayList<>();
+        SourcePositions positions = new SourcePositions(source);
+        int from = 0;
+        int to = source.length();
+
+        if (!original.isRoot()) {
+
+            if (!hasSourceRange(original.astnode, positions)) {
+                return prettyPrint();
+            }
+
+            from = positions.offset(original.astnode.getStart());
+            to = positions.offset(original.astnode.getEnd()) + 1;
+        }
+
+        if (!spliceChildren(this, original, positions, splices)) {
+            LOG.fine(() -> "Can not splice the merge result into the source code of " + original.getId());
+            return prettyPrint();
+        }
+
+        try {
+            rebuildAST();
+            astnode.flushCaches();
+            astnode.flushTreeCache();
+        } catch (Exception e) {
+            LOG.severe("Exception caught during prettyPrintSpliced(): " + e);
+            LOG.log(Level.SEVERE, e.getMessage(), e);
+        }
+
+        StringBuilder result = new StringBuilder(source.length());
+        int offset = from;
+
+        for (Splice splice : splices) {
+
+            if (splice.start < offset || splice.end > to) {
+                LOG.warning(() -> "Overlapping splices in the source code of " + original.getId());
+                return prettyPrint();
+            }
+
+            result.append(source, offset, splice.start);
+            result.append(splice.prefix);
+
+            if (splice.merged != null) {
+                String code = splice.merged.astnode.prettyPrint();
+                String lastLine = code.substring(code.lastIndexOf('\n') + 1);
+
+                // conflict markers and preprocessor comments have to be on lines of their own
+                if (code.startsWith("<<<<<<<") || code.startsWith("// #ifdef")) {
+                    int length = result.length();
+
+                    while (length > 0 && (result.charAt(length - 1) == ' ' || result.charAt(length - 1) == '\t')) {
+                        length--;
+                    }
+
+                    result.setLength(length);
+
+                    if (length > 0 && result.charAt(length - 1) != '\n' && result.charAt(length - 1) != '\r') {
+                        result.append(positions.lineSeparator());
+                    }
+                }
+
+                result.append(code);
+
+                if (lastLine.startsWith(">>>>>>>") || lastLine.startsWith("// #endif")) {
+                    String following = splice.suffix.isEmpty() ? source.substring(splice.end) : splice.suffix;
+
+                    if (!following.startsWith("\n") && !following.startsWith("\r")) {
+                        result.append(positions.lineSeparator());
+                    }
+                }
+            }
+
+            result.append(splice.suffix);
+            offset = splice.end;
+        }
+
+        result.append(source, offset, to);
+
+        if (original.isRoot()) {
+            int length = result.length();
+
+            while (length > 0 && (result.charAt(length - 1) == '\n' || result.charAt(length - 1) == '\r')) {
+                length--;
+            }
+
+            result.setLength(length);
+        }
+
+        if (result.toString().trim().isEmpty()) {
+            throw new RuntimeException("Error: Could not pretty-print file!");
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Collects the <code>Splice</code>s necessary to turn the source code of <code>original</code> into that of
+     * <code>merged</code> in source code order. This is possible if <code>merged</code> shares the subtree of
+     * <code>original</code>, if their children are copies of each other in the same order that can be spliced in turn
+     * (or be replaced completely) or if both are lists of statements, declarations or imports. In the latter case the
+     * elements missing in <code>merged</code> are removed from the source code and the new ones are inserted next to
+     * the elements they follow.
+     *
+     * @param merged
+     *         the merged <code>ASTNodeArtifact</code>
+     * @param original
+     *         the <code>ASTNodeArtifact</code> <code>merged</code> corresponds to
+     * @param positions
+     *         the positions in the source code of <code>original</code>
+     * @param splices
+     *         the <code>List</code> to add the <code>Splice</code>s to
+     * @return whether <code>merged</code> can be produced by splicing the source code of <code>original</code>, if
+     *         not, <code>splices</code> is left unchanged
+     */
+    private static boolean spliceChildren(ASTNodeArtifact merged, ASTNodeArtifact original, SourcePositions positions,
+                                          List<Splice> splices) {
+
+        if (merged.children == null && merged.copyOf == original) {
+            return true;
+        }
+
+        int numSplices = splices.size();
+        boolean spliced;
+
+        if (isLineList(original, positions)) {
+            spliced = spliceLines(merged, original, positions, splices);
+        } else {
+            spliced = spliceAligned(merged, original, positions, splices);
+        }
+
+        if (!spliced) {
+            splices.subList(numSplices, splices.size()).clear();
+        }
+
+        return spliced;
+    }
+
+    /**
+     * Splices the children of <code>merged</code> if they are copies of the children of <code>original</code> in the
+     * same order.
+     *
+     * @see #spliceChildren(ASTNodeArtifact, ASTNodeArtifact, SourcePositions, List)
+     */
+    private static boolean spliceAligned(ASTNodeArtifact merged, ASTNodeArtifact original, SourcePositions positions,
+                                         List<Splice> splices) {
+
+        if (merged.getNumChildren() != original.getNumChildren()) {
+            return false;
+        }
+
+        for (int i = 0; i < merged.getNumChildren(); i++) {
+            if (!isCopy(merged.getChild(i), original.getChild(i))) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < merged.getNumChildren(); i++) {
+            if (!spliceChild(merged.getChild(i), original.getChild(i), positions, splices)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Splices the children of the list <code>merged</code> into the source code of the list <code>original</code>
+     * whose elements each start on their own line.
+     *
+     * @see #spliceChildren(ASTNodeArtifact, ASTNodeArtifact, SourcePositions, List)
+     */
+    private static boolean spliceLines(ASTNodeArtifact merged, ASTNodeArtifact original, SourcePositions positions,
+                                       List<Splice> splices) {
+        Map<ASTNodeArtifact, Integer> indices = new IdentityHashMap<>();
+
+        for (int i = 0; i < original.getNumChildren(); i++) {
+            indices.put(original.getChild(i), i);
+        }
+
+        int next = 0;
+
+        for (ASTNodeArtifact mergedChild : merged.getChildren()) {
+            Integer index = isCopy(mergedChild, mergedChild.copyOf) ? indices.get(mergedChild.copyOf) : null;
+
+            if (index == null || index < next) {
+                splices.add(insertion(mergedChild, original, next, positions));
+                continue;
+            }
+
+            for (; next < index; next++) {
+                splices.add(deletion(original.getChild(next).astnode, positions));
+            }
+
+            if (!spliceChild(mergedChild, original.getChild(index), positions, splices)) {
+                return false;
+            }
+
+            next = index + 1;
+        }
+
+        for (; next < original.getNumChildren(); next++) {
+            splices.add(deletion(original.getChild(next).astnode, positions));
+        }
+
+        return true;
+    }
+
+    /**
+     * Splices <code>merged</code> into the source code of <code>original</code> or replaces the source code of
+     * <code>original</code> with the pretty-printed <code>merged</code> if that is not possible.
+     *
+     * @see #spliceChildren(ASTNodeArtifact, ASTNodeArtifact, SourcePositions, List)
+     */
+    private static boolean spliceChild(ASTNodeArtifact merged, ASTNodeArtifact original, SourcePositions positions,
+                                       List<Splice> splices) {
+
+        if (spliceChildren(merged, original, positions, splices)) {
+            return true;
+        }
+
+        ASTNode<?> node = original.astnode;
+
+        if (!hasSourceRange(node, positions)) {
+            return false;
+        }
+
+        int start = positions.offset(node.getStart());
+        int end = positions.offset(node.getEnd()) + 1;
+
+        splices.add(new Splice(start, end, "", merged, ""));
+        return true;
+    }
+
+    /**
+     * Returns a <code>Splice</code> inserting <code>merged</code> after the element of <code>original</code> preceding
+     * the one with index <code>next</code> or before the first element if <code>next</code> is 0.
+     */
+    private static Splice insertion(ASTNodeArtifact merged, ASTNodeArtifact original, int next,
+                                    SourcePositions positions) {
+
+        if (next == 0) {
+            int start = positions.offset(original.getChild(0).astnode.getStart());
+            int lineStart = positions.lineStart(start);
+            String indent = positions.indent(start);
+
+            return new Splice(lineStart, lineStart, indent, merged, positions.lineSeparator());
+        }
+
+        ASTNode<?> previous = original.getChild(next - 1).astnode;
+        int end = positions.offset(previous.getEnd()) + 1;
+        String indent = positions.indent(positions.offset(previous.getStart()));
+
+        return new Splice(end, end, positions.lineSeparator() + indent, merged, "");
+    }
+
+    /**
+     * Returns a <code>Splice</code> removing the source code of the given <code>ASTNode</code>. If nothing else is on
+     * its lines, the lines are removed completely.
+     */
+    private static Splice deletion(ASTNode<?> node, SourcePositions positions) {
+        int start = positions.offset(node.getStart());
+        int end = positions.offset(node.getEnd()) + 1;
+
+        if (positions.indent(start).length() == start - positions.lineStart(start)) {
+            int nextLine = positions.nextLineStart(end);
+
+            if (nextLine >= 0) {
+                return new Splice(positions.lineStart(start), nextLine, "", null, "");
+            }
+        }
+
+        return new Splice(start, end, "", null, "");
+    }
+
+    /**
+     * Returns whether <code>merged</code> is an unmodified copy of <code>original</code> apart from its children.
+     */
+    private static boolean isCopy(ASTNodeArtifact merged, ASTNodeArtifact original) {
+        return original != null && merged.copyOf == original && !merged.isConflict() && !merged.isChoice();
+    }
+
+    /**
+     * Returns whether <code>artifact</code> represents a non-empty list of statements, declarations or imports with
+     * known source ranges.
+     */
+    private static boolean isLineList(ASTNodeArtifact artifact, SourcePositions positions) {
+
+        if (!(artifact.astnode instanceof org.jastadd.extendj.ast.List) || !artifact.hasChildren()) {
+            return false;
+        }
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            ASTNode<?> node = child.astnode;
+
+            if (!(node instanceof Stmt || node instanceof BodyDecl || node instanceof ImportDecl
+                    || node instanceof TypeDecl) || !hasSourceRange(node, positions)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the positions stored in <code>node</code> reliably describe its source code. This is not the
+     * case for <code>List</code>s and <code>Opt</code>s.
+     */
+    private static boolean hasSourceRange(ASTNode<?> node, SourcePositions positions) {
+
+        if (node instanceof org.jastadd.extendj.ast.List || node instanceof Opt) {
+            return false;
+        }
+
+        int start = positions.offset(node.getStart());
+        int end = positions.offset(node.getEnd());
+
+        return start >= 0 && end >= start;
+    }
+
+    /**
+     * The replacement of the source code between two offsets by the pretty-printed code of an
+     * <code>ASTNodeArtifact</code> surrounded by a prefix and a suffix.
+     */
+    private static final class Splice {
+
+        private final int start;
+        private final int end;
+        private final String prefix;
+        private final ASTNodeArtifact merged;
+        private final String suffix;
+
+        /**
+         * Constructs a new <code>Splice</code>.
+         *
+         * @param start
+         *         the offset of the first character to replace
+         * @param end
+         *         the offset after the last character to replace
+         * @param prefix
+         *         the text to insert before the code of <code>merged</code>
+         * @param merged
+         *         the <code>ASTNodeArtifact</code> whose pretty-printed code replaces the characters or
+         *         <code>null</code> if they are to be removed
+         * @param suffix
+         *         the text to insert after the code of <code>merged</code>
+         */
+        private Splice(int start, int end, String prefix, ASTNodeArtifact merged, String suffix) {
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+            this.merged = merged;
+            this.suffix = suffix;
+        }
+    }
+
+    /**
+     * Converts the positions the parser stores in the <code>ASTNode</code>s (line and column packed into an
+     * <code>int</code>, see {@link Symbol#getLine(int)}) into offsets in the source code.
+     */
+    private static final class SourcePositions {
+
+        private final String source;
+        private final List<Integer> lineStarts;
+
+        /**
+         * Constructs new <code>SourcePositions</code> for the given source code.
+         *
+         * @param source
+         *         the source code
+         */
+        private SourcePositions(String source) {
+            this.source = source;
+            this.lineStarts = new ArrayList<>();
+            this.lineStarts.add(0);
+
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+
+                if (c == '\r' && i + 1 < source.length() && source.charAt(i + 1) == '\n') {
+                    i++;
+                }
+
+                if (c == '\r' || c == '\n') {
+                    lineStarts.add(i + 1);
+                }
+            }
+        }
+
+        /**
+         * Returns the offset of the given position.
+         *
+         * @param position
+         *         the position as stored by the parser
+         * @return the offset or -1 if the position is unknown or invalid
+         */
+        private int offset(int position) {
+            int line = Symbol.getLine(position);
+            int column = Symbol.getColumn(position);
+
+            if (line < 1 || line > lineStarts.size() || column < 1) {
+                return -1;
+            }
+
+            int offset = lineStarts.get(line - 1) + column - 1;
+            return offset < source.length() ? offset : -1;
+        }
+
+        /**
+         * Returns the offset of the start of the line containing the given offset.
+         *
+         * @param offset
+         *         the offset
+         * @return the start of its line
+         */
+        private int lineStart(int offset) {
+            int start = offset;
+
+            while (start > 0 && source.charAt(start - 1) != '\n' && source.charAt(start - 1) != '\r') {
+                start--;
+            }
+
+            return start;
+        }
+
+        /**
+         * Returns the start of the line after the given offset if there is only whitespace between them.
+         *
+         * @param offset
+         *         the offset
+         * @return the start of the next line or -1
+         */
+        private int nextLineStart(int offset) {
+
+            for (int i = offset; i < source.length(); i++) {
+                char c = source.charAt(i);
+
+                if (c == '\n') {
+                    return i + 1;
+                }
+
+                if (c == '\r') {
+                    return i + 1 < source.length() && source.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+                }
+
+                if (!Character.isWhitespace(c)) {
+                    return -1;
+                }
+            }
+
+            return source.length();
+        }
+
+        /**
+         * Returns the whitespace preceding the given offset on its line.
+         *
+         * @param offset
+         *         the offset
+         * @return the indentation
+         */
+        private String indent(int offset) {
+            int start = lineStart(offset);
+            int end = start;
+
+            while (end < offset && (source.charAt(end) == ' ' || source.charAt(end) == '\t')) {
+                end++;
+            }
+
+            return source.substring(start, end);
+        }
+
+        /**
+         * Returns the line separator used in the source code.
+         *
+         * @return the line separator
+         */
+        private String lineSeparator() {
+            return source.contains("\r\n") ? "\r\n" : "\n";
+        }
+    }
+
     @Override
     public final boolean exists() {
         return astnode != null;
@@ -439,7 +1205,12 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
                     other.astnode.getMatchingRepresentation());
         });
 
-        return astnode.matches(other.astnode);
+        return labelId() == other.labelId();
+    }
+
+    @Override
+    public int getLabelHash() {
+        return labelId();
     }
 
     @Override
@@ -526,10 +1297,12 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
      * @param child
      *            child that should be removed
      */
-    private void removeChild(final ASTNodeArtifact child) {
+    void removeChild(final ASTNodeArtifact child) {
         LOG.finest(() -> String.format("[%s] Removing child %s", getId(), child.getId()));
         LOG.finest(() -> String.format("Children before removal: %s", getChildren()));
 
+        materializeChildren();
+
         Iterator<ASTNodeArtifact> it = children.iterator();
         ASTNodeArtifact elem;
         while (it.hasNext()) {
@@ -539,6 +1312,7 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
             }
         }
 
+        invalidateSubtreeMetrics();
         LOG.finest(() -> String.format("Children after removal: %s", getChildren()));
     }
 
@@ -585,6 +1359,26 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
             }
         }
 
+        if (isConflict() || isChoice()) {
+            // only the alternatives are printed, the children are shared with one of them and must stay untouched
+            return;
+        }
+
+        if (children == null && copyOf != null) {
+            // the copy was never modified, copying the ASTNodes of the original is enough
+            ASTNode<?> original = copyOf.astnode;
+            ASTNode<?>[] newChildren = new ASTNode<?>[original.getNumChildNoTransform()];
+
+            for (int i = 0; i < newChildren.length; i++) {
+                newChildren[i] = original.getChildNoTransform(i).treeCopyNoTransform();
+            }
+
+            astnode.jdimeChanges = copyOf.hasChanges();
+            astnode.jdimeId = getId();
+            astnode.setChildren(newChildren);
+            return;
+        }
+
         ASTNode<?>[] newChildren = new ASTNode<?>[getNumChildren()];
 
         for (int i = 0; i < getNumChildren(); i++) {
@@ -634,9 +1428,9 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
         ASTNodeArtifact conflict;
 
         if (left != null) {
-            conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, left.astnode.treeCopyNoTransform());
+            conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, left.astnode.copy());
         } else {
-            conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, right.astnode.treeCopyNoTransform());
+            conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, right.astnode.copy());
         }
 
         conflict.setConflict(left, right);
@@ -648,7 +1442,7 @@ public class ASTNodeArtifact extends Artifact<ASTNodeArtifact> {
     public ASTNodeArtifact createChoiceArtifact(String condition, ASTNodeArtifact artifact) {
         LOG.fine("Creating choice node");
 
-        ASTNodeArtifact choice = new ASTNodeArtifact(MergeScenario.CHOICE, artifact.astnode.treeCopyNoTransform());
+        ASTNodeArtifact choice = new ASTNodeArtifact(MergeScenario.CHOICE, artifact.astnode.copy());
         choice.setChoice(condition, artifact);
 
         return choice;
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.fosd.jdime.execption.ClassFileReadError;
+import org.jastadd.extendj.ast.BytecodeReader;
+import org.jastadd.extendj.ast.Program;
+
+/**
+ * A <code>Program</code> that keeps ExtendJ from terminating the JVM while it reads class files.
+ * <p>
+ * When ExtendJ loads the nested classes of a library class it exits the JVM if reading the class file of a nested
+ * class fails with an exception. All failures while reading class files are therefore turned into a
+ * {@link ClassFileReadError}, which ExtendJ does not catch. The <code>BytecodeReader</code> set using
+ * {@link #initBytecodeReader(BytecodeReader)} is wrapped to rethrow any exception as such an error. The class files
+ * of nested classes are parsed directly from the streams returned by {@link #getInputStream(String)}, these streams
+ * report I/O errors and reads beyond the end of the file in the same way.
+ */
+final class NoExitProgram extends Program {
+
+    @Override
+    public void initBytecodeReader(BytecodeReader reader) {
+        super.initBytecodeReader((is, fullName, program) -> {
+
+            try {
+                return reader.read(is, fullName, program);
+            } catch (Exception e) {
+                throw new ClassFileReadError("Could not read the class file of " + fullName + ".", e);
+            }
+        });
+    }
+
+    @Override
+    public InputStream getInputStream(String name) {
+        InputStream in = super.getInputStream(name);
+        return in == null ? null : new ClassFileInputStream(in, name);
+    }
+
+    /**
+     * An <code>InputStream</code> for a class file that throws a {@link ClassFileReadError} instead of an
+     * <code>IOException</code> and at the end of the file. ExtendJ reads class files through a
+     * <code>BufferedInputStream</code>, which only reads from this stream if more bytes are needed. Reaching the end
+     * of the file therefore means that the class file is truncated.
+     */
+    static final class ClassFileInputStream extends FilterInputStream {
+
+        private final String name;
+
+        /**
+         * Constructs a new <code>ClassFileInputStream</code>.
+         *
+         * @param in
+         *         the stream of the class file
+         * @param name
+         *         the name of the class
+         */
+        ClassFileInputStream(InputStream in, String name) {
+            super(in);
+            this.name = name;
+        }
+
+        @Override
+        public int read() {
+            int b;
+
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                throw error(e);
+            }
+
+            if (b < 0) {
+                throw error(new EOFException());
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+
+            if (len == 0) {
+                return 0;
+            }
+
+            int read;
+
+            try {
+                read = super.read(b, off, len);
+            } catch (IOException e) {
+                throw error(e);
+            }
+
+            if (read < 0) {
+                throw error(new EOFException());
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+
+            if (n <= 0) {
+                return 0;
+            }
+
+            // InputStream#skip may return 0 at the end of the file, ExtendJ would then skip forever
+            byte[] skipped = new byte[(int) Math.min(n, 8192)];
+            return read(skipped, 0, skipped.length);
+        }
+
+        @Override
+        public int available() {
+
+            try {
+                return super.available();
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        @Override
+        public void close() {
+
+            try {
+                super.close();
+            } catch (IOException e) {
+                throw error(e);
+            }
+        }
+
+        /**
+         * Returns a <code>ClassFileReadError</code> caused by the given <code>IOException</code>.
+         *
+         * @param cause
+         *         the <code>IOException</code>
+         * @return the <code>ClassFileReadError</code>
+         */
+        private ClassFileReadError error(IOException cause) {
+            return new ClassFileReadError("Could not read the class file of " + name + ".", cause);
+        }
+    }
+}
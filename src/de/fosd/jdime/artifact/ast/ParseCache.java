@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import org.jastadd.extendj.ast.ASTNode;
+import org.jastadd.extendj.ast.CompilationUnit;
+
+/**
+ * A cache of syntactically parsed <code>CompilationUnit</code>s keyed by the SHA-256 digest of the content of the
+ * parsed file. The cached <code>CompilationUnit</code>s are never handed out themselves and are not part of any
+ * <code>Program</code>. Every request attaches a copy (obtained using {@link ASTNode#treeCopyNoTransform()}) of the
+ * cached <code>CompilationUnit</code> to a fresh <code>Program</code> (see
+ * {@link ASTNodeArtifact#attach(FileArtifact, CompilationUnit)}). The returned trees therefore share no state, may
+ * be modified freely by merging and refer to the path of the requested file even if the same content was cached
+ * for a different path.
+ * <p>
+ * The size of the cache is measured in bytes of source code whose ASTs are cached. Once the capacity is exceeded,
+ * the least recently used entries are evicted. The memory used by the cached ASTs is a multiple of their size in
+ * source code. A capacity smaller than 1 disables the cache.
+ */
+public class ParseCache {
+
+    private static final Logger LOG = Logger.getLogger(ParseCache.class.getCanonicalName());
+
+    /**
+     * A cached <code>CompilationUnit</code> and the size of the source code it was parsed from.
+     */
+    private static final class Entry {
+
+        private final CompilationUnit cu;
+        private final long size;
+
+        private Entry(CompilationUnit cu, long size) {
+            this.cu = cu;
+            this.size = size;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private long capacity;
+    private long size;
+
+    /**
+     * Constructs a new (empty) <code>ParseCache</code> with the given capacity.
+     *
+     * @param capacity
+     *         the capacity in bytes of source code, values smaller than 1 disable the cache
+     */
+    public ParseCache(long capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Returns an <code>ASTNodeArtifact</code> tree representing the AST of the code in <code>artifact</code>. If a
+     * <code>CompilationUnit</code> for the same content is cached, a copy of it is used, otherwise the file is parsed
+     * and a copy of the resulting <code>CompilationUnit</code> is cached. This method may be called concurrently. Only
+     * the syntactic parsing of files runs in parallel, the rest is serialized on the
+     * {@link ASTNodeArtifact#EXTENDJ_LOCK}.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> containing the code to be parsed
+     * @param statistics
+     *         the <code>MergeScenarioStatistics</code> to count the cache hits and misses in, may be <code>null</code>
+     * @return the resulting <code>ASTNodeArtifact</code> tree
+     * @see ASTNodeArtifact#ASTNodeArtifact(FileArtifact)
+     */
+    public ASTNodeArtifact parse(FileArtifact artifact, MergeScenarioStatistics statistics) {
+
+        if (artifact.isEmpty()) {
+
+            synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
+                return rewritten(new ASTNodeArtifact(artifact));
+            }
+        }
+
+        String key = getCapacity() < 1 ? null : digest(artifact);
+        Entry entry = null;
+
+        if (key != null) {
+
+            synchronized (this) {
+                entry = entries.get(key);
+            }
+        }
+
+        CompilationUnit cu = null;
+
+        if (entry == null) {
+            cu = ASTNodeArtifact.parseCompilationUnit(artifact);
+        }
+
+        synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
+
+            if (key == null) {
+                return rewritten(new ASTNodeArtifact(artifact.getRevision(), ASTNodeArtifact.attach(artifact, cu)));
+            }
+
+            if (entry != null) {
+                LOG.finest(() -> "Parse cache hit for " + artifact);
+
+                if (statistics != null) {
+                    statistics.incrementParseCacheHits();
+                }
+            } else {
+                LOG.finest(() -> "Parse cache miss for " + artifact);
+
+                if (statistics != null) {
+                    statistics.incrementParseCacheMisses();
+                }
+
+                put(key, new Entry(cu.treeCopyNoTransform(), size(artifact)));
+            }
+
+            if (cu == null) {
+                cu = entry.cu.treeCopyNoTransform();
+            }
+
+            return rewritten(new ASTNodeArtifact(artifact.getRevision(), ASTNodeArtifact.attach(artifact, cu)));
+        }
+    }
+
+    /**
+     * Visits every node of the AST encapsulated by <code>root</code> once. The children of
+     * <code>ASTNodeArtifact</code>s are created lazily and ExtendJ rewrites nodes on their first access, which touches
+     * its global state. Computing the subtree size performs all those rewrites while the caller holds the
+     * {@link ASTNodeArtifact#EXTENDJ_LOCK} so that materializing the children later on does not.
+     *
+     * @param root
+     *         the root of the tree to rewrite
+     * @return <code>root</code>
+     */
+    private static ASTNodeArtifact rewritten(ASTNodeArtifact root) {
+        root.getSubtreeSize();
+        return root;
+    }
+
+    /**
+     * Adds the given <code>entry</code> to the cache and evicts the least recently used entries until the size of the
+     * cache does not exceed its capacity. Entries larger than the capacity are not cached.
+     *
+     * @param key
+     *         the digest of the source code
+     * @param entry
+     *         the <code>Entry</code> to add
+     */
+    private synchronized void put(String key, Entry entry) {
+
+        if (entry.size > capacity || entries.containsKey(key)) {
+            return;
+        }
+
+        entries.put(key, entry);
+        size += entry.size;
+        evict();
+    }
+
+    /**
+     * Evicts the least recently used entries until the size of the cache does not exceed its capacity.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns the digest of the content of the given <code>artifact</code>.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> whose content is to be digested
+     * @return the digest or <code>null</code> if the content could not be read
+     */
+    private static String digest(FileArtifact artifact) {
+
+        try {
+            return artifact.getContentDigest();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not read " + artifact + " to compute its digest.");
+            return null;
+        }
+    }
+
+    /**
+     * Returns the size of the content of the given <code>artifact</code>.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> whose content was parsed
+     * @return the size in bytes
+     */
+    private static long size(FileArtifact artifact) {
+
+        try {
+            return artifact.getFileContent().size();
+        } catch (IOException e) {
+            return artifact.getFile().length();
+        }
+    }
+
+    /**
+     * Returns the capacity of the cache.
+     *
+     * @return the capacity in bytes of source code
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the capacity of the cache. Entries are evicted if the cache currently exceeds the new capacity.
+     *
+     * @param capacity
+     *         the new capacity in bytes of source code, values smaller than 1 disable the cache
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Returns the number of cached ASTs.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all cached ASTs.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.fosd.jdime.artifact.file.FileContent;
+import org.jastadd.extendj.ast.CompilationUnit;
+import org.jastadd.extendj.ast.FileClassSource;
+import org.jastadd.extendj.ast.Program;
+import org.jastadd.extendj.ast.SourceFilePath;
+import org.jastadd.extendj.parser.JavaParser;
+
+/**
+ * A pre-initialized ExtendJ parser together with the <code>Program</code> hosting it. Every thread uses its own
+ * <code>ParserContext</code> which is reused for all files the thread parses. The host <code>Program</code> is only
+ * used to run the syntactic parser, the parsed <code>CompilationUnit</code>s are never added to it.
+ */
+final class ParserContext {
+
+    private static final ThreadLocal<ParserContext> CONTEXTS = ThreadLocal.withInitial(ParserContext::new);
+
+    private final Program host;
+
+    /**
+     * Constructs a new <code>ParserContext</code>.
+     */
+    private ParserContext() {
+        JavaParser parser = new JavaParser();
+
+        this.host = new NoExitProgram();
+        this.host.initJavaParser(parser::parse);
+    }
+
+    /**
+     * Returns the <code>ParserContext</code> of the current thread.
+     *
+     * @return the <code>ParserContext</code>
+     */
+    static ParserContext get() {
+        return CONTEXTS.get();
+    }
+
+    /**
+     * Syntactically parses the given <code>content</code> of the file at the given <code>path</code>. The file itself
+     * is not read again.
+     *
+     * @param path
+     *         the path of the file to parse
+     * @param content
+     *         the content of the file
+     * @return the resulting <code>CompilationUnit</code> that is not part of any <code>Program</code>
+     * @throws IOException
+     *         if the content can not be parsed
+     */
+    CompilationUnit parse(String path, FileContent content) throws IOException {
+        return source(path, content).parseCompilationUnit(host);
+    }
+
+    /**
+     * Returns a <code>FileClassSource</code> for the file at the given <code>path</code> that reads the given
+     * <code>content</code> instead of the file.
+     *
+     * @param path
+     *         the path of the file
+     * @param content
+     *         the content of the file
+     * @return the <code>FileClassSource</code>
+     */
+    static FileClassSource source(String path, FileContent content) {
+        return new FileClassSource(new SourceFilePath(path), path) {
+
+            @Override
+            public InputStream openInputStream() {
+                return content.newInputStream();
+            }
+        };
+    }
+}
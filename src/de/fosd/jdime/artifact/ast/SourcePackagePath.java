@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import org.jastadd.extendj.ast.PathPart;
+
+/**
+ * A <code>PathPart</code> declaring the package of a source file (and the packages enclosing it) to a
+ * <code>Program</code> without providing any sources. It stands in for the package registration
+ * {@link org.jastadd.extendj.ast.Program#addSourceFile(String)} performs for the files it reads from disk.
+ */
+final class SourcePackagePath extends PathPart {
+
+    private final String packageName;
+
+    /**
+     * Constructs a new <code>SourcePackagePath</code> declaring the given package.
+     *
+     * @param packageName
+     *         the name of the package, may be empty for the default package
+     */
+    SourcePackagePath(String packageName) {
+        super(true);
+        this.packageName = packageName;
+    }
+
+    @Override
+    public String getPath() {
+        return packageName;
+    }
+
+    @Override
+    public boolean hasPackage(String name) {
+        return !name.isEmpty() && (packageName.equals(name) || packageName.startsWith(name + '.'));
+    }
+}
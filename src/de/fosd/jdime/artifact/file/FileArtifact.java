@@ -26,11 +26,18 @@ package de.fosd.jdime.artifact.file;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,18 +46,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.activation.MimetypesFileTypeMap;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.Artifacts;
+import de.fosd.jdime.artifact.LabelTable;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.config.merge.MergeType;
+import de.fosd.jdime.config.merge.OutputSink;
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.execption.AbortException;
 import de.fosd.jdime.execption.NotYetImplementedException;
@@ -79,20 +88,9 @@ public class FileArtifact extends Artifact<FileArtifact> {
     private static final Logger LOG = Logger.getLogger(FileArtifact.class.getCanonicalName());
 
     /**
-     * The expected MIME content type for java source files.
+     * The file name extension of Java source code files.
      */
-    private static final String MIME_JAVA_SOURCE = "text/x-java";
-
-    /**
-     * Used for determining the content type of this <code>FileArtifact</code> if
-     * {@link Files#probeContentType(java.nio.file.Path)} fails.
-     */
-    private static final MimetypesFileTypeMap mimeMap;
-
-    static {
-        mimeMap = new MimetypesFileTypeMap();
-        mimeMap.addMimeTypes(MIME_JAVA_SOURCE + " java");
-    }
+    private static final String JAVA_EXTENSION = ".java";
 
     /**
      * A <code>Comparator</code> to compare <code>FileArtifact</code>s by their <code>File</code>s. It considers
@@ -109,11 +107,46 @@ public class FileArtifact extends Artifact<FileArtifact> {
         }
     };
 
+    /**
+     * Orders the entries of a directory in the same way as {@link #comp} using the attributes read while scanning
+     * the directory instead of querying the file system again for every comparison.
+     */
+    private static final Comparator<Map.Entry<Path, BasicFileAttributes>> SCAN_ORDER =
+            Comparator.<Map.Entry<Path, BasicFileAttributes>, Boolean>comparing(e -> !e.getValue().isDirectory())
+                      .thenComparing(e -> e.getKey().getFileName().toString());
+
     /**
      * File in which the artifact is stored.
      */
     private File file;
 
+    /**
+     * The attributes of {@link #file} read while scanning its parent directory or <code>null</code> if they are not
+     * known. They are discarded when this <code>FileArtifact</code> removes or writes its file.
+     */
+    private BasicFileAttributes attributes;
+
+    /**
+     * The id of the name of {@link #file} in {@link #labelTable}. Computed lazily by {@link #labelId()}.
+     */
+    private int labelId;
+
+    /**
+     * The <code>LabelTable</code> {@link #labelId} was interned in or <code>null</code> if it was not computed yet.
+     */
+    private volatile LabelTable labelTable;
+
+    /**
+     * The cached result of {@link #getContentDigest()}.
+     */
+    private String digest;
+
+    /**
+     * The cached result of {@link #getFileContent()}. Softly referenced so that the contents of the (possibly many)
+     * files of a directory merge do not have to stay in memory until the merge is finished.
+     */
+    private volatile SoftReference<FileContent> content;
+
     /**
      * Constructs a new <code>FileArtifact</code> representing the given <code>File</code>.
      * If <code>file</code> is a directory then <code>FileArtifact</code>s representing its contents will be added
@@ -154,34 +187,7 @@ public class FileArtifact extends Artifact<FileArtifact> {
      *         <code>file</code> cannot be created.
      */
     public FileArtifact(Revision revision, File file, boolean create, boolean createFile) throws IOException {
-        this(revision, new AtomicInteger(0)::getAndIncrement, file, create, createFile);
-    }
-
-    /**
-     * Constructs a new <code>FileArtifact</code> representing the given <code>File</code>.
-     * If <code>file</code> is a directory then <code>FileArtifact</code>s representing its contents will be added
-     * as children to this <code>FileArtifact</code>.
-     *
-     * @param revision
-     *         the <code>Revision</code> the artifact belongs to
-     * @param number
-     *         supplies first the number for this artifact and then in DFS order the number for its children
-     * @param file
-     *         the <code>File</code> in which the artifact is stored
-     * @param create
-     *         whether to create that <code>file</code> if it does not exist
-     * @param createFile
-     *         whether to create a file (instead of a directory), ignored if <code>create</code>
-     *         is <code>false</code>
-     * @throws FileNotFoundException
-     *         if <code>file</code> does not exist and <code>create</code> is <code>false</code>
-     * @throws IOException
-     *         if <code>createNonExistent</code> is <code>false</code> and <code>file</code> does not exist according to
-     *         {@link java.io.File#exists()}, or if <code>createNonExistent</code> is <code>true</code> but
-     *         <code>file</code> cannot be created.
-     */
-    private FileArtifact(Revision revision, Supplier<Integer> number, File file, boolean create, boolean createFile) throws IOException {
-        super(revision, number.get());
+        super(revision, 0);
 
         if (!file.exists()) {
             if (create) {
@@ -211,14 +217,34 @@ public class FileArtifact extends Artifact<FileArtifact> {
         this.file = file;
 
         if (isDirectory()) {
-            children = new ArtifactList<>();
-            children.addAll(getDirContent(number));
-            Collections.sort(children, comp);
+            children = scanDirectory();
+            renumber();
         } else {
             children = null;
         }
     }
 
+    /**
+     * Constructs a new <code>FileArtifact</code> representing a <code>Path</code> found while scanning a directory.
+     * If <code>path</code> is a directory then its contents are scanned and added as children to the new
+     * <code>FileArtifact</code>. The artifact is numbered <code>0</code>, the root of the scan renumbers the tree once
+     * it is complete.
+     *
+     * @param revision
+     *         the <code>Revision</code> the artifact belongs to
+     * @param path
+     *         the <code>Path</code> in which the artifact is stored
+     * @param attributes
+     *         the attributes of <code>path</code> read while scanning its parent directory
+     */
+    private FileArtifact(Revision revision, Path path, BasicFileAttributes attributes) {
+        super(revision, 0);
+
+        this.file = path.toFile();
+        this.attributes = attributes;
+        this.children = attributes.isDirectory() ? scanDirectory() : null;
+    }
+
     @Override
     public FileArtifact addChild(FileArtifact child) {
 
@@ -258,6 +284,8 @@ public class FileArtifact extends Artifact<FileArtifact> {
 
         children.add(added);
         Collections.sort(children, comp);
+        invalidateDigest();
+        invalidateSubtreeMetrics();
 
         return added;
     }
@@ -303,6 +331,9 @@ public class FileArtifact extends Artifact<FileArtifact> {
     public void deleteChildren() {
         LOG.finest(() -> this + ".deleteChildren()");
 
+        invalidateDigest();
+        invalidateSubtreeMetrics();
+
         if (exists()) {
             if (isDirectory()) {
                 for (FileArtifact child : children) {
@@ -333,81 +364,51 @@ public class FileArtifact extends Artifact<FileArtifact> {
 
             LOG.fine(() -> "Filtering out the children not representing java source code files from " + this);
             children.removeIf(c -> (c.isFile() && !c.isJavaFile()) || (c.isDirectory() && c.getChildren().isEmpty()));
+            invalidateSubtreeMetrics();
         }
     }
 
     /**
-     * Returns whether this <code>FileArtifact</code> (probably) represents a Java source code file.
+     * Returns whether this <code>FileArtifact</code> (probably) represents a Java source code file. Only the file name
+     * extension is considered.
      *
      * @return true iff this <code>FileArtifact</code> likely represents a Java source code file
      */
     public boolean isJavaFile() {
-        return isFile() && MIME_JAVA_SOURCE.equals(getContentType());
-    }
-
-    /**
-     * Returns the MIME content type of the <code>File</code> in which this <code>FileArtifact</code> is stored. 
-     * If the content type can not be determined <code>null</code> will be returned.
-     *
-     * @return the MIME content type
-     */
-    private String getContentType() {
-        assert (exists());
-
-        String mimeType = null;
-
-        try {
-            mimeType = Files.probeContentType(file.toPath());
-        } catch (IOException e) {
-            LOG.log(Level.WARNING, e, () -> "Could not probe content type of " + file);
-        }
-
-        if (mimeType == null) {
-            
-            // returns application/octet-stream if the type can not be determined
-            mimeType = mimeMap.getContentType(file); 
-            
-            if ("application/octet-stream".equals(mimeType)) { 
-                mimeType = null;
-            }
-        }
-
-        return mimeType;
+        return file.getName().endsWith(JAVA_EXTENSION) && isFile();
     }
 
     /**
      * Returns newly allocated <code>FileArtifacts</code> representing the files contained in the directory represented
-     * by this <code>FileArtifact</code>. If this <code>FileArtifact</code> does not represent a directory, an empty
-     * list is returned.
+     * by this <code>FileArtifact</code> ordered by {@link #comp}. The attributes of all entries of the directory are
+     * read while listing it. The subdirectories are then scanned in parallel.
      *
-     * @param number
-     *         the number <code>Supplier</code> to be passed to the new <code>FileArtifact</code>s
      * @return <code>FileArtifacts</code> representing the children of this directory
      */
-    private List<FileArtifact> getDirContent(Supplier<Integer> number) {
-        File[] files = file.listFiles();
+    private ArtifactList<FileArtifact> scanDirectory() {
+        List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>();
 
-        if (files == null) {
-            LOG.warning(() -> String.format("Tried to get the directory contents of %s which is not a directory.", this));
-            return Collections.emptyList();
-        } else if (files.length == 0) {
-            return Collections.emptyList();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(file.toPath())) {
+            for (Path path : dir) {
+                try {
+                    entries.add(new SimpleImmutableEntry<>(path, Files.readAttributes(path, BasicFileAttributes.class)));
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, e, () -> "Could not create the FileArtifact for " + path);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> String.format("Could not get the directory contents of %s.", this));
         }
 
-        List<FileArtifact> artifacts = new ArrayList<>(files.length);
+        entries.sort(SCAN_ORDER);
 
-        for (File f : files) {
+        Revision revision = getRevision();
+        ArtifactList<FileArtifact> artifacts = new ArtifactList<>();
 
-            try {
-                FileArtifact child = new FileArtifact(getRevision(), number, f, false, false);
-
-                child.setParent(this);
-                artifacts.add(child);
-            } catch (IOException e) {
-                LOG.log(Level.WARNING, e, () -> "Could not create the FileArtifact for " + f);
-            }
-        }
+        entries.parallelStream().map(e -> new FileArtifact(revision, e.getKey(), e.getValue()))
+                                .forEachOrdered(artifacts::add);
 
+        artifacts.forEach(child -> child.setParent(this));
         return artifacts;
     }
 
@@ -420,6 +421,16 @@ public class FileArtifact extends Artifact<FileArtifact> {
         return file;
     }
 
+    /**
+     * Returns whether this <code>FileArtifact</code> is a Java file or a directory containing (possibly indirectly)
+     * a Java file.
+     *
+     * @return true iff there is a Java file in the tree rooted in this <code>FileArtifact</code>
+     */
+    private boolean containsJavaFiles() {
+        return isJavaFile() || (isDirectory() && children.stream().anyMatch(FileArtifact::containsJavaFiles));
+    }
+
     private List<FileArtifact> getJavaFiles() {
         return getJavaFiles(new ArtifactList<>());
     }
@@ -468,7 +479,14 @@ public class FileArtifact extends Artifact<FileArtifact> {
      */
     public final BufferedReader getReader() throws FileNotFoundException {
         if (isFile()) {
-            return new BufferedReader(new FileReader(file));
+
+            try {
+                return new BufferedReader(new InputStreamReader(getFileContent().newInputStream(), StandardCharsets.UTF_8));
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         } else {
             throw new NotYetImplementedException();
         }
@@ -578,12 +596,14 @@ public class FileArtifact extends Artifact<FileArtifact> {
     }
 
     /**
-     * Returns true if artifact is a directory.
+     * Returns true if artifact is a directory. Uses the attributes read while scanning the parent directory if there
+     * are any.
      *
      * @return true if artifact is a directory
      */
     public final boolean isDirectory() {
-        return file.isDirectory();
+        BasicFileAttributes attributes = this.attributes;
+        return attributes != null ? attributes.isDirectory() : file.isDirectory();
     }
 
     /**
@@ -602,17 +622,19 @@ public class FileArtifact extends Artifact<FileArtifact> {
     }
 
     /**
-     * Returns true if artifact is a normal file.
+     * Returns true if artifact is a normal file. Uses the attributes read while scanning the parent directory if there
+     * are any.
      *
      * @return true if artifact is a normal file
      */
     public final boolean isFile() {
-        return file.isFile();
+        BasicFileAttributes attributes = this.attributes;
+        return attributes != null ? attributes.isRegularFile() : file.isFile();
     }
 
     @Override
     public final boolean isLeaf() {
-        return !file.isDirectory();
+        return !isDirectory();
     }
 
     @Override
@@ -629,14 +651,37 @@ public class FileArtifact extends Artifact<FileArtifact> {
             return true;
         }
 
-        return this.toString().equals(other.toString());
+        return labelId() == other.labelId();
+    }
+
+    @Override
+    public int getLabelHash() {
+        return labelId();
+    }
+
+    /**
+     * Returns the id of the name of {@link #file} in the current {@link LabelTable}.
+     *
+     * @return the label id
+     */
+    private int labelId() {
+        LabelTable table = LabelTable.current();
+
+        if (labelTable != table) {
+            labelId = table.intern(file.getName());
+            labelTable = table;
+        }
+
+        return labelId;
     }
 
     @Override
     public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
         Objects.requireNonNull(operation, "operation must not be null!");
         Objects.requireNonNull(context, "context must not be null!");
-        
+
+        context.checkCancelled();
+
         if (!exists()) {
             String className = getClass().getSimpleName();
             String filePath = file.getAbsolutePath();
@@ -652,55 +697,328 @@ public class FileArtifact extends Artifact<FileArtifact> {
                 context.getStatistics().setCurrentFileMergeScenario(operation.getMergeScenario());
             }
 
+            if (context.isFastPathTrivialMerges() && mergeTrivially(operation, context)) {
+                return;
+            }
+
             LOG.finest(() -> "Merging directories " + operation.getMergeScenario());
-            merge.merge(operation, context);
+
+            if (context.getFileMergeThreads() != 1 && context.getFileMergeQueue() == null) {
+                FileMergeQueue queue = new FileMergeQueue();
+
+                context.setFileMergeQueue(queue);
+
+                try {
+                    merge.merge(operation, context);
+                } finally {
+                    context.setFileMergeQueue(null);
+                }
+
+                queue.run(context);
+            } else {
+                merge.merge(operation, context);
+            }
         } else {
-            MergeStrategy<FileArtifact> strategy = context.getMergeStrategy();
-            MergeScenario<FileArtifact> scenario = operation.getMergeScenario();
 
             if (!isJavaFile()) {
                 LOG.fine(() -> "Skipping non-java file " + this);
                 return;
             }
 
+            FileMergeQueue queue = context.getFileMergeQueue();
+
+            if (queue != null) {
+
+                if (context.hasStatistics()) {
+                    context.getStatistics().setCurrentFileMergeScenario(operation.getMergeScenario());
+                }
+
+                queue.add(this, operation);
+                return;
+            }
+
+            String output = mergeFile(operation, context);
+
+            if (!context.isQuiet() && !output.isEmpty()) {
+                System.out.print(output);
+            }
+        }
+    }
+
+    /**
+     * Merges the files in the <code>MergeScenario</code> of the given <code>operation</code> using the
+     * <code>MergeStrategy</code> of the <code>context</code>. If the strategy fails, the merge is retried using the
+     * line based strategy unless the <code>context</code> says otherwise.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to perform
+     * @param context
+     *         the <code>MergeContext</code> to use
+     * @return the output of the merge
+     */
+    String mergeFile(MergeOperation<FileArtifact> operation, MergeContext context) {
+        MergeStrategy<FileArtifact> strategy = context.getMergeStrategy();
+        MergeScenario<FileArtifact> scenario = operation.getMergeScenario();
+        String output = "";
+
+        if (context.hasStatistics()) {
+            context.getStatistics().setCurrentFileMergeScenario(scenario);
+        }
+
+        if (context.isFastPathTrivialMerges() && mergeTrivially(operation, context)) {
+            output = context.getStdIn();
+            context.resetStreams();
+
+            return output;
+        }
+
+        OutputSink previousSink = context.getOutput();
+        OutputSink sink = outputSink(operation, context);
+        boolean merged = false;
+
+        context.setOutput(sink);
+
+        try {
+            strategy.merge(operation, context);
+            output = context.isQuiet() ? "" : context.getStdIn();
+            merged = true;
+        } catch (AbortException e) {
+            throw e; // AbortExceptions must always cause the merge to be aborted
+        } catch (RuntimeException e) {
+            context.addCrash(scenario, e);
+
+            LOG.log(SEVERE, e, () -> {
+                String ls = System.lineSeparator();
+                String scStr = operation.getMergeScenario().toString(ls, true);
+                return String.format("Exception while merging%n%s", scStr);
+            });
+
+            if (context.isExitOnError()) {
+                throw new AbortException(e);
+            } else {
+
+                if (!context.isKeepGoing() && !(strategy instanceof LinebasedStrategy)) {
+                    LOG.severe(() -> "Falling back to line based strategy.");
+                    context.setMergeStrategy(MergeStrategy.parse(MergeStrategy.LINEBASED));
+
+                    context.resetStreams();
+                    return mergeFile(operation, context);
+                } else {
+                    LOG.severe(() -> "Skipping " + scenario);
+                }
+            }
+        } finally {
+
+            if (!merged) {
+                sink.reset(); // a partial result must not end up in the target file
+            }
+
+            sink.close();
+            context.setOutput(previousSink);
+        }
+
+        context.resetStreams();
+        return output;
+    }
+
+    /**
+     * Returns the <code>OutputSink</code> the <code>MergeStrategy</code> should write the result of the given
+     * <code>operation</code> to. The result is kept in memory if it is printed or needed for the statistics. Otherwise
+     * it is streamed directly to the target file or, if there is nothing to write, discarded.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to be performed
+     * @param context
+     *         the <code>MergeContext</code> to use
+     * @return the <code>OutputSink</code> for the merge result
+     */
+    private static OutputSink outputSink(MergeOperation<FileArtifact> operation, MergeContext context) {
+
+        if (!context.isQuiet() || context.hasStatistics()) {
+            return OutputSink.memory();
+        }
+
+        FileArtifact target = operation.getTarget();
+
+        if (context.isPretend() || context.isDiffOnly() || target == null) {
+            return OutputSink.discard();
+        }
+
+        return OutputSink.file(target.file);
+    }
+
+    /**
+     * Merges the files in the <code>MergeScenario</code> of the given <code>operation</code> without running the
+     * <code>MergeStrategy</code> if two of them are byte-identical. If left and right are identical or one of them
+     * is identical to the base, the result is the content of the file that is not identical to the base (or either
+     * of them) and is copied to the target unchanged. Directories are compared using their Merkle digests (see
+     * {@link #getContentDigest()}), for trivial directory merges all Java files under the selected directory are
+     * copied without matching or merging them individually.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to perform
+     * @param context
+     *         the <code>MergeContext</code> to use
+     * @return true iff the merge was trivial and has been performed
+     */
+    private boolean mergeTrivially(MergeOperation<FileArtifact> operation, MergeContext context) {
+        MergeScenario<FileArtifact> triple = operation.getMergeScenario();
+        MergeType mergeType = triple.getMergeType();
+
+        if (context.isDiffOnly() || (mergeType != MergeType.TWOWAY && mergeType != MergeType.THREEWAY)) {
+            return false;
+        }
+
+        long startTime = System.currentTimeMillis();
+        FileArtifact left = triple.getLeft();
+        FileArtifact right = triple.getRight();
+        FileArtifact result;
+
+        try {
+            String leftDigest = left.getContentDigest();
+            String rightDigest = right.getContentDigest();
+
+            if (leftDigest.equals(rightDigest)) {
+                result = left;
+            } else {
+                String baseDigest = triple.getBase().getContentDigest();
+
+                if (leftDigest.equals(baseDigest)) {
+                    result = right;
+                } else if (rightDigest.equals(baseDigest)) {
+                    result = left;
+                } else {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not compute the content digests of " + triple);
+            return false;
+        }
+
+        LOG.fine(() -> String.format("Trivial merge of %s, using the %s revision.", triple, result.getRevision()));
+
+        FileArtifact target = operation.getTarget();
+
+        if (result.isDirectory()) {
+            MergeScenarioStatistics scenarioStatistics = null;
+
             if (context.hasStatistics()) {
-                context.getStatistics().setCurrentFileMergeScenario(scenario);
+                scenarioStatistics = new MergeScenarioStatistics(triple);
+            }
+
+            copyJavaFiles(result, context.isPretend() ? null : target, context, scenarioStatistics);
+
+            if (!context.isPretend() && target != null) {
+                Artifacts.root(target).renumber();
+            }
+
+            if (scenarioStatistics != null) {
+                scenarioStatistics.setRuntime(System.currentTimeMillis() - startTime);
+                context.getStatistics().addScenarioStatistics(scenarioStatistics);
+            }
+
+            return true;
+        }
+
+        String content = result.getContent();
+
+        context.resetStreams();
+        context.append(content);
+
+        if (!context.isPretend() && target != null) {
+
+            if (target.exists() && !target.isEmpty()) {
+                throw new AssertionError(String.format("Would be overwritten: %s", target));
             }
 
             try {
-                strategy.merge(operation, context);
+                FileUtils.copyFile(result.file, target.file);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not copy " + result + " to " + target, e);
+            }
+        }
+
+        if (context.hasStatistics()) {
+            MergeScenarioStatistics scenarioStatistics = new MergeScenarioStatistics(triple);
+
+            scenarioStatistics.setLineStatistics(content);
+            scenarioStatistics.incrementTrivialMerges();
+            scenarioStatistics.setRuntime(System.currentTimeMillis() - startTime);
+            context.getStatistics().addScenarioStatistics(scenarioStatistics);
+        }
+
+        return true;
+    }
 
-                if (!context.isQuiet() && context.hasOutput()) {
-                    System.out.print(context.getStdIn());
+    /**
+     * Copies the Java files (and the directories containing them) under the directory <code>source</code> into the
+     * directory <code>target</code> as the result of a trivial merge. Directories not containing any Java files are
+     * not created. The content of every copied file is output unless the <code>context</code> is quiet.
+     *
+     * @param source
+     *         the directory whose children are to be copied
+     * @param target
+     *         the directory to copy to, may be <code>null</code> if nothing is to be written
+     * @param context
+     *         the <code>MergeContext</code> to use
+     * @param statistics
+     *         the <code>MergeScenarioStatistics</code> to count the trivially merged files in, may be <code>null</code>
+     */
+    private static void copyJavaFiles(FileArtifact source, FileArtifact target, MergeContext context,
+                                      MergeScenarioStatistics statistics) {
+
+        for (FileArtifact child : source.children) {
+            context.checkCancelled();
+
+            if (child.isDirectory() ? !child.containsJavaFiles() : !child.isJavaFile()) {
+                continue;
+            }
+
+            FileArtifact targetChild = null;
+
+            if (target != null) {
+                File copy = new File(target.file, child.file.getName());
+
+                try {
+                    if (child.isDirectory()) {
+                        targetChild = new FileArtifact(target.getRevision(), copy, true, false);
+                    } else {
+                        FileUtils.copyFile(child.file, copy);
+                        targetChild = new FileArtifact(target.getRevision(), copy);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not copy " + child + " to " + target, e);
                 }
-            } catch (AbortException e) {
-                throw e; // AbortExceptions must always cause the merge to be aborted
-            } catch (RuntimeException e) {
-                context.addCrash(scenario, e);
 
-                LOG.log(SEVERE, e, () -> {
-                    String ls = System.lineSeparator();
-                    String scStr = operation.getMergeScenario().toString(ls, true);
-                    return String.format("Exception while merging%n%s", scStr);
-                });
+                targetChild.setParent(target);
+                target.children.add(targetChild);
+                target.invalidateDigest();
+                target.invalidateSubtreeMetrics();
+            }
 
-                if (context.isExitOnError()) {
-                    throw new AbortException(e);
-                } else {
+            if (child.isDirectory()) {
+                copyJavaFiles(child, targetChild, context, statistics);
+            } else {
 
-                    if (!context.isKeepGoing() && !(strategy instanceof LinebasedStrategy)) {
-                        LOG.severe(() -> "Falling back to line based strategy.");
-                        context.setMergeStrategy(MergeStrategy.parse(MergeStrategy.LINEBASED));
+                if (!context.isQuiet()) {
+                    FileMergeQueue queue = context.getFileMergeQueue();
 
-                        context.resetStreams();
-                        merge(operation, context);
+                    if (queue != null) {
+                        queue.addOutput(child);
                     } else {
-                        LOG.severe(() -> "Skipping " + scenario);
+                        System.out.print(child.getContent());
                     }
                 }
+
+                if (statistics != null) {
+                    statistics.incrementTrivialMerges();
+                }
             }
+        }
 
-            context.resetStreams();
+        if (target != null) {
+            Collections.sort(target.children, comp);
         }
     }
 
@@ -712,6 +1030,9 @@ public class FileArtifact extends Artifact<FileArtifact> {
             return;
         }
 
+        attributes = null;
+        invalidateDigest();
+
         try {
             if (isDirectory()) {
                 LOG.fine(() -> "Deleting directory recursively: " + file);
@@ -738,6 +1059,36 @@ public class FileArtifact extends Artifact<FileArtifact> {
      * @param str the <code>String</code> to write
      */
     public void write(String str) {
+        prepareWrite();
+
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(str);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not write to " + this);
+        }
+    }
+
+    /**
+     * Writes the content of the given <code>OutputSink</code> to this <code>FileArtifact</code>. If the sink already
+     * streams to the file of this <code>FileArtifact</code>, it is only closed.
+     *
+     * @param output the <code>OutputSink</code> to write
+     */
+    public void write(OutputSink output) {
+        prepareWrite();
+
+        try {
+            output.writeTo(file);
+        } catch (IOException | UncheckedIOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not write to " + this);
+        }
+    }
+
+    /**
+     * Creates the parent directory of the file if necessary and invalidates the cached digests and attributes.
+     */
+    private void prepareWrite() {
+
         if (file.getParentFile() != null && !file.getParentFile().exists()) {
 
             try {
@@ -747,11 +1098,8 @@ public class FileArtifact extends Artifact<FileArtifact> {
             }
         }
 
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(str);
-        } catch (IOException e) {
-            LOG.log(Level.WARNING, e, () -> "Could not write to " + this);
-        }
+        attributes = null;
+        invalidateDigest();
     }
 
     @Override
@@ -764,10 +1112,100 @@ public class FileArtifact extends Artifact<FileArtifact> {
         throw new NotYetImplementedException();
     }
 
+    /**
+     * Returns the hex encoded SHA-256 digest of the content of the file. For directories this is the root of a Merkle
+     * tree: the digest over the names, kinds and digests of the children of this <code>FileArtifact</code> that are
+     * directories or Java files. Other files are never merged and are therefore neither read nor digested. Files or
+     * directories with equal digests have byte-identical contents as far as merging is concerned. The digest is
+     * cached until the children of this <code>FileArtifact</code> or one of its descendants change.
+     *
+     * @return the digest of the content
+     * @throws IOException
+     *         if a file can not be read
+     */
+    public String getContentDigest() throws IOException {
+
+        if (digest == null) {
+
+            if (isDirectory()) {
+                StringBuilder tree = new StringBuilder();
+
+                for (FileArtifact child : children) {
+
+                    if (!child.isDirectory() && !child.isJavaFile()) {
+                        continue;
+                    }
+
+                    tree.append(child.isDirectory() ? 'd' : 'f').append(' ');
+                    tree.append(child.getContentDigest()).append(' ');
+                    tree.append(child.file.getName()).append('\n');
+                }
+
+                digest = digest(tree.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                digest = getFileContent().getDigest();
+            }
+        }
+
+        return digest;
+    }
+
+    /**
+     * Returns the content of the file represented by this <code>FileArtifact</code>. The file is read (or mapped)
+     * only once, the parser, the digest and {@link #getContent()} all use the same <code>FileContent</code>. It is
+     * discarded when this <code>FileArtifact</code> modifies the file (or if memory runs low).
+     *
+     * @return the content of the file
+     * @throws IOException
+     *         if the file can not be read
+     */
+    public FileContent getFileContent() throws IOException {
+        SoftReference<FileContent> ref = content;
+        FileContent fileContent = ref == null ? null : ref.get();
+
+        if (fileContent == null) {
+
+            synchronized (this) {
+                ref = content;
+                fileContent = ref == null ? null : ref.get();
+
+                if (fileContent == null) {
+                    fileContent = FileContent.read(file.toPath());
+                    content = new SoftReference<>(fileContent);
+                }
+            }
+        }
+
+        return fileContent;
+    }
+
+    /**
+     * Discards the cached digests of this <code>FileArtifact</code> and its ancestors as well as the cached content
+     * of this <code>FileArtifact</code>.
+     */
+    private void invalidateDigest() {
+        content = null;
+
+        for (FileArtifact artifact = this; artifact != null; artifact = artifact.getParent()) {
+            artifact.digest = null;
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the given <code>bytes</code>.
+     *
+     * @param bytes
+     *         the bytes to digest
+     * @return the digest
+     */
+    private static String digest(byte[] bytes) {
+        return FileContent.digest(ByteBuffer.wrap(bytes));
+    }
+
     public final String getContent() {
 
         try {
-            return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+            return getFileContent().toString();
         } catch (IOException e) {
             LOG.log(Level.WARNING, e, () -> "Could not read the contents of " + this);
             return "";
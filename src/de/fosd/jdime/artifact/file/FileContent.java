@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The content of a file read into memory once together with its SHA-256 digest. Files of at least
+ * {@link #MAP_THRESHOLD} bytes are memory-mapped instead of being copied to the heap. A <code>FileContent</code> is
+ * immutable and may be shared between threads. It reflects the file at the time it was read.
+ */
+public final class FileContent {
+
+    /**
+     * The size in bytes from which on files are memory-mapped.
+     */
+    static final long MAP_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer bytes;
+    private final String digest;
+
+    /**
+     * Constructs a new <code>FileContent</code>.
+     *
+     * @param bytes
+     *         the content, positioned at its start
+     */
+    private FileContent(ByteBuffer bytes) {
+        this.bytes = bytes.asReadOnlyBuffer();
+        this.digest = digest(bytes.duplicate());
+    }
+
+    /**
+     * Reads the content of the file at the given <code>path</code>.
+     *
+     * @param path
+     *         the file to read
+     * @return the <code>FileContent</code>
+     * @throws IOException
+     *         if the file can not be read
+     */
+    public static FileContent read(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+
+            if (size >= MAP_THRESHOLD) {
+                return new FileContent(channel.map(READ_ONLY, 0, size));
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the buffer is full or the end of the file is reached
+            }
+
+            buffer.flip();
+            return new FileContent(buffer);
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the remaining bytes of the given <code>buffer</code>.
+     *
+     * @param buffer
+     *         the bytes to digest
+     * @return the digest
+     */
+    static String digest(ByteBuffer buffer) {
+        MessageDigest md;
+
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // every Java platform is required to support SHA-256
+        }
+
+        md.update(buffer);
+
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : md.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Returns the number of bytes of the content.
+     *
+     * @return the size of the content
+     */
+    public int size() {
+        return bytes.limit();
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the content.
+     *
+     * @return the digest
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns a new read-only view of the content.
+     *
+     * @return the content
+     */
+    public ByteBuffer getBytes() {
+        return bytes.duplicate();
+    }
+
+    /**
+     * Returns a new <code>InputStream</code> reading the content without copying it.
+     *
+     * @return the <code>InputStream</code>
+     */
+    public InputStream newInputStream() {
+        ByteBuffer buffer = getBytes();
+
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+
+                if (len == 0) {
+                    return 0;
+                }
+
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * Decodes the content using the given <code>charset</code>. Malformed input is replaced.
+     *
+     * @param charset
+     *         the <code>Charset</code> to decode the content with
+     * @return the content as a <code>String</code>
+     */
+    public String toString(Charset charset) {
+        return charset.decode(getBytes()).toString();
+    }
+
+    /**
+     * Decodes the content as UTF-8. Malformed input is replaced.
+     *
+     * @return the content as a <code>String</code>
+     */
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.UTF_8);
+    }
+}
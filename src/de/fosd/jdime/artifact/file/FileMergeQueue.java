@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.file;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.execption.AbortException;
+import de.fosd.jdime.operations.MergeOperation;
+
+/**
+ * Collects the file merges of a recursive merge while the directories are being walked and then runs them on a pool
+ * of threads. Every file is merged using its own {@link MergeContext#createScenarioContext() scenario context}.
+ * The outputs of the merges are printed, and their statistics and crashes are added to the <code>MergeContext</code>
+ * of the recursive merge, in the order in which the files were added.
+ */
+public final class FileMergeQueue {
+
+    private static final Logger LOG = Logger.getLogger(FileMergeQueue.class.getCanonicalName());
+
+    /**
+     * A file merge or a file whose content is to be printed as the result of a trivial merge.
+     */
+    private static final class Job {
+
+        private final FileArtifact artifact;
+        private final MergeOperation<FileArtifact> operation;
+
+        private Job(FileArtifact artifact, MergeOperation<FileArtifact> operation) {
+            this.artifact = artifact;
+            this.operation = operation;
+        }
+    }
+
+    private final List<Job> jobs;
+
+    /**
+     * Constructs a new empty <code>FileMergeQueue</code>.
+     */
+    FileMergeQueue() {
+        this.jobs = new ArrayList<>();
+    }
+
+    /**
+     * Adds the merge of the files in the <code>MergeScenario</code> of the given <code>operation</code>.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> the merge was invoked on
+     * @param operation
+     *         the <code>MergeOperation</code> to perform
+     */
+    void add(FileArtifact artifact, MergeOperation<FileArtifact> operation) {
+        jobs.add(new Job(artifact, operation));
+    }
+
+    /**
+     * Adds the printing of the content of the given <code>file</code>.
+     *
+     * @param file
+     *         the file whose content is to be printed
+     */
+    void addOutput(FileArtifact file) {
+        jobs.add(new Job(file, null));
+    }
+
+    /**
+     * Runs the collected file merges using {@link MergeContext#getFileMergeThreads()} threads.
+     *
+     * @param context
+     *         the <code>MergeContext</code> of the recursive merge
+     */
+    void run(MergeContext context) {
+        int threads = context.getFileMergeThreads();
+
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        int numThreads = threads;
+        LOG.fine(() -> String.format("Merging %d files using %d threads.", jobs.size(), numThreads));
+
+        List<MergeContext> contexts = new ArrayList<>(jobs.size());
+        List<Future<String>> outputs = new ArrayList<>(jobs.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerFactory());
+
+        try {
+
+            for (Job job : jobs) {
+
+                if (job.operation == null) {
+                    contexts.add(null);
+                    outputs.add(null);
+                    continue;
+                }
+
+                MergeContext fileContext = context.createScenarioContext();
+
+                contexts.add(fileContext);
+                outputs.add(executor.submit(() -> {
+                    fileContext.checkCancelled();
+                    return job.artifact.mergeFile(job.operation, fileContext);
+                }));
+            }
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                MergeContext fileContext = contexts.get(i);
+
+                if (fileContext == null) {
+                    System.out.print(job.artifact.getContent());
+                    continue;
+                }
+
+                String output = await(outputs.get(i));
+
+                if (!context.isQuiet() && !output.isEmpty()) {
+                    System.out.print(output);
+                }
+
+                if (context.hasStatistics()) {
+                    context.getStatistics().add(fileContext.getStatistics());
+                }
+
+                fileContext.getCrashes().forEach(context::addCrash);
+            }
+        } finally {
+            executor.shutdownNow();
+            jobs.clear();
+        }
+    }
+
+    /**
+     * Waits for the given file merge to finish and rethrows the exception it failed with, if any.
+     *
+     * @param output
+     *         the output of the file merge
+     * @return the output
+     */
+    private static String await(Future<String> output) {
+
+        try {
+            return output.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * Creates the daemon threads merging files.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger number = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jdime-file-merge-" + number.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -74,6 +74,7 @@ public class CommandLineConfigSource extends ConfigSource {
     public static final String CLI_CM_PARALLEL = "cmpar";
     public static final String CLI_CM_FIX_PERCENTAGE = "cmfix";
     public static final String CLI_CM_SEED = "cmseed";
+    public static final String CLI_FILE_MERGE_THREADS = "fmt";
 
     public static final String ARG_LIST = "ARG_LIST";
     public static final String ARG_LIST_SEP = ",";
@@ -197,8 +198,8 @@ public class CommandLineConfigSource extends ConfigSource {
 
         o = Option.builder(CLI_MODE)
                 .longOpt("mode")
-                .desc("Set the mode to one of (unstructured, structured, autotuning, dumptree, dumpgraph, dumpfile, " +
-                        "prettyprint, nway)")
+                .desc("Set the mode to one of (unstructured, structured, semistructured, autotuning, dumptree, dumpgraph, " +
+                        "dumpfile, prettyprint, nway)")
                 .hasArg()
                 .argName("mode")
                 .build();
@@ -343,6 +344,19 @@ public class CommandLineConfigSource extends ConfigSource {
 
         options.addOption(o);
 
+        o = Option.builder(CLI_FILE_MERGE_THREADS)
+                .longOpt("file-merge-threads")
+                .desc("The number of threads merging the files of a recursive merge. Values smaller than 1 use one " +
+                        "thread per processor. The default is 1. ExtendJ keeps global state, so the ASTs are " +
+                        "matched, merged and pretty-printed one file at a time. Only parsing, line based merging " +
+                        "and I/O run concurrently. Line based merges get faster with more threads, semistructured " +
+                        "and combined merges only for files without line based conflicts, structured and n-way " +
+                        "merges do not get faster at all.")
+                .hasArg(true)
+                .build();
+
+        options.addOption(o);
+
 
         return options;
     }
@@ -35,6 +35,7 @@ import java.util.logging.Logger;
 
 import de.fosd.jdime.Main;
 import de.fosd.jdime.matcher.ordered.mceSubtree.MCESubtreeMatcher;
+import de.fosd.jdime.matcher.unordered.GreedyMatcher;
 import de.fosd.jdime.stats.KeyEnums;
 import de.uni_passau.fim.seibt.kvconfig.Config;
 import de.uni_passau.fim.seibt.kvconfig.sources.PropFileConfigSource;
@@ -105,6 +106,80 @@ public final class JDimeConfig extends Config {
      */
     public static final String USE_MCESUBTREE_MATCHER = "USE_MCESUBTREE_MATCHER";
 
+    /**
+     * The number of children above which unordered nodes are matched using the approximating {@link GreedyMatcher}
+     * instead of solving the assignment problem exactly. Must be a number parseable by
+     * {@link Integer#parseInt(String)}. Values smaller than 1 disable the {@link GreedyMatcher}. Defaults to 500.
+     */
+    public static final String GREEDY_MATCHER_THRESHOLD = "GREEDY_MATCHER_THRESHOLD";
+
+    /**
+     * Whether to fix large identical subtrees of the trees being matched as anchors before running the
+     * concrete matchers. Anchors are also found if the subtree was moved to a different parent. Must be either 'true'
+     * or 'false'. Defaults to false.
+     */
+    public static final String USE_ANCHORS = "USE_ANCHORS";
+
+    /**
+     * The time in milliseconds the structured merge of a single file may take. When a third of the budget is used
+     * up, the matching switches to cheaper modes step by step. If the budget is exhausted, the file is merged line
+     * based. The budget is only checked while the trees are matched, merging and pretty printing the matched trees
+     * are never interrupted. Must be a number parseable by {@link Long#parseLong(String)}. Values smaller than 1
+     * disable the time budget. Defaults to 0.
+     */
+    public static final String TIME_BUDGET = "TIME_BUDGET";
+
+    /**
+     * The capacity of the cache of parsed ASTs in bytes of source code. The cache is keyed by the digest of the file
+     * content so that identical files (e.g. unchanged bases or revisions parsed by multiple strategies) are only
+     * parsed once. Must be a number parseable by {@link Long#parseLong(String)}. Values smaller than 1 disable the
+     * cache. Defaults to 4194304 (4 MiB).
+     */
+    public static final String PARSE_CACHE_SIZE = "PARSE_CACHE_SIZE";
+
+    /**
+     * Whether to merge files without running the merge strategy if left and right or one of them and the base are
+     * byte-identical. The result is then copied unchanged from the appropriate revision. Unchanged directories are
+     * copied as a whole. For the structured and n-way strategies this changes the output of such merges, which would
+     * otherwise be the pretty-printed AST. Must be either 'true' or 'false'. Defaults to true for all strategies but
+     * the structured and n-way strategies, for which it defaults to false.
+     */
+    public static final String FAST_PATH_TRIVIAL_MERGES = "FAST_PATH_TRIVIAL_MERGES";
+
+    /**
+     * Whether structured merges reuse the source code of the left revision for the parts of the merged AST that are
+     * unchanged copies of it instead of pretty-printing the whole AST. This keeps the formatting and comments of those
+     * parts. Must be either 'true' or 'false'. Defaults to false.
+     */
+    public static final String SPLICE_PRETTY_PRINT = "SPLICE_PRETTY_PRINT";
+
+    /**
+     * Which implementation the line based strategy uses to merge files. 'git' runs <code>git merge-file</code> in a
+     * separate process, 'internal' merges the files in-process producing the same output. Defaults to 'git'.
+     */
+    public static final String LINEBASED_BACKEND = "LINEBASED_BACKEND";
+
+    /**
+     * The number of threads merging the files of recursive merges. If it is not 1, the file merges are collected
+     * while walking the directories and then run on a pool of threads, each with its own <code>MergeContext</code>.
+     * Their output is printed and their statistics are combined in the order in which the files were encountered.
+     * ExtendJ keeps global state, so the structured parts of a merge (matching, merging and pretty-printing the ASTs)
+     * still run one file at a time. Only parsing, line based merges and I/O run concurrently. Structured and n-way
+     * merges therefore do not get faster with more threads, semistructured and combined merges only for the files
+     * without line based conflicts. Values smaller than 1 use one thread per available processor. Must be a number
+     * parseable by {@link Integer#parseInt(String)}. Defaults to 1.
+     */
+    public static final String FILE_MERGE_THREADS = "FILE_MERGE_THREADS";
+
+    /**
+     * Whether the combined strategy runs the structured strategy speculatively, concurrently with the line based
+     * strategy, instead of only after the line based strategy produced conflicts. The structured merge is cancelled
+     * if the line based merge is free of conflicts. This lowers the latency of conflicting files at the expense of
+     * CPU time for the others. Ignored unless {@link #FILE_MERGE_THREADS} is 1 and there is more than one processor.
+     * Must be either 'true' or 'false'. Defaults to false.
+     */
+    public static final String COMBINED_SPECULATIVE = "COMBINED_SPECULATIVE";
+
     /**
      * Whether to append a number to the file name to ensure that no file of the same name is overwritten when
      * writing the statistics. Must be either 'true' or 'false'. Defaults to true.
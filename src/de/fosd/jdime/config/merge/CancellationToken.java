@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.config.merge;
+
+import de.fosd.jdime.execption.MergeCancelledException;
+
+/**
+ * A token that may be used to cooperatively cancel a running merge. The token is shared by a
+ * <code>MergeContext</code> and all of its copies. The merge checks the token at regular intervals and throws a
+ * {@link MergeCancelledException} once it was cancelled. A token may have a parent token, it is then also cancelled
+ * whenever its parent is.
+ */
+public final class CancellationToken {
+
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a new <code>CancellationToken</code> without a parent.
+     */
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new <code>CancellationToken</code> that is cancelled if either it or the given <code>parent</code>
+     * is cancelled. Cancelling the new token does not cancel the <code>parent</code>.
+     *
+     * @param parent
+     *         the parent token, may be <code>null</code>
+     */
+    public CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Requests the cancellation of all merges using this token. This method may be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether {@link #cancel()} was called on this token or one of its ancestors.
+     *
+     * @return true iff the token was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Throws a {@link MergeCancelledException} if this token was cancelled.
+     *
+     * @throws MergeCancelledException
+     *         if the token was cancelled
+     */
+    public void check() {
+
+        if (isCancelled()) {
+            throw new MergeCancelledException("The merge was cancelled.");
+        }
+    }
+}
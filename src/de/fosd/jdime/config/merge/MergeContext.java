@@ -26,7 +26,6 @@ package de.fosd.jdime.config.merge;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -40,20 +39,33 @@ import java.util.stream.Collectors;
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ParseCache;
 import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.artifact.file.FileMergeQueue;
 import de.fosd.jdime.config.CommandLineConfigSource;
 import de.fosd.jdime.config.JDimeConfig;
 import de.fosd.jdime.execption.AbortException;
 import de.fosd.jdime.matcher.cost_model.CMMode;
 import de.fosd.jdime.stats.KeyEnums;
 import de.fosd.jdime.stats.Statistics;
+import de.fosd.jdime.strategy.LinebasedBackend;
 import de.fosd.jdime.strategy.LinebasedStrategy;
 import de.fosd.jdime.strategy.MergeStrategy;
 import de.fosd.jdime.strategy.NWayStrategy;
+import de.fosd.jdime.strategy.StructuredStrategy;
 import de.fosd.jdime.strdump.DumpMode;
 
 import static de.fosd.jdime.config.CommandLineConfigSource.*;
+import static de.fosd.jdime.config.JDimeConfig.COMBINED_SPECULATIVE;
+import static de.fosd.jdime.config.JDimeConfig.FAST_PATH_TRIVIAL_MERGES;
+import static de.fosd.jdime.config.JDimeConfig.FILE_MERGE_THREADS;
 import static de.fosd.jdime.config.JDimeConfig.FILTER_INPUT_DIRECTORIES;
+import static de.fosd.jdime.config.JDimeConfig.GREEDY_MATCHER_THRESHOLD;
+import static de.fosd.jdime.config.JDimeConfig.LINEBASED_BACKEND;
+import static de.fosd.jdime.config.JDimeConfig.PARSE_CACHE_SIZE;
+import static de.fosd.jdime.config.JDimeConfig.SPLICE_PRETTY_PRINT;
+import static de.fosd.jdime.config.JDimeConfig.TIME_BUDGET;
+import static de.fosd.jdime.config.JDimeConfig.USE_ANCHORS;
 import static de.fosd.jdime.config.JDimeConfig.USE_MCESUBTREE_MATCHER;
 import static java.util.logging.Level.WARNING;
 
@@ -173,10 +185,76 @@ public class MergeContext implements Cloneable {
     private boolean useMCESubtreeMatcher;
 
     /**
-     * The standard out/error streams used during the merge.
+     * The number of children above which unordered nodes are matched using the <code>GreedyMatcher</code>. Values
+     * smaller than 1 disable the <code>GreedyMatcher</code>.
      */
-    private StringWriter stdErr;
-    private StringWriter stdIn;
+    private int greedyMatcherThreshold;
+
+    /**
+     * Whether to fix large identical subtrees as anchors before the matching phase of the merge.
+     */
+    private boolean useAnchors;
+
+    /**
+     * The time in milliseconds the structured merge of a single file may take. Values smaller than 1 disable the
+     * time budget.
+     */
+    private long timeBudget;
+
+    /**
+     * The time at which the time budget of the current file started and the degradation level reached so far.
+     */
+    private long timeBudgetStart;
+    private KeyEnums.Degradation degradation;
+
+    /**
+     * The token used to cooperatively cancel the merge. It is shared between a <code>MergeContext</code> and all of
+     * its copies.
+     */
+    private CancellationToken cancellationToken;
+
+    /**
+     * The cache of parsed ASTs. It is shared between a <code>MergeContext</code> and all of its copies.
+     */
+    private ParseCache parseCache;
+
+    /**
+     * Whether to merge files whose revisions are (partly) byte-identical without running the merge strategy. Empty if
+     * not configured, see {@link #isFastPathTrivialMerges()}.
+     */
+    private Optional<Boolean> fastPathTrivialMerges;
+
+    /**
+     * Whether to print merged ASTs by splicing the regenerated parts into the source code of the left revision.
+     */
+    private boolean splicePrettyPrint;
+
+    /**
+     * The implementation the <code>LinebasedStrategy</code> uses to merge files.
+     */
+    private LinebasedBackend linebasedBackend;
+
+    /**
+     * The number of threads merging the files of recursive merges.
+     */
+    private int fileMergeThreads;
+
+    /**
+     * Whether the <code>CombinedStrategy</code> runs the structured strategy concurrently with the line based one.
+     */
+    private boolean combinedSpeculative;
+
+    /**
+     * The queue collecting the file merges of the currently running recursive merge, <code>null</code> if files are
+     * merged immediately.
+     */
+    private FileMergeQueue fileMergeQueue;
+
+    /**
+     * The sinks receiving the output and the error output of the current merge scenario.
+     */
+    private OutputSink output;
+    private OutputSink errors;
 
     /**
      * How many levels to keep searching for matches in the subtree if the
@@ -224,8 +302,20 @@ public class MergeContext implements Cloneable {
         this.collectStatistics = false;
         this.statistics = null;
         this.useMCESubtreeMatcher = false;
-        this.stdErr = new StringWriter();
-        this.stdIn = new StringWriter();
+        this.greedyMatcherThreshold = 500;
+        this.useAnchors = false;
+        this.timeBudget = 0;
+        this.timeBudgetStart = 0;
+        this.degradation = KeyEnums.Degradation.NONE;
+        this.cancellationToken = new CancellationToken();
+        this.parseCache = new ParseCache(4 * 1024 * 1024);
+        this.fastPathTrivialMerges = Optional.empty();
+        this.splicePrettyPrint = false;
+        this.linebasedBackend = LinebasedBackend.GIT;
+        this.fileMergeThreads = 1;
+        this.combinedSpeculative = false;
+        this.output = OutputSink.memory();
+        this.errors = OutputSink.memory();
         this.lookAhead = MergeContext.LOOKAHEAD_OFF;
         this.lookAheads = new HashMap<>();
         this.crashes = new HashMap<>();
@@ -252,6 +342,19 @@ public class MergeContext implements Cloneable {
      *         the <code>MergeContext</code> to copy
      */
     public MergeContext(MergeContext toCopy) {
+        this(toCopy, false);
+    }
+
+    /**
+     * Copies the given <code>MergeContext</code>. An <code>isolated</code> copy shares the input and output files of
+     * <code>toCopy</code> instead of cloning them and starts out with empty output streams, statistics and crashes.
+     *
+     * @param toCopy
+     *         the <code>MergeContext</code> to copy
+     * @param isolated
+     *         whether to create an isolated copy
+     */
+    private MergeContext(MergeContext toCopy, boolean isolated) {
         this.conditionalMerge = toCopy.conditionalMerge;
         this.conditionalOutsideMethods = toCopy.conditionalOutsideMethods;
         this.diffOnly = toCopy.diffOnly;
@@ -261,31 +364,48 @@ public class MergeContext implements Cloneable {
         this.inspectionScope = toCopy.inspectionScope;
         this.forceOverwriting = toCopy.forceOverwriting;
 
-        this.inputFiles = new ArtifactList<>();
-        this.inputFiles.addAll(toCopy.inputFiles.stream().map(FileArtifact::clone).collect(Collectors.toList()));
+        if (isolated) {
+            this.inputFiles = toCopy.inputFiles;
+        } else {
+            this.inputFiles = new ArtifactList<>();
+            this.inputFiles.addAll(toCopy.inputFiles.stream().map(FileArtifact::clone).collect(Collectors.toList()));
+        }
 
         this.filterInputDirectories = toCopy.filterInputDirectories;
         this.keepGoing = toCopy.keepGoing;
         this.exitOnError = toCopy.exitOnError;
         this.mergeStrategy = toCopy.mergeStrategy; // MergeStrategy should be stateless
-        this.outputFile = (toCopy.outputFile != null) ? toCopy.outputFile.clone() : null;
+        this.outputFile = (toCopy.outputFile != null && !isolated) ? toCopy.outputFile.clone() : toCopy.outputFile;
         this.quiet = toCopy.quiet;
         this.pretend = toCopy.pretend;
         this.recursive = toCopy.recursive;
         this.collectStatistics = toCopy.collectStatistics;
-        this.statistics = (toCopy.statistics != null) ? new Statistics(toCopy.statistics) : null;
-        this.useMCESubtreeMatcher = toCopy.useMCESubtreeMatcher;
 
-        this.stdErr = new StringWriter();
-        this.stdErr.append(toCopy.stdErr.toString());
+        if (toCopy.statistics != null) {
+            this.statistics = isolated ? new Statistics() : new Statistics(toCopy.statistics);
+        }
 
-        this.stdIn = new StringWriter();
-        this.stdIn.append(toCopy.stdIn.toString());
+        this.useMCESubtreeMatcher = toCopy.useMCESubtreeMatcher;
+        this.greedyMatcherThreshold = toCopy.greedyMatcherThreshold;
+        this.useAnchors = toCopy.useAnchors;
+        this.timeBudget = toCopy.timeBudget;
+        this.timeBudgetStart = toCopy.timeBudgetStart;
+        this.degradation = toCopy.degradation;
+        this.cancellationToken = toCopy.cancellationToken;
+        this.parseCache = toCopy.parseCache;
+        this.fastPathTrivialMerges = toCopy.fastPathTrivialMerges;
+        this.splicePrettyPrint = toCopy.splicePrettyPrint;
+        this.linebasedBackend = toCopy.linebasedBackend;
+        this.fileMergeThreads = toCopy.fileMergeThreads;
+        this.combinedSpeculative = toCopy.combinedSpeculative;
+
+        this.output = OutputSink.memory(); // every copy collects the output of its own scenario
+        this.errors = OutputSink.memory();
 
         this.lookAhead = toCopy.lookAhead;
         this.lookAheads = new HashMap<>(toCopy.lookAheads);
 
-        this.crashes = new HashMap<>(toCopy.crashes);
+        this.crashes = isolated ? new HashMap<>() : new HashMap<>(toCopy.crashes);
         this.cmMatcherMode = toCopy.cmMatcherMode;
         this.cmReMatchBound = toCopy.cmReMatchBound;
         this.wr = toCopy.wr;
@@ -302,6 +422,17 @@ public class MergeContext implements Cloneable {
         this.cmMatcherFixRandomPercentage = toCopy.cmMatcherFixRandomPercentage;
     }
 
+    /**
+     * Returns a new <code>MergeContext</code> with the configuration of this one for merging a single scenario
+     * independently of (and possibly concurrently with) other scenarios. It shares the input and output files with
+     * this <code>MergeContext</code> and starts out with empty output streams, statistics and crashes.
+     *
+     * @return the new <code>MergeContext</code>
+     */
+    public MergeContext createScenarioContext() {
+        return new MergeContext(this, true);
+    }
+
     /**
      * Initializes the configuration options stored in the <code>MergeContext</code> from the given
      * <code>JDimeConfig</code>.
@@ -312,6 +443,26 @@ public class MergeContext implements Cloneable {
     public void configureFrom(JDimeConfig config) {
 
         setUseMCESubtreeMatcher(config.getBoolean(USE_MCESUBTREE_MATCHER).orElse(false));
+        config.getInteger(GREEDY_MATCHER_THRESHOLD).ifPresent(this::setGreedyMatcherThreshold);
+        config.getBoolean(USE_ANCHORS).ifPresent(this::setUseAnchors);
+        config.getLong(TIME_BUDGET).ifPresent(this::setTimeBudget);
+        config.getLong(PARSE_CACHE_SIZE).ifPresent(this::setParseCacheSize);
+        config.getBoolean(FAST_PATH_TRIVIAL_MERGES).ifPresent(this::setFastPathTrivialMerges);
+        config.getBoolean(SPLICE_PRETTY_PRINT).ifPresent(this::setSplicePrettyPrint);
+
+        config.get(LINEBASED_BACKEND, backend -> {
+
+            try {
+                return Optional.of(LinebasedBackend.valueOf(backend.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                LOG.log(WARNING, e, () -> "Invalid line based backend " + backend);
+                return Optional.empty();
+            }
+        }).ifPresent(this::setLinebasedBackend);
+
+        config.getInteger(FILE_MERGE_THREADS).ifPresent(this::setFileMergeThreads);
+        config.getInteger(CLI_FILE_MERGE_THREADS).ifPresent(this::setFileMergeThreads);
+        config.getBoolean(COMBINED_SPECULATIVE).ifPresent(this::setCombinedSpeculative);
 
         config.getBoolean(CLI_DIFFONLY).ifPresent(diffOnly -> {
             setDiffOnly(diffOnly);
@@ -499,45 +650,43 @@ public class MergeContext implements Cloneable {
     }
 
     /**
-     * Append a String to stdIN.
+     * Appends a String to the output.
      *
      * @param s
      *         String to append
      */
     public void append(String s) {
-        stdIn.append(s);
+        output.append(s);
     }
 
     /**
-     * Append a String to stdERR.
+     * Appends a String to the error output.
      *
      * @param s
      *         String to append
      */
     public void appendError(String s) {
-        stdErr.append(s);
+        errors.append(s);
     }
 
     /**
-     * Appends a line to the saved stdin buffer.
+     * Appends a line to the output.
      *
      * @param line
      *         to be appended
      */
     public void appendLine(String line) {
-        stdIn.append(line);
-        stdIn.append(System.lineSeparator());
+        output.appendLine(line);
     }
 
     /**
-     * Appends a line to the saved stderr buffer.
+     * Appends a line to the error output.
      *
      * @param line
      *         to be appended
      */
     public void appendErrorLine(String line) {
-        stdErr.append(line);
-        stdErr.append(System.lineSeparator());
+        errors.appendLine(line);
     }
 
     /**
@@ -622,39 +771,60 @@ public class MergeContext implements Cloneable {
     }
 
     /**
-     * Returns the saved standard error buffer as a <code>String</code>.
+     * Returns the saved error output as a <code>String</code>.
      *
-     * @return the stdErr buffer as a <code>String</code>
+     * @return the error output as a <code>String</code>
      */
     public String getStdErr() {
-        return stdErr.toString();
+        return errors.getContent();
     }
 
     /**
-     * Returns the saved standard input buffer as a <code>String</code>.
+     * Returns the saved output as a <code>String</code>. Depending on the {@link #getOutput() OutputSink} this reads
+     * the output back from a file or returns an empty <code>String</code>.
      *
-     * @return the stdIn buffer as a <code>String</code>
+     * @return the output as a <code>String</code>
+     * @see OutputSink#getContent()
      */
     public String getStdIn() {
-        return stdIn.toString();
+        return output.getContent();
     }
 
     /**
-     * Returns true if stdErr is not empty.
+     * Returns the <code>OutputSink</code> receiving the output of the current merge scenario.
      *
-     * @return true if stdErr is not empty
+     * @return the <code>OutputSink</code> for the output
+     */
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    /**
+     * Sets the <code>OutputSink</code> receiving the output of the current merge scenario.
+     *
+     * @param output
+     *         the new <code>OutputSink</code> for the output
+     */
+    public void setOutput(OutputSink output) {
+        this.output = output;
+    }
+
+    /**
+     * Returns true if the error output is not empty.
+     *
+     * @return true if the error output is not empty
      */
     public boolean hasErrors() {
-        return stdErr.getBuffer().length() != 0;
+        return !errors.isEmpty();
     }
 
     /**
-     * Returns true if stdIn is not empty.
+     * Returns true if the output is not empty.
      *
-     * @return true if stdIn is not empty
+     * @return true if the output is not empty
      */
     public boolean hasOutput() {
-        return stdIn.getBuffer().length() != 0;
+        return !output.isEmpty();
     }
 
     /**
@@ -831,11 +1001,11 @@ public class MergeContext implements Cloneable {
     }
 
     /**
-     * Resets the input streams.
+     * Discards the output and error output collected so far.
      */
     public void resetStreams() {
-        stdIn = new StringWriter();
-        stdErr = new StringWriter();
+        output.reset();
+        errors.reset();
     }
 
     /**
@@ -1027,6 +1197,296 @@ public class MergeContext implements Cloneable {
         this.useMCESubtreeMatcher = useMCESubtreeMatcher;
     }
 
+    /**
+     * Returns the number of children above which unordered nodes are matched using the <code>GreedyMatcher</code>.
+     *
+     * @return the threshold, values smaller than 1 mean that the <code>GreedyMatcher</code> is disabled
+     */
+    public int getGreedyMatcherThreshold() {
+        return greedyMatcherThreshold;
+    }
+
+    /**
+     * Sets the number of children above which unordered nodes are matched using the <code>GreedyMatcher</code>.
+     *
+     * @param greedyMatcherThreshold
+     *         the new threshold, values smaller than 1 disable the <code>GreedyMatcher</code>
+     */
+    public void setGreedyMatcherThreshold(int greedyMatcherThreshold) {
+        this.greedyMatcherThreshold = greedyMatcherThreshold;
+    }
+
+    /**
+     * Returns whether to fix large identical subtrees as anchors before the matching phase of the merge.
+     *
+     * @return true iff anchors should be used
+     */
+    public boolean isUseAnchors() {
+        return useAnchors;
+    }
+
+    /**
+     * Sets whether to fix large identical subtrees as anchors before the matching phase of the merge.
+     *
+     * @param useAnchors
+     *         the new value
+     */
+    public void setUseAnchors(boolean useAnchors) {
+        this.useAnchors = useAnchors;
+    }
+
+    /**
+     * Returns the time in milliseconds the structured merge of a single file may take. The budget is only checked
+     * while matching (see {@link #updateDegradation()}), merging and pretty printing are not interrupted.
+     *
+     * @return the time budget, values smaller than 1 mean that there is no time budget
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Sets the time in milliseconds the structured merge of a single file may take.
+     *
+     * @param timeBudget
+     *         the new time budget, values smaller than 1 disable the time budget
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Starts the time budget for the merge of a new file and resets the degradation level to
+     * {@link KeyEnums.Degradation#NONE}.
+     */
+    public void startTimeBudget() {
+        this.timeBudgetStart = System.currentTimeMillis();
+        this.degradation = KeyEnums.Degradation.NONE;
+    }
+
+    /**
+     * Returns the highest degradation level reached (as per {@link #updateDegradation()}) since the time budget of
+     * the current file was started.
+     *
+     * @return the degradation level
+     */
+    public KeyEnums.Degradation getDegradation() {
+        return degradation;
+    }
+
+    /**
+     * Updates the degradation level according to the part of the time budget of the current file that was used
+     * up. After a third of the budget the level is {@link KeyEnums.Degradation#NO_LOOKAHEAD}, after two thirds it
+     * is {@link KeyEnums.Degradation#GREEDY} and once the budget is exhausted it is
+     * {@link KeyEnums.Degradation#LINEBASED}. The level never decreases until the budget is restarted.
+     *
+     * @return the current degradation level
+     */
+    public KeyEnums.Degradation updateDegradation() {
+
+        if (timeBudget < 1 || timeBudgetStart == 0 || degradation == KeyEnums.Degradation.LINEBASED) {
+            return degradation;
+        }
+
+        long elapsed = System.currentTimeMillis() - timeBudgetStart;
+        KeyEnums.Degradation current;
+
+        if (elapsed >= timeBudget) {
+            current = KeyEnums.Degradation.LINEBASED;
+        } else if (elapsed * 3 >= timeBudget * 2) {
+            current = KeyEnums.Degradation.GREEDY;
+        } else if (elapsed * 3 >= timeBudget) {
+            current = KeyEnums.Degradation.NO_LOOKAHEAD;
+        } else {
+            current = KeyEnums.Degradation.NONE;
+        }
+
+        if (current.compareTo(degradation) > 0) {
+            LOG.fine(() -> String.format("Degrading the merge to %s after %d ms.", current, elapsed));
+            degradation = current;
+        }
+
+        return degradation;
+    }
+
+    /**
+     * Returns the token used to cooperatively cancel the merge.
+     *
+     * @return the <code>CancellationToken</code>
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Sets the token used to cooperatively cancel the merge.
+     *
+     * @param cancellationToken
+     *         the new <code>CancellationToken</code>
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Throws a {@link de.fosd.jdime.execption.MergeCancelledException} if the merge was cancelled using the
+     * <code>CancellationToken</code> of this <code>MergeContext</code>.
+     */
+    public void checkCancelled() {
+        cancellationToken.check();
+    }
+
+    /**
+     * Returns the cache of parsed ASTs.
+     *
+     * @return the <code>ParseCache</code>
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Sets the capacity of the cache of parsed ASTs. As the cache is shared between a <code>MergeContext</code> and
+     * its copies, this affects all of them.
+     *
+     * @param parseCacheSize
+     *         the new capacity in bytes of source code, values smaller than 1 disable the cache
+     */
+    public void setParseCacheSize(long parseCacheSize) {
+        parseCache.setCapacity(parseCacheSize);
+    }
+
+    /**
+     * Returns whether to merge files without running the merge strategy if left and right or one of them and the
+     * base are byte-identical. Unless configured otherwise, this is the case for all strategies but the structured and
+     * n-way strategies. They would pretty-print the AST of the copied revision, so the fast path changes their output.
+     *
+     * @return whether to use the fast path for trivial merges
+     */
+    public boolean isFastPathTrivialMerges() {
+        return fastPathTrivialMerges.orElseGet(() -> !(mergeStrategy instanceof StructuredStrategy
+                                                       || mergeStrategy instanceof NWayStrategy));
+    }
+
+    /**
+     * Sets whether to merge files without running the merge strategy if left and right or one of them and the base
+     * are byte-identical.
+     *
+     * @param fastPathTrivialMerges
+     *         the new value
+     */
+    public void setFastPathTrivialMerges(boolean fastPathTrivialMerges) {
+        this.fastPathTrivialMerges = Optional.of(fastPathTrivialMerges);
+    }
+
+    /**
+     * Returns whether to print merged ASTs by splicing the regenerated parts into the source code of the left
+     * revision instead of pretty-printing them completely.
+     *
+     * @return whether to splice the pretty-printed parts of merged ASTs into the left source code
+     */
+    public boolean isSplicePrettyPrint() {
+        return splicePrettyPrint;
+    }
+
+    /**
+     * Sets whether to print merged ASTs by splicing the regenerated parts into the source code of the left revision
+     * instead of pretty-printing them completely.
+     *
+     * @param splicePrettyPrint
+     *         the new value
+     */
+    public void setSplicePrettyPrint(boolean splicePrettyPrint) {
+        this.splicePrettyPrint = splicePrettyPrint;
+    }
+
+    /**
+     * Returns the implementation the <code>LinebasedStrategy</code> uses to merge files.
+     *
+     * @return the <code>LinebasedBackend</code>
+     */
+    public LinebasedBackend getLinebasedBackend() {
+        return linebasedBackend;
+    }
+
+    /**
+     * Sets the implementation the <code>LinebasedStrategy</code> uses to merge files.
+     *
+     * @param linebasedBackend
+     *         the new <code>LinebasedBackend</code>
+     */
+    public void setLinebasedBackend(LinebasedBackend linebasedBackend) {
+        this.linebasedBackend = linebasedBackend;
+    }
+
+    /**
+     * Returns the number of threads merging the files of recursive merges. Values smaller than 1 stand for one thread
+     * per available processor, 1 means that files are merged immediately while walking the directories.
+     * <p>
+     * Structured merges do not get faster with more threads. ExtendJ keeps global state, so all work on the ASTs
+     * (matching, merging and pretty-printing them) is serialized by {@link ASTNodeArtifact#EXTENDJ_LOCK}. Only the
+     * syntactic parsing, line based merges and I/O of different files overlap. Line based merges therefore scale with
+     * the number of threads, semistructured and combined merges only for the files that merge without conflicts line
+     * based, and structured and n-way merges not at all.
+     *
+     * @return the number of threads merging files
+     */
+    public int getFileMergeThreads() {
+        return fileMergeThreads;
+    }
+
+    /**
+     * Sets the number of threads merging the files of recursive merges.
+     *
+     * @param fileMergeThreads
+     *         the new number of threads, values smaller than 1 use one thread per available processor
+     * @see #getFileMergeThreads()
+     */
+    public void setFileMergeThreads(int fileMergeThreads) {
+        this.fileMergeThreads = fileMergeThreads;
+    }
+
+    /**
+     * Returns whether the <code>CombinedStrategy</code> runs the structured strategy speculatively, concurrently
+     * with the line based strategy. Speculation is skipped if {@link #getFileMergeThreads()} is not 1 or there is only
+     * one processor.
+     *
+     * @return whether the structured strategy is run speculatively
+     */
+    public boolean isCombinedSpeculative() {
+        return combinedSpeculative;
+    }
+
+    /**
+     * Sets whether the <code>CombinedStrategy</code> runs the structured strategy speculatively, concurrently with
+     * the line based strategy.
+     *
+     * @param combinedSpeculative
+     *         whether to run the structured strategy speculatively
+     */
+    public void setCombinedSpeculative(boolean combinedSpeculative) {
+        this.combinedSpeculative = combinedSpeculative;
+    }
+
+    /**
+     * Returns the queue collecting the file merges of the currently running recursive merge.
+     *
+     * @return the <code>FileMergeQueue</code> or <code>null</code> if files are to be merged immediately
+     */
+    public FileMergeQueue getFileMergeQueue() {
+        return fileMergeQueue;
+    }
+
+    /**
+     * Sets the queue collecting the file merges of the currently running recursive merge.
+     *
+     * @param fileMergeQueue
+     *         the new <code>FileMergeQueue</code>, <code>null</code> to merge files immediately
+     */
+    public void setFileMergeQueue(FileMergeQueue fileMergeQueue) {
+        this.fileMergeQueue = fileMergeQueue;
+    }
+
     /**
      * Returns the number of the artifact that should be inspected.
      *
@@ -0,0 +1,359 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.config.merge;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A destination for the output of a single merge scenario. Strategies append the merge result to the
+ * <code>OutputSink</code> of their <code>MergeContext</code> and then write it to the target <code>FileArtifact</code>
+ * using {@link de.fosd.jdime.artifact.file.FileArtifact#write(OutputSink)}. Depending on who needs the output, it is
+ * kept in {@link #memory() memory}, streamed directly to a {@link #file(File) file} or {@link #discard() discarded}.
+ * <code>OutputSink</code>s are not thread safe, every scenario uses its own.
+ */
+public abstract class OutputSink {
+
+    private long length;
+
+    /**
+     * Returns an <code>OutputSink</code> keeping the output in memory.
+     *
+     * @return the new <code>OutputSink</code>
+     */
+    public static OutputSink memory() {
+        return new MemorySink();
+    }
+
+    /**
+     * Returns an <code>OutputSink</code> streaming the output to the given <code>file</code>. The output is written to
+     * a temporary file in the same directory which replaces <code>file</code> when the output is written to it using
+     * {@link #writeTo(File)}. Until then <code>file</code> is left untouched, {@link #reset()} deletes the temporary
+     * file.
+     *
+     * @param file
+     *         the file to write to
+     * @return the new <code>OutputSink</code>
+     */
+    public static OutputSink file(File file) {
+        return new FileSink(file);
+    }
+
+    /**
+     * Returns an <code>OutputSink</code> that only counts the appended characters.
+     *
+     * @return the new <code>OutputSink</code>
+     */
+    public static OutputSink discard() {
+        return new DiscardSink();
+    }
+
+    /**
+     * Appends the given <code>CharSequence</code> to the output.
+     *
+     * @param s
+     *         the <code>CharSequence</code> to append
+     * @throws UncheckedIOException
+     *         if the output can not be written
+     */
+    public final void append(CharSequence s) {
+        length += s.length();
+        doAppend(s);
+    }
+
+    /**
+     * Appends the given line and a line separator to the output.
+     *
+     * @param line
+     *         the line to append
+     * @throws UncheckedIOException
+     *         if the output can not be written
+     */
+    public final void appendLine(CharSequence line) {
+        append(line);
+        append(System.lineSeparator());
+    }
+
+    /**
+     * Returns the number of characters appended since the construction or the last {@link #reset()}.
+     *
+     * @return the length of the output
+     */
+    public final long length() {
+        return length;
+    }
+
+    /**
+     * Returns whether nothing was appended since the construction or the last {@link #reset()}.
+     *
+     * @return true iff the output is empty
+     */
+    public final boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Discards the output appended so far.
+     */
+    public final void reset() {
+        length = 0;
+        doReset();
+    }
+
+    /**
+     * Returns the output as a <code>String</code>. For sinks that do not keep the output in memory this is expensive
+     * or (for discarding sinks) returns the empty <code>String</code>.
+     *
+     * @return the output
+     * @throws UncheckedIOException
+     *         if the output can not be read back
+     */
+    public abstract String getContent();
+
+    /**
+     * Writes the output to the given <code>file</code> using the platform default charset, replacing its content. For
+     * discarding sinks the file will be empty.
+     *
+     * @param file
+     *         the file to write to
+     * @throws IOException
+     *         if the file can not be written
+     */
+    public abstract void writeTo(File file) throws IOException;
+
+    /**
+     * Releases the resources held by this <code>OutputSink</code>. The output remains accessible afterwards.
+     *
+     * @throws UncheckedIOException
+     *         if the output can not be written
+     */
+    public void close() {
+
+    }
+
+    /**
+     * Appends the given <code>CharSequence</code>.
+     *
+     * @param s
+     *         the <code>CharSequence</code> to append
+     */
+    protected abstract void doAppend(CharSequence s);
+
+    /**
+     * Discards the output appended so far.
+     */
+    protected abstract void doReset();
+
+    /**
+     * Keeps the output in a <code>StringBuilder</code>.
+     */
+    private static final class MemorySink extends OutputSink {
+
+        private StringBuilder buffer = new StringBuilder();
+
+        @Override
+        protected void doAppend(CharSequence s) {
+            buffer.append(s);
+        }
+
+        @Override
+        protected void doReset() {
+            buffer = new StringBuilder();
+        }
+
+        @Override
+        public String getContent() {
+            return buffer.toString();
+        }
+
+        @Override
+        public void writeTo(File file) throws IOException {
+            char[] chunk = new char[8192];
+
+            try (Writer writer = new FileWriter(file)) {
+
+                for (int start = 0; start < buffer.length(); start += chunk.length) {
+                    int end = Math.min(start + chunk.length, buffer.length());
+
+                    buffer.getChars(start, end, chunk, 0);
+                    writer.write(chunk, 0, end - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the output to a temporary file that is moved to the target file by {@link #writeTo(File)}.
+     */
+    private static final class FileSink extends OutputSink {
+
+        private final File file;
+
+        private File temp;
+        private Writer writer;
+        private boolean written;
+
+        private FileSink(File file) {
+            this.file = file;
+        }
+
+        @Override
+        protected void doAppend(CharSequence s) {
+
+            try {
+
+                if (writer == null) {
+
+                    if (temp == null) {
+                        File dir = file.getAbsoluteFile().getParentFile();
+
+                        Files.createDirectories(dir.toPath());
+                        temp = Files.createTempFile(dir.toPath(), "." + file.getName() + ".", ".tmp").toFile();
+                    }
+
+                    writer = new FileWriter(temp, true);
+                }
+
+                writer.append(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected void doReset() {
+            close();
+
+            if (temp != null && !temp.delete() && temp.exists()) {
+                throw new UncheckedIOException(new IOException("Could not delete " + temp));
+            }
+
+            temp = null;
+            written = false;
+        }
+
+        @Override
+        public String getContent() {
+            File content = temp != null ? temp : written ? file : null;
+
+            if (content == null) {
+                return "";
+            }
+
+            close();
+
+            try {
+                return new String(Files.readAllBytes(content.toPath()), Charset.defaultCharset());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeTo(File file) throws IOException {
+            close();
+
+            if (this.file.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+
+                if (temp != null) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    temp = null;
+                } else if (!written) {
+                    new FileOutputStream(file).close();
+                }
+
+                written = true;
+                return;
+            }
+
+            File content = temp != null ? temp : written ? this.file : null;
+
+            try (Writer out = new FileWriter(file)) {
+
+                if (content != null) {
+
+                    try (Reader in = new FileReader(content)) {
+                        char[] chunk = new char[8192];
+                        int read;
+
+                        while ((read = in.read(chunk)) != -1) {
+                            out.write(chunk, 0, read);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+
+            if (writer == null) {
+                return;
+            }
+
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Discards the output.
+     */
+    private static final class DiscardSink extends OutputSink {
+
+        @Override
+        protected void doAppend(CharSequence s) {
+
+        }
+
+        @Override
+        protected void doReset() {
+
+        }
+
+        @Override
+        public String getContent() {
+            return "";
+        }
+
+        @Override
+        public void writeTo(File file) throws IOException {
+            new FileOutputStream(file).close();
+        }
+    }
+}
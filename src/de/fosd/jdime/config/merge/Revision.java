@@ -87,11 +87,30 @@ public class Revision {
         }
     };
 
+    /**
+     * The slot of <code>Revision</code>s that do not have one of the fixed slots.
+     *
+     * @see #getSlot()
+     */
+    public static final int NO_SLOT = -1;
+
+    /**
+     * The number of fixed slots.
+     *
+     * @see #getSlot()
+     */
+    public static final int NUM_SLOTS = 3;
+
     /**
      * Name of the revision.
      */
     private String name;
 
+    /**
+     * The slot of the revision.
+     */
+    private int slot;
+
     /**
      * Constructs a new <code>Revision</code> with the given name.
      *
@@ -100,6 +119,7 @@ public class Revision {
      */
     public Revision(String name) {
         this.name = name;
+        this.slot = slot(name);
     }
 
     /**
@@ -119,6 +139,44 @@ public class Revision {
      */
     public void setName(String name) {
         this.name = name;
+        this.slot = slot(name);
+    }
+
+    /**
+     * Returns the slot of this <code>Revision</code>. The <code>Revision</code>s of a left, base and right merge
+     * scenario have the fixed slots 0 to {@link #NUM_SLOTS} - 1 in which data indexed by <code>Revision</code> can be
+     * stored in an array instead of a map. Equal <code>Revision</code>s always have the same slot. All other
+     * <code>Revision</code>s (e.g. those of N-way merges) have the slot {@link #NO_SLOT}.
+     *
+     * @return the slot of this <code>Revision</code>
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Returns the slot for a <code>Revision</code> having the given name.
+     *
+     * @param name
+     *         the name of the <code>Revision</code>
+     * @return the slot
+     */
+    private static int slot(String name) {
+
+        if (name == null) {
+            return NO_SLOT;
+        }
+
+        switch (name) {
+            case "left":
+                return 0;
+            case "base":
+                return 1;
+            case "right":
+                return 2;
+            default:
+                return NO_SLOT;
+        }
     }
 
     /**
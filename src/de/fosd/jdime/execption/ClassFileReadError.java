@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.execption;
+
+/**
+ * An error indicating that ExtendJ could not read the class file of a library class. It is an <code>Error</code>
+ * rather than an exception so that it passes the <code>catch (Exception)</code> blocks in ExtendJ's bytecode reader,
+ * one of which terminates the JVM. The strategies translate it into a failure to parse the merged files.
+ *
+ * @see de.fosd.jdime.artifact.ast.ASTNodeArtifact#EXTENDJ_LOCK
+ */
+public class ClassFileReadError extends Error {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new <code>ClassFileReadError</code> with the specified detail message and cause.
+     *
+     * @param message
+     *         the detail message
+     * @param cause
+     *         the cause, may be <code>null</code>
+     */
+    public ClassFileReadError(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
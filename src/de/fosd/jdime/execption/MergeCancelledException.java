@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.execption;
+
+/**
+ * An exception indicating that the merge was cancelled using its
+ * {@link de.fosd.jdime.config.merge.CancellationToken}. As with every <code>AbortException</code> the merge must not
+ * fall back to another strategy but end as soon as possible.
+ */
+public class MergeCancelledException extends AbortException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new <code>MergeCancelledException</code> with the specified detail message.
+     *
+     * @param message
+     *         the detail message
+     */
+    public MergeCancelledException(String message) {
+        super(message);
+    }
+}
@@ -23,10 +23,14 @@
  */
 package de.fosd.jdime.matcher;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -36,8 +40,11 @@ import java.util.stream.Stream;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.Artifacts;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.execption.MergeCancelledException;
+import de.fosd.jdime.execption.TimeBudgetExceededException;
 import de.fosd.jdime.matcher.cost_model.CMMode;
 import de.fosd.jdime.matcher.cost_model.CostModelMatcher;
 import de.fosd.jdime.matcher.matching.Color;
@@ -48,6 +55,7 @@ import de.fosd.jdime.matcher.ordered.EqualityMatcher;
 import de.fosd.jdime.matcher.ordered.OrderedMatcher;
 import de.fosd.jdime.matcher.ordered.mceSubtree.MCESubtreeMatcher;
 import de.fosd.jdime.matcher.ordered.simpleTree.SimpleTreeMatcher;
+import de.fosd.jdime.matcher.unordered.GreedyMatcher;
 import de.fosd.jdime.matcher.unordered.UniqueLabelMatcher;
 import de.fosd.jdime.matcher.unordered.UnorderedMatcher;
 import de.fosd.jdime.matcher.unordered.assignmentProblem.HungarianMatcher;
@@ -56,6 +64,9 @@ import de.fosd.jdime.strdump.DumpMode;
 import de.fosd.jdime.util.UnorderedTuple;
 
 import static de.fosd.jdime.config.merge.MergeContext.LOOKAHEAD_OFF;
+import static de.fosd.jdime.stats.KeyEnums.Degradation.GREEDY;
+import static de.fosd.jdime.stats.KeyEnums.Degradation.LINEBASED;
+import static de.fosd.jdime.stats.KeyEnums.Degradation.NONE;
 import static de.fosd.jdime.stats.KeyEnums.Type.METHOD;
 import static de.fosd.jdime.stats.KeyEnums.Type.TRY;
 
@@ -86,13 +97,21 @@ public class Matcher<T extends Artifact<T>> {
     private static final Logger LOG = Logger.getLogger(Matcher.class.getCanonicalName());
     private static final String ID = Matcher.class.getSimpleName();
 
+    /**
+     * The minimum height (a leaf has height 1) of the identical subtrees that are fixed as anchors if
+     * {@link MergeContext#isUseAnchors()} is set.
+     */
+    private static final int ANCHOR_MIN_HEIGHT = 3;
+
     private int calls = 0;
     private int equalityCalls = 0;
     private int orderedCalls = 0;
     private int unorderedCalls = 0;
+    private int greedyCalls = 0;
 
     private UnorderedMatcher<T> unorderedMatcher;
     private UnorderedMatcher<T> unorderedLabelMatcher;
+    private UnorderedMatcher<T> greedyMatcher;
     private OrderedMatcher<T> orderedMatcher;
     private OrderedMatcher<T> mceSubtreeMatcher;
 
@@ -108,6 +127,20 @@ public class Matcher<T extends Artifact<T>> {
 
     private Set<Artifact<T>> cachedRoots;
 
+    private Map<T, T> anchorPartners;
+    private Map<T, Matchings<T>> anchors;
+
+    /**
+     * The left nodes of the anchors whose parents do not match, see {@link #addMovedAnchors(Matchings)}.
+     */
+    private List<T> movedAnchors;
+
+    /**
+     * The pairs of identical subtrees registered using {@link #addIdenticalPair(Artifact, Artifact)} that are
+     * anchored in the next call of {@link #match(MergeContext, Artifact, Artifact, Color)}.
+     */
+    private Map<T, T> identicalPairs;
+
     /**
      * Constructs a new <code>Matcher</code>.
      */
@@ -120,6 +153,7 @@ public class Matcher<T extends Artifact<T>> {
 
         unorderedMatcher = new HungarianMatcher<>(rootMatcher);
         unorderedLabelMatcher = new UniqueLabelMatcher<>(rootMatcher);
+        greedyMatcher = new GreedyMatcher<>(rootMatcher);
         orderedMatcher = new SimpleTreeMatcher<>(rootMatcher);
         mceSubtreeMatcher = new MCESubtreeMatcher<>(rootMatcher);
 
@@ -133,6 +167,26 @@ public class Matcher<T extends Artifact<T>> {
         uniquelyLabeledChildren = new HashSet<>();
         fullyOrdered = new HashSet<>();
         cachedRoots = new HashSet<>();
+
+        anchorPartners = new HashMap<>();
+        anchors = new HashMap<>();
+        movedAnchors = new ArrayList<>();
+        identicalPairs = new LinkedHashMap<>();
+    }
+
+    /**
+     * Registers <code>left</code> and <code>right</code> as the roots of subtrees the caller knows to be identical
+     * (e.g. because their content digests are equal). In the next call of
+     * {@link #match(MergeContext, Artifact, Artifact, Color)} they are anchored regardless of
+     * {@link MergeContext#isUseAnchors()}, the concrete matchers therefore never descend into them.
+     *
+     * @param left
+     *         the root of the left subtree
+     * @param right
+     *         the root of the right subtree
+     */
+    public void addIdenticalPair(T left, T right) {
+        identicalPairs.put(left, right);
     }
 
     /**
@@ -152,12 +206,23 @@ public class Matcher<T extends Artifact<T>> {
         Matchings<T> matchings;
 
         if (context.getCMMatcherMode() == CMMode.REPLACEMENT) {
+            identicalPairs.clear();
             matchings = cmMatcher.match(context, left, right);
         } else {
             cache(context, left, right);
-            matchings = match(context, left, right);
+            findAnchors(context, left, right);
+
+            try {
+                matchings = match(context, left, right);
+            } catch (MergeCancelledException e) {
+                releaseCaches();
+                throw e;
+            }
 
-            if (context.getCMMatcherMode() == CMMode.POST_PROCESSOR && matchings.get(left, right).map(m -> !m.hasFullyMatched()).orElse(true)) {
+            addMovedAnchors(matchings);
+
+            if (context.getCMMatcherMode() == CMMode.POST_PROCESSOR && context.updateDegradation() == NONE
+                    && matchings.get(left, right).map(m -> !m.hasFullyMatched()).orElse(true)) {
                 matchings = cmMatcher.match(context, left, right, matchings);
             }
         }
@@ -220,6 +285,22 @@ public class Matcher<T extends Artifact<T>> {
         cachedRoots.add(right);
     }
 
+    /**
+     * Drops all cached results (and with them the references to the trees that were matched). Used when the merge
+     * is cancelled so that the trees may be collected without waiting for this <code>Matcher</code> to be discarded.
+     */
+    private void releaseCaches() {
+        trivialMatches.clear();
+        orderedChildren.clear();
+        uniquelyLabeledChildren.clear();
+        fullyOrdered.clear();
+        cachedRoots.clear();
+        anchorPartners.clear();
+        anchors.clear();
+        movedAnchors.clear();
+        identicalPairs.clear();
+    }
+
     /**
      * Caches (recursively for every artifact in the tree under <code>artifact</code>) the ordering
      * (whether the artifact itself is ordered, its children are ordered or the whole tree with <code>artifact</code>
@@ -246,10 +327,183 @@ public class Matcher<T extends Artifact<T>> {
         }
     }
 
+    /**
+     * Finds large identical subtrees of <code>left</code> and <code>right</code> and fixes them as anchors if
+     * {@link MergeContext#isUseAnchors()} is set. All nodes of the trees whose height is at least
+     * {@link #ANCHOR_MIN_HEIGHT} are bucketed by a hash of their subtree. Buckets containing exactly one node of
+     * each tree are then processed starting with the highest nodes. Two nodes become anchors if their subtrees are
+     * identical according to the <code>EqualityMatcher</code> and if they are not part of a subtree that was
+     * anchored before. Anchored nodes are only matched with their partner. The concrete matchers therefore only have
+     * to consider the unanchored remainder of the trees. Identical subtrees that were moved to a parent that does not
+     * match their original one are anchored as well. As the matchers never pair them, their matchings are added after
+     * the matching of the trees, see {@link #addMovedAnchors(Matchings)}. The pairs registered using
+     * {@link #addIdenticalPair(Artifact, Artifact)} are anchored first.
+     *
+     * @param context
+     *         the <code>MergeContext</code>
+     * @param left
+     *         the left tree
+     * @param right
+     *         the right tree
+     */
+    private void findAnchors(MergeContext context, T left, T right) {
+        anchorPartners.clear();
+        anchors.clear();
+        movedAnchors.clear();
+
+        EqualityMatcher<T> anchorMatcher = new EqualityMatcher<>(null);
+        Set<T> covered = new HashSet<>();
+
+        for (Map.Entry<T, T> pair : identicalPairs.entrySet()) {
+            anchor(context, anchorMatcher, pair.getKey(), pair.getValue(), covered);
+        }
+
+        identicalPairs.clear();
+
+        if (!context.isUseAnchors()) {
+            return;
+        }
+
+        Map<T, Integer> heights = new HashMap<>();
+        Map<Integer, List<T>> lBuckets = new HashMap<>();
+        Map<Integer, List<T>> rBuckets = new HashMap<>();
+
+        hashSubtrees(left, heights, lBuckets);
+        hashSubtrees(right, heights, rBuckets);
+
+        List<UnorderedTuple<T, T>> candidates = new ArrayList<>();
+
+        lBuckets.forEach((hash, lNodes) -> {
+            List<T> rNodes = rBuckets.get(hash);
+
+            if (lNodes.size() == 1 && rNodes != null && rNodes.size() == 1) {
+                candidates.add(UnorderedTuple.of(lNodes.get(0), rNodes.get(0)));
+            }
+        });
+
+        Comparator<UnorderedTuple<T, T>> byHeight = Comparator.comparing(c -> heights.get(c.getX()));
+        candidates.sort(byHeight.reversed().thenComparing(UnorderedTuple::getX));
+
+        for (UnorderedTuple<T, T> candidate : candidates) {
+            T l = candidate.getX();
+            T r = candidate.getY();
+
+            if (l == left || r == right || covered.contains(l) || covered.contains(r)) {
+                continue;
+            }
+
+            anchor(context, anchorMatcher, l, r, covered);
+        }
+
+        LOG.fine(() -> String.format("Fixed %d anchors between %s and %s.", anchors.size() / 2, left.getId(), right.getId()));
+    }
+
+    /**
+     * Fixes <code>l</code> and <code>r</code> as anchors if their subtrees are identical according to the
+     * <code>anchorMatcher</code> and adds all nodes of both subtrees to <code>covered</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code>
+     * @param anchorMatcher
+     *         the <code>EqualityMatcher</code> to match the subtrees with
+     * @param l
+     *         the root of the left subtree
+     * @param r
+     *         the root of the right subtree
+     * @param covered
+     *         the nodes of the subtrees that were anchored so far
+     */
+    private void anchor(MergeContext context, EqualityMatcher<T> anchorMatcher, T l, T r, Set<T> covered) {
+        Matchings<T> matchings = anchorMatcher.match(context, l, r);
+
+        if (!matchings.get(l, r).isPresent()) {
+            return; // the hashes collided or the subtrees differ in nodes the caller did not compare
+        }
+
+        Artifacts.dfsStream(l).forEach(covered::add);
+        Artifacts.dfsStream(r).forEach(covered::add);
+
+        anchorPartners.put(l, r);
+        anchorPartners.put(r, l);
+        anchors.put(l, matchings);
+        anchors.put(r, matchings);
+
+        if (!l.getParent().matches(r.getParent())) {
+            movedAnchors.add(l);
+        }
+    }
+
+    /**
+     * Adds the <code>Matchings</code> of the anchors whose parents do not match to <code>matchings</code>. The
+     * matchers only pair nodes below matching parents and therefore never reach these anchors. The
+     * <code>Matching</code> of the anchored nodes themselves is recorded as a <code>LookAheadMatching</code> from
+     * their parents, just like the matchings lookahead finds between nodes on different levels of the trees.
+     *
+     * @param matchings
+     *         the <code>Matchings</code> of the roots of the trees
+     */
+    private void addMovedAnchors(Matchings<T> matchings) {
+
+        for (T l : movedAnchors) {
+            T r = anchorPartners.get(l);
+
+            if (matchings.get(l, r).isPresent()) {
+                continue;
+            }
+
+            for (Matching<T> matching : anchors.get(l)) {
+
+                if (matching.getLeft() == l && matching.getRight() == r) {
+                    matchings.add(new LookAheadMatching<>(matching, l.getParent(), r.getParent()));
+                } else {
+                    matchings.add(matching);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the height and a hash of the subtree rooted in <code>artifact</code> (and recursively in all of its
+     * children). Artifacts whose height is at least {@link #ANCHOR_MIN_HEIGHT} are added to the bucket of their hash.
+     *
+     * @param artifact
+     *         the root of the subtree to hash
+     * @param heights
+     *         the <code>Map</code> to store the height of every artifact in
+     * @param buckets
+     *         the buckets of artifacts with equal hashes
+     * @return the hash of the subtree rooted in <code>artifact</code>
+     */
+    private int hashSubtrees(T artifact, Map<T, Integer> heights, Map<Integer, List<T>> buckets) {
+        int hash = artifact.getLabelHash();
+        int height = 0;
+
+        for (T child : artifact.getChildren()) {
+            hash = 31 * hash + hashSubtrees(child, heights, buckets);
+            height = Math.max(height, heights.get(child));
+        }
+
+        height++;
+        heights.put(artifact, height);
+
+        if (height >= ANCHOR_MIN_HEIGHT) {
+            buckets.computeIfAbsent(hash, h -> new ArrayList<>()).add(artifact);
+        }
+
+        return hash;
+    }
+
     /**
      * @see MatcherInterface#match(MergeContext, Artifact, Artifact)
      */
     private Matchings<T> match(MergeContext context, T left, T right) {
+        context.checkCancelled();
+
+        if (context.updateDegradation() == LINEBASED) {
+            String msg = String.format("Time budget of %d ms exceeded while matching %s and %s.",
+                    context.getTimeBudget(), left.getId(), right.getId());
+            throw new TimeBudgetExceededException(msg);
+        }
 
         if (left.isConflict()) {
             Matchings<T> m = Matchings.of(left, right, 0);
@@ -290,6 +544,26 @@ public class Matcher<T extends Artifact<T>> {
             return maxMatching;
         }
 
+        if (anchorPartners.containsKey(left) || anchorPartners.containsKey(right)) {
+
+            if (anchorPartners.get(left) == right) {
+                calls++;
+                equalityCalls++;
+                logMatcherUse(EqualityMatcher.class, left, right);
+
+                Matchings<T> m = new Matchings<>();
+                m.addAll(anchors.get(left));
+
+                return m;
+            }
+
+            // at least one of the nodes is anchored to a node elsewhere in the other tree
+            Matchings<T> m = Matchings.of(left, right, 0);
+            m.get(left, right).get().setAlgorithm(ID);
+
+            return m;
+        }
+
         /*
          * Before firing up potentially expensive matching algorithms, we check whether the trees are identical.
          * To avoid redundant calls, we save the matchings reported by EqualityMatcher and perform lookups on
@@ -396,9 +670,11 @@ public class Matcher<T extends Artifact<T>> {
      * @return the <code>Matchings</code>
      */
     private Matchings<T> getMatchings(MergeContext context, T left, T right) {
+        KeyEnums.Degradation degradation = context.getDegradation();
+        boolean useMCESubtreeMatcher = context.isUseMCESubtreeMatcher() && degradation == NONE;
         boolean fullyOrderedChildren = false;
 
-        if (context.isUseMCESubtreeMatcher()) {
+        if (useMCESubtreeMatcher) {
             Stream<T> lCStr = left.getChildren().stream();
             Stream<T> rCStr = right.getChildren().stream();
             fullyOrderedChildren = lCStr.allMatch(fullyOrdered::contains) && rCStr.allMatch(fullyOrdered::contains);
@@ -411,7 +687,7 @@ public class Matcher<T extends Artifact<T>> {
 
         Matchings<T> matchings;
 
-        if (fullyOrderedChildren && context.isUseMCESubtreeMatcher()) {
+        if (fullyOrderedChildren && useMCESubtreeMatcher) {
             orderedCalls++;
 
             logMatcherUse(mceSubtreeMatcher.getClass(), left, right);
@@ -427,13 +703,22 @@ public class Matcher<T extends Artifact<T>> {
             if (onlyLabeledChildren) {
                 logMatcherUse(unorderedLabelMatcher.getClass(), left, right);
                 matchings = unorderedLabelMatcher.match(context, left, right);
+            } else if (degradation.compareTo(GREEDY) >= 0 || isTooWide(context, left, right)) {
+                greedyCalls++;
+
+                if (context.hasStatistics()) {
+                    context.getStatistics().getCurrentFileMergeScenarioStatistics().incrementApproximatedMatchings();
+                }
+
+                logMatcherUse(greedyMatcher.getClass(), left, right);
+                matchings = greedyMatcher.match(context, left, right);
             } else {
                 logMatcherUse(unorderedMatcher.getClass(), left, right);
                 matchings = unorderedMatcher.match(context, left, right);
             }
         }
 
-        if (context.getCMMatcherMode() != CMMode.INTEGRATED) {
+        if (context.getCMMatcherMode() != CMMode.INTEGRATED || degradation != NONE) {
             return matchings;
         }
 
@@ -457,6 +742,24 @@ public class Matcher<T extends Artifact<T>> {
         return matchings;
     }
 
+    /**
+     * Returns whether <code>left</code> or <code>right</code> have more children than the threshold set in the
+     * <code>MergeContext</code> above which unordered nodes are matched using the approximating
+     * <code>GreedyMatcher</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code>
+     * @param left
+     *         the left node
+     * @param right
+     *         the right node
+     * @return true iff the children of the nodes should be matched by the <code>GreedyMatcher</code>
+     */
+    private boolean isTooWide(MergeContext context, T left, T right) {
+        int threshold = context.getGreedyMatcherThreshold();
+        return threshold > 0 && Math.max(left.getNumChildren(), right.getNumChildren()) > threshold;
+    }
+
     /**
      * If <code>left</code> and <code>right</code> do not match, this method attempts to find two <code>Artifacts</code>
      * (children of <code>left</code> and <code>right</code>) with which to resume matching the two trees. Depending
@@ -476,7 +779,7 @@ public class Matcher<T extends Artifact<T>> {
      */
     private Optional<UnorderedTuple<T, T>> lookAhead(MergeContext context, T left, T right) {
 
-        if (!context.isLookAhead()) {
+        if (!context.isLookAhead() || context.getDegradation() != NONE) {
             return Optional.empty();
         }
 
@@ -612,6 +915,7 @@ public class Matcher<T extends Artifact<T>> {
         assert (calls == unorderedCalls + orderedCalls + equalityCalls)
                 : String.format("Wrong sum for matcher calls: %d + %d + %d != %d",
                 unorderedCalls, orderedCalls, equalityCalls, calls);
-        return "Matcher calls (all/ordered/unordered/equality): " + calls + "/" + orderedCalls + "/" + unorderedCalls + "/" + equalityCalls;
+        return "Matcher calls (all/ordered/unordered/equality/greedy): " + calls + "/" + orderedCalls + "/" + unorderedCalls
+                + "/" + equalityCalls + "/" + greedyCalls;
     }
 }
@@ -984,6 +984,8 @@ public class CostModelMatcher<T extends Artifact<T>> implements MatcherInterface
         float lowestCost = mObjVal.matchingsCost;
 
         for (int i = 0; i < context.getCostModelIterations(); i++) {
+            context.checkCancelled();
+
             CMMatchings<T> mHat = propose(m, preFixed, parameters);
             AcceptanceProbability mHatAccProb = acceptanceProb(mObjVal.objValue, mHat, parameters);
 
@@ -0,0 +1,328 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.unordered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.matcher.MatcherInterface;
+import de.fosd.jdime.matcher.matching.Matchings;
+
+/**
+ * An <code>UnorderedMatcher</code> that approximates the maximum weight matching of the children of two nodes by
+ * greedy best-first assignment. It is meant for very wide nodes (e.g. generated classes with thousands of members)
+ * where the m &times; n matrix required by the
+ * {@link de.fosd.jdime.matcher.unordered.assignmentProblem.HungarianMatcher} is too expensive to compute.
+ * <p>
+ * Children are assigned in three phases:
+ * <ol>
+ *     <li>Children with equal unique labels (see {@link Artifact#getUniqueLabel()}) are paired up directly.</li>
+ *     <li>The remaining children of the right node are put into buckets by their label hash (see
+ *     {@link Artifact#getLabelHash()}). Every remaining left child is scored recursively against the children in its
+ *     bucket whose roots match it, but against at most {@link #MAX_CANDIDATES} of them (the ones closest to the
+ *     relative position of the left child). The scored pairs are assigned in the order of descending score using a
+ *     priority queue.</li>
+ *     <li>A single local improvement pass swaps the partners of two assigned pairs if that increases the sum of
+ *     their scores.</li>
+ * </ol>
+ * Pairs of children whose roots do not match are never considered. The result is therefore not guaranteed to be
+ * optimal, especially if lookahead is enabled or many children share the same label.
+ *
+ * @param <T>
+ *         type of artifact
+ */
+public class GreedyMatcher<T extends Artifact<T>> extends UnorderedMatcher<T> {
+
+    private static final String ID = GreedyMatcher.class.getSimpleName();
+
+    /**
+     * The maximum number of children of the right node a child of the left node is scored against in phase 2.
+     */
+    static final int MAX_CANDIDATES = 32;
+
+    /**
+     * A scored pair of children of the nodes being matched.
+     */
+    private static final class Candidate<T extends Artifact<T>> {
+
+        private final int left;
+        private final int right;
+        private final int score;
+        private final Matchings<T> matchings;
+
+        private Candidate(int left, int right, int score, Matchings<T> matchings) {
+            this.left = left;
+            this.right = right;
+            this.score = score;
+            this.matchings = matchings;
+        }
+    }
+
+    /**
+     * Orders <code>Candidate</code>s by descending score. Ties are broken using the child indices to make the
+     * assignment deterministic.
+     */
+    private final Comparator<Candidate<T>> byScore = Comparator.<Candidate<T>>comparingInt(c -> -c.score)
+                                                               .thenComparingInt(c -> c.left)
+                                                               .thenComparingInt(c -> c.right);
+
+    /**
+     * Constructs a new <code>GreedyMatcher</code> using the given <code>matcher</code> for recursive calls.
+     *
+     * @param matcher
+     *         the parent <code>MatcherInterface</code>
+     */
+    public GreedyMatcher(MatcherInterface<T> matcher) {
+        super(matcher);
+    }
+
+    @Override
+    public final Matchings<T> match(final MergeContext context, final T left, final T right) {
+        int rootMatching = left.matches(right) ? 1 : 0;
+
+        int m = left.getNumChildren();
+        int n = right.getNumChildren();
+
+        if (m == 0 || n == 0) {
+            Matchings<T> matchings = Matchings.of(left, right, rootMatching);
+            matchings.get(left, right).get().setAlgorithm(ID);
+
+            return matchings;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Candidate<T>[] leftAssigned = new Candidate[m];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Candidate<T>[] rightAssigned = new Candidate[n];
+
+        // phase 1: children with equal unique labels
+        Map<String, Integer> rightLabels = new HashMap<>();
+
+        for (int j = 0; j < n; j++) {
+            Optional<Supplier<String>> label = right.getChild(j).getUniqueLabel();
+
+            if (label.isPresent()) {
+                // labels occurring more than once are not unique and therefore marked with -1
+                rightLabels.merge(label.get().get(), j, (o, v) -> -1);
+            }
+        }
+
+        for (int i = 0; i < m && !rightLabels.isEmpty(); i++) {
+            Optional<Supplier<String>> label = left.getChild(i).getUniqueLabel();
+
+            if (!label.isPresent()) {
+                continue;
+            }
+
+            Integer j = rightLabels.remove(label.get().get());
+
+            if (j != null && j >= 0) {
+                Candidate<T> c = score(context, left, right, i, j);
+
+                if (c.score > 0) {
+                    leftAssigned[i] = c;
+                    rightAssigned[j] = c;
+                }
+            }
+        }
+
+        // phase 2: best-first assignment of the remaining pairs with matching roots
+        Map<Integer, List<Integer>> buckets = new HashMap<>();
+
+        for (int j = 0; j < n; j++) {
+
+            if (rightAssigned[j] == null) {
+                buckets.computeIfAbsent(right.getChild(j).getLabelHash(), h -> new ArrayList<>()).add(j);
+            }
+        }
+
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>(byScore);
+        List<List<Candidate<T>>> scored = new ArrayList<>(m);
+
+        for (int i = 0; i < m; i++) {
+            List<Candidate<T>> candidates = new ArrayList<>();
+            scored.add(candidates);
+
+            if (leftAssigned[i] != null) {
+                continue;
+            }
+
+            T lChild = left.getChild(i);
+            List<Integer> bucket = buckets.get(lChild.getLabelHash());
+
+            if (bucket == null) {
+                continue;
+            }
+
+            for (int j : window(bucket, (int) ((long) i * n / m))) {
+
+                if (!lChild.matches(right.getChild(j))) {
+                    continue;
+                }
+
+                Candidate<T> c = score(context, left, right, i, j);
+
+                if (c.score > 0) {
+                    queue.add(c);
+                    candidates.add(c);
+                }
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            Candidate<T> c = queue.poll();
+
+            if (leftAssigned[c.left] == null && rightAssigned[c.right] == null) {
+                leftAssigned[c.left] = c;
+                rightAssigned[c.right] = c;
+            }
+        }
+
+        // phase 3: swap partners of assigned pairs if both crossed pairs were scored and the swap is an improvement
+        for (int i = 0; i < m; i++) {
+            Candidate<T> a = leftAssigned[i];
+
+            if (a == null) {
+                continue;
+            }
+
+            for (Candidate<T> aCross : scored.get(i)) {
+                Candidate<T> b = rightAssigned[aCross.right];
+
+                if (b == null || b == a) {
+                    continue;
+                }
+
+                Candidate<T> bCross = find(scored.get(b.left), a.right);
+
+                if (bCross != null && aCross.score + bCross.score > a.score + b.score) {
+                    leftAssigned[a.left] = aCross;
+                    rightAssigned[aCross.right] = aCross;
+                    leftAssigned[b.left] = bCross;
+                    rightAssigned[bCross.right] = bCross;
+                    a = aCross;
+                }
+            }
+        }
+
+        List<Matchings<T>> children = new ArrayList<>();
+        int sum = 0;
+
+        for (Candidate<T> c : leftAssigned) {
+
+            if (c != null) {
+                children.add(c.matchings);
+                sum += c.score;
+            }
+        }
+
+        Matchings<T> result = Matchings.of(left, right, sum + rootMatching);
+        result.get(left, right).get().setAlgorithm(ID);
+        result.addAllMatchings(children);
+
+        return result;
+    }
+
+    /**
+     * Recursively matches the <code>i</code>-th child of <code>left</code> with the <code>j</code>-th child of
+     * <code>right</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code>
+     * @param left
+     *         the left node
+     * @param right
+     *         the right node
+     * @param i
+     *         the index of the left child
+     * @param j
+     *         the index of the right child
+     * @return the scored pair of children
+     */
+    private Candidate<T> score(MergeContext context, T left, T right, int i, int j) {
+        T lChild = left.getChild(i);
+        T rChild = right.getChild(j);
+
+        Matchings<T> matchings = matcher.match(context, lChild, rChild);
+        int score = matchings.get(lChild, rChild).get().getScore();
+
+        return new Candidate<>(i, j, score, matchings);
+    }
+
+    /**
+     * Returns the at most {@link #MAX_CANDIDATES} indices from the given <code>bucket</code> that are closest to
+     * <code>position</code>.
+     *
+     * @param bucket
+     *         the ascending indices of the children of the right node in a bucket
+     * @param position
+     *         the index of the child of the right node at the relative position of the left child
+     * @return the indices to score the left child against
+     */
+    private static List<Integer> window(List<Integer> bucket, int position) {
+
+        if (bucket.size() <= MAX_CANDIDATES) {
+            return bucket;
+        }
+
+        int from = Collections.binarySearch(bucket, position);
+
+        if (from < 0) {
+            from = -from - 1;
+        }
+
+        from = Math.max(0, Math.min(from - MAX_CANDIDATES / 2, bucket.size() - MAX_CANDIDATES));
+        return bucket.subList(from, from + MAX_CANDIDATES);
+    }
+
+    /**
+     * Returns the <code>Candidate</code> pairing a left child with the right child with index <code>right</code>.
+     *
+     * @param candidates
+     *         the <code>Candidate</code>s scored for the left child
+     * @param right
+     *         the index of the right child
+     * @return the <code>Candidate</code> or <code>null</code> if the pair was not scored
+     */
+    private static <T extends Artifact<T>> Candidate<T> find(List<Candidate<T>> candidates, int right) {
+
+        for (Candidate<T> c : candidates) {
+
+            if (c.right == right) {
+                return c;
+            }
+        }
+
+        return null;
+    }
+}
@@ -23,13 +23,17 @@
  */
 package de.fosd.jdime.merge;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.Revision;
@@ -88,6 +92,7 @@ public class Merge<T extends Artifact<T>> implements MergeInterface<T> {
                 // 3-way merge
 
                 // diff base left
+                pairIdenticalDirectories(matcher, base, left, context);
                 m = matcher.match(context, base, left, Color.GREEN).get(base, left).get();
 
                 if (m.getScore() == 0) {
@@ -95,6 +100,7 @@ public class Merge<T extends Artifact<T>> implements MergeInterface<T> {
                 }
 
                 // diff base right
+                pairIdenticalDirectories(matcher, base, right, context);
                 m = matcher.match(context, base, right, Color.GREEN).get(base, right).get();
 
                 if (m.getScore() == 0) {
@@ -103,6 +109,7 @@ public class Merge<T extends Artifact<T>> implements MergeInterface<T> {
             }
 
             // diff left right
+            pairIdenticalDirectories(matcher, left, right, context);
             m = matcher.match(context, left, right, Color.BLUE).get(left, right).get();
 
             if (context.isDiffOnly() && left.isRoot() && left instanceof ASTNodeArtifact) {
@@ -223,6 +230,60 @@ public class Merge<T extends Artifact<T>> implements MergeInterface<T> {
         }
     }
 
+    /**
+     * Registers the directories below <code>x</code> and <code>y</code> whose Merkle digests (see
+     * {@link FileArtifact#getContentDigest()}) are equal with the <code>matcher</code> as identical subtrees. The
+     * trees are descended along directories of equal names until the digests are equal, so the matcher never
+     * descends into unchanged subtrees and the fast path for trivial merges later merges them without matching.
+     * Only done for <code>FileArtifact</code>s if {@link MergeContext#isFastPathTrivialMerges()} is set.
+     *
+     * @param matcher
+     *         the <code>Matcher</code> that will match <code>x</code> and <code>y</code>
+     * @param x
+     *         the first tree
+     * @param y
+     *         the second tree
+     * @param context
+     *         the <code>MergeContext</code>
+     */
+    private void pairIdenticalDirectories(Matcher<T> matcher, T x, T y, MergeContext context) {
+
+        if (!(x instanceof FileArtifact) || !context.isFastPathTrivialMerges()) {
+            return;
+        }
+
+        Map<String, T> yChildren = new HashMap<>();
+
+        for (T yChild : y.getChildren()) {
+
+            if (((FileArtifact) yChild).isDirectory()) {
+                yChildren.put(((FileArtifact) yChild).getFile().getName(), yChild);
+            }
+        }
+
+        for (T xChild : x.getChildren()) {
+            FileArtifact xDir = (FileArtifact) xChild;
+
+            if (!xDir.isDirectory() || !yChildren.containsKey(xDir.getFile().getName())) {
+                continue;
+            }
+
+            T yChild = yChildren.get(xDir.getFile().getName());
+
+            try {
+
+                if (xDir.getContentDigest().equals(((FileArtifact) yChild).getContentDigest())) {
+                    LOG.finest(() -> String.format("%s and %s are identical", prefix(xChild), yChild.getId()));
+                    matcher.addIdenticalPair(xChild, yChild);
+                } else {
+                    pairIdenticalDirectories(matcher, xChild, yChild, context);
+                }
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, e, () -> "Could not compute the content digests of " + xDir);
+            }
+        }
+    }
+
     /**
      * Returns the logging prefix.
      *
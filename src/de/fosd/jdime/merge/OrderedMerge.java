@@ -99,6 +99,8 @@ public class OrderedMerge<T extends Artifact<T>> implements MergeInterface<T> {
         }
 
         while (!leftdone || !rightdone) {
+            context.checkCancelled();
+
             if (!leftdone && !r.contains(leftChild)) {
                 assert (leftChild != null);
                 final T finalLeftChild = leftChild;
@@ -102,6 +102,8 @@ public class UnorderedMerge<T extends Artifact<T>> implements MergeInterface<T>
         }
 
         while (!leftdone || !rightdone) {
+            context.checkCancelled();
+
             if (!leftdone && !r.contains(leftChild)) {
                 assert (leftChild != null);
                 final T finalLeftChild = leftChild;
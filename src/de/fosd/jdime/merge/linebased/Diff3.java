@@ -0,0 +1,615 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.merge.linebased;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.stream.Collectors;
+
+import de.fosd.jdime.merge.linebased.MyersDiff.Change;
+
+/**
+ * An in-process three-way merge of text files producing the same output as <code>git merge-file -p</code>.
+ * <p>
+ * Both revisions are diffed against the base using {@link MyersDiff}. Overlapping or adjacent changes form conflicts
+ * that are then narrowed down to the lines on which the revisions really differ. Conflicts separated by at most three
+ * lines or by lines not containing any alphanumeric characters are joined (the 'zealous-alnum' level of
+ * <code>git</code>). Conflicts are reported in the 'merge' style, i.e. without the base lines.
+ */
+public final class Diff3 {
+
+    /**
+     * The length of the conflict markers.
+     */
+    private static final int MARKER_SIZE = 7;
+
+    /**
+     * The result of a merge.
+     */
+    public static final class Result {
+
+        private final String text;
+        private final int conflicts;
+        private final List<Region> regions;
+        private final int[] leftStarts;
+        private final int[] rightStarts;
+
+        private Result(String text, int conflicts, List<Region> regions, int[] leftStarts, int[] rightStarts) {
+            this.text = text;
+            this.conflicts = conflicts;
+            this.regions = regions;
+            this.leftStarts = leftStarts;
+            this.rightStarts = rightStarts;
+        }
+
+        /**
+         * Returns the merged text including the conflict markers.
+         *
+         * @return the merged text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the number of conflicts in the merged text.
+         *
+         * @return the number of conflicts
+         */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * Returns whether the merged text contains conflicts.
+         *
+         * @return true iff there are conflicts
+         */
+        public boolean hasConflicts() {
+            return conflicts > 0;
+        }
+
+        /**
+         * Returns the regions of the merged text that contain a conflict (including the conflict markers) in the
+         * order they appear in the merged text.
+         *
+         * @return the conflict <code>Region</code>s
+         */
+        public List<Region> getConflictRegions() {
+            return regions.stream().filter(Region::isConflict).collect(Collectors.toList());
+        }
+
+        /**
+         * Returns the offset in the merged text that corresponds to the beginning of the given line of the left
+         * revision. Changed regions that are empty in the left revision and lie exactly at that line are placed
+         * before the returned offset if <code>after</code> is set and behind it otherwise.
+         *
+         * @param line
+         *         the index of the line (starting from 0), the number of lines denotes the end of the text
+         * @param after
+         *         whether the returned offset is to be placed after empty changed regions at <code>line</code>
+         * @return the offset or -1 if the beginning of the line lies within a changed region of the merge
+         */
+        public int leftOffset(int line, boolean after) {
+            return offset(leftStarts, true, line, after);
+        }
+
+        /**
+         * Returns the offset in the merged text that corresponds to the beginning of the given line of the right
+         * revision, see {@link #leftOffset(int, boolean)}.
+         *
+         * @param line
+         *         the index of the line (starting from 0), the number of lines denotes the end of the text
+         * @param after
+         *         whether the returned offset is to be placed after empty changed regions at <code>line</code>
+         * @return the offset or -1 if the beginning of the line lies within a changed region of the merge
+         */
+        public int rightOffset(int line, boolean after) {
+            return offset(rightStarts, false, line, after);
+        }
+
+        /**
+         * The text between the changed regions is unchanged in both revisions, the offset of a line boundary
+         * therefore follows from the end of the last region before it.
+         */
+        private int offset(int[] starts, boolean left, int line, boolean after) {
+
+            if (line < 0 || line >= starts.length) {
+                return -1;
+            }
+
+            int offset = 0;
+            int lineEnd = 0;
+
+            for (Region region : regions) {
+                int start = left ? region.leftStart : region.rightStart;
+                int end = left ? region.leftEnd : region.rightEnd;
+
+                if (end > line || (!after && start == line)) {
+
+                    if (start < line) {
+                        return -1;
+                    }
+
+                    break;
+                }
+
+                offset = region.end;
+                lineEnd = end;
+            }
+
+            return offset + starts[line] - starts[lineEnd];
+        }
+    }
+
+    /**
+     * A changed region of the merged text. Lines of the revisions are counted from 0, the ends of all ranges are
+     * exclusive.
+     */
+    public static final class Region {
+
+        private final boolean conflict;
+        private final int leftStart;
+        private final int leftEnd;
+        private final int rightStart;
+        private final int rightEnd;
+        private final int start;
+        private final int end;
+
+        private Region(boolean conflict, Hunk hunk, int start, int end) {
+            this.conflict = conflict;
+            this.leftStart = hunk.i1;
+            this.leftEnd = hunk.i1 + hunk.chg1;
+            this.rightStart = hunk.i2;
+            this.rightEnd = hunk.i2 + hunk.chg2;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns whether this <code>Region</code> is a conflict.
+         *
+         * @return true iff this is a conflict
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+
+        /**
+         * Returns the offset of the first character of this <code>Region</code> in the merged text.
+         *
+         * @return the start offset
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the offset after the last character of this <code>Region</code> in the merged text.
+         *
+         * @return the end offset
+         */
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * A region of the merge. Positions and lengths are given for the base (0), left (1) and right (2) lines.
+     */
+    private static final class Hunk {
+
+        static final int CONFLICT = 0;
+        static final int LEFT = 1;
+        static final int RIGHT = 2;
+        static final int IDENTICAL = 4;
+
+        int mode;
+        int i0, chg0;
+        int i1, chg1;
+        int i2, chg2;
+
+        Hunk(int mode, int i0, int chg0, int i1, int chg1, int i2, int chg2) {
+            this.mode = mode;
+            this.i0 = i0;
+            this.chg0 = chg0;
+            this.i1 = i1;
+            this.chg1 = chg1;
+            this.i2 = i2;
+            this.chg2 = chg2;
+        }
+    }
+
+    private final String[] base;
+    private final String[] left;
+    private final String[] right;
+
+    private Diff3(String base, String left, String right) {
+        this.base = MyersDiff.lines(base);
+        this.left = MyersDiff.lines(left);
+        this.right = MyersDiff.lines(right);
+    }
+
+    /**
+     * Merges the given texts.
+     *
+     * @param base
+     *         the common ancestor of <code>left</code> and <code>right</code>
+     * @param left
+     *         the left revision
+     * @param right
+     *         the right revision
+     * @param leftLabel
+     *         the label for the left side of conflicts, may be <code>null</code>
+     * @param rightLabel
+     *         the label for the right side of conflicts, may be <code>null</code>
+     * @return the merge <code>Result</code>
+     */
+    public static Result merge(String base, String left, String right, String leftLabel, String rightLabel) {
+        Diff3 diff3 = new Diff3(base, left, right);
+        List<Hunk> hunks = diff3.hunks(MyersDiff.diff(diff3.base, diff3.left), MyersDiff.diff(diff3.base, diff3.right));
+
+        diff3.refineConflicts(hunks);
+        diff3.simplifyNonConflicts(hunks);
+
+        return diff3.output(hunks, leftLabel, rightLabel);
+    }
+
+    /**
+     * Combines the changes of the left and right revision. Changes of both revisions that overlap or touch each
+     * other form a conflict unless they are identical.
+     *
+     * @param changes1
+     *         the changes from the base to the left revision
+     * @param changes2
+     *         the changes from the base to the right revision
+     * @return the resulting <code>Hunk</code>s
+     */
+    private List<Hunk> hunks(List<Change> changes1, List<Change> changes2) {
+        List<Hunk> hunks = new ArrayList<>();
+        Iterator<Change> it1 = changes1.iterator();
+        Iterator<Change> it2 = changes2.iterator();
+        Change x1 = it1.hasNext() ? it1.next() : null;
+        Change x2 = it2.hasNext() ? it2.next() : null;
+
+        while (x1 != null && x2 != null) {
+
+            if (x1.pos1 + x1.len1 < x2.pos1) {
+                append(hunks, Hunk.LEFT, x1.pos1, x1.len1, x1.pos2, x1.len2, x2.pos2 - x2.pos1 + x1.pos1, x1.len1);
+                x1 = it1.hasNext() ? it1.next() : null;
+                continue;
+            }
+
+            if (x2.pos1 + x2.len1 < x1.pos1) {
+                append(hunks, Hunk.RIGHT, x2.pos1, x2.len1, x1.pos2 - x1.pos1 + x2.pos1, x2.len1, x2.pos2, x2.len2);
+                x2 = it2.hasNext() ? it2.next() : null;
+                continue;
+            }
+
+            if (x1.pos1 != x2.pos1 || x1.len1 != x2.len1 || x1.len2 != x2.len2
+                    || !MyersDiff.equal(left, x1.pos2, right, x2.pos2, x1.len2)) {
+
+                int off = x1.pos1 - x2.pos1;
+                int ffo = off + x1.len1 - x2.len1;
+                int i0 = x1.pos1, i1 = x1.pos2, i2 = x2.pos2;
+
+                if (off > 0) {
+                    i0 -= off;
+                    i1 -= off;
+                } else {
+                    i2 += off;
+                }
+
+                int chg0 = x1.pos1 + x1.len1 - i0;
+                int chg1 = x1.pos2 + x1.len2 - i1;
+                int chg2 = x2.pos2 + x2.len2 - i2;
+
+                if (ffo < 0) {
+                    chg0 -= ffo;
+                    chg1 -= ffo;
+                } else {
+                    chg2 += ffo;
+                }
+
+                append(hunks, Hunk.CONFLICT, i0, chg0, i1, chg1, i2, chg2);
+            }
+
+            int end1 = x1.pos1 + x1.len1;
+            int end2 = x2.pos1 + x2.len1;
+
+            if (end1 >= end2) {
+                x2 = it2.hasNext() ? it2.next() : null;
+            }
+
+            if (end2 >= end1) {
+                x1 = it1.hasNext() ? it1.next() : null;
+            }
+        }
+
+        for (; x1 != null; x1 = it1.hasNext() ? it1.next() : null) {
+            int i2 = x1.pos1 + right.length - base.length;
+            append(hunks, Hunk.LEFT, x1.pos1, x1.len1, x1.pos2, x1.len2, i2, x1.len1);
+        }
+
+        for (; x2 != null; x2 = it2.hasNext() ? it2.next() : null) {
+            int i1 = x2.pos1 + left.length - base.length;
+            append(hunks, Hunk.RIGHT, x2.pos1, x2.len1, i1, x2.len1, x2.pos2, x2.len2);
+        }
+
+        return hunks;
+    }
+
+    /**
+     * Appends a new <code>Hunk</code> or, if it overlaps or touches the last one, extends the last one. If the modes
+     * differ, the extended <code>Hunk</code> becomes a conflict.
+     */
+    private static void append(List<Hunk> hunks, int mode, int i0, int chg0, int i1, int chg1, int i2, int chg2) {
+        Hunk last = hunks.isEmpty() ? null : hunks.get(hunks.size() - 1);
+
+        if (last != null && (i1 <= last.i1 + last.chg1 || i2 <= last.i2 + last.chg2)) {
+
+            if (mode != last.mode) {
+                last.mode = Hunk.CONFLICT;
+            }
+
+            last.chg0 = i0 + chg0 - last.i0;
+            last.chg1 = i1 + chg1 - last.i1;
+            last.chg2 = i2 + chg2 - last.i2;
+        } else {
+            hunks.add(new Hunk(mode, i0, chg0, i1, chg1, i2, chg2));
+        }
+    }
+
+    /**
+     * Diffs the left and right lines of every conflict and shrinks the conflict to (possibly multiple) regions
+     * where they actually differ. Conflicts whose sides are identical are resolved.
+     *
+     * @param hunks
+     *         the <code>Hunk</code>s to refine
+     */
+    private void refineConflicts(List<Hunk> hunks) {
+
+        for (ListIterator<Hunk> it = hunks.listIterator(); it.hasNext(); ) {
+            Hunk m = it.next();
+
+            if (m.mode != Hunk.CONFLICT || m.chg1 == 0 || m.chg2 == 0) {
+                continue;
+            }
+
+            String[] t1 = copy(left, m.i1, m.chg1);
+            String[] t2 = copy(right, m.i2, m.chg2);
+            List<Change> changes = MyersDiff.diff(t1, t2);
+
+            if (changes.isEmpty()) {
+                m.mode = Hunk.IDENTICAL;
+                continue;
+            }
+
+            int i1 = m.i1, i2 = m.i2;
+            Iterator<Change> cit = changes.iterator();
+            Change x = cit.next();
+
+            m.i1 = x.pos1 + i1;
+            m.chg1 = x.len1;
+            m.i2 = x.pos2 + i2;
+            m.chg2 = x.len2;
+
+            while (cit.hasNext()) {
+                x = cit.next();
+                it.add(new Hunk(Hunk.CONFLICT, m.i0, m.chg0, x.pos1 + i1, x.len1, x.pos2 + i2, x.len2));
+            }
+        }
+    }
+
+    private static String[] copy(String[] lines, int from, int length) {
+        String[] copy = new String[length];
+        System.arraycopy(lines, from, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Joins consecutive conflicts that are separated by at most three lines or only by lines not containing any
+     * alphanumeric characters.
+     *
+     * @param hunks
+     *         the <code>Hunk</code>s to simplify
+     */
+    private void simplifyNonConflicts(List<Hunk> hunks) {
+        int i = 0;
+
+        while (i + 1 < hunks.size()) {
+            Hunk m = hunks.get(i);
+            Hunk next = hunks.get(i + 1);
+            int begin = m.i1 + m.chg1;
+            int end = next.i1;
+
+            if (m.mode != Hunk.CONFLICT || next.mode != Hunk.CONFLICT
+                    || (end - begin > 3 && containsAlnum(left, begin, end))) {
+                i++;
+            } else {
+                m.chg1 = next.i1 + next.chg1 - m.i1;
+                m.chg2 = next.i2 + next.chg2 - m.i2;
+                hunks.remove(i + 1);
+            }
+        }
+    }
+
+    private static boolean containsAlnum(String[] lines, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+            String line = lines[i];
+
+            for (int j = 0; j < line.length(); j++) {
+                char c = line.charAt(j);
+
+                if (c < 128 && Character.isLetterOrDigit(c)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Produces the merged text. Unchanged regions are taken from the left revision.
+     *
+     * @param hunks
+     *         the <code>Hunk</code>s of the merge
+     * @param leftLabel
+     *         the label for the left side of conflicts
+     * @param rightLabel
+     *         the label for the right side of conflicts
+     * @return the <code>Result</code>
+     */
+    private Result output(List<Hunk> hunks, String leftLabel, String rightLabel) {
+        StringBuilder out = new StringBuilder();
+        List<Region> regions = new ArrayList<>();
+        int conflicts = 0;
+        int i = 0;
+
+        for (Hunk m : hunks) {
+
+            if (m.mode == Hunk.IDENTICAL) {
+                continue;
+            }
+
+            copy(out, left, i, m.i1 - i, false, false);
+            int start = out.length();
+
+            if (m.mode == Hunk.CONFLICT) {
+                boolean needsCr = isCrNeeded(m);
+                String eol = needsCr ? "\r\n" : "\n";
+
+                conflicts++;
+                out.append(marker('<', leftLabel)).append(eol);
+                copy(out, left, m.i1, m.chg1, needsCr, true);
+                out.append(marker('=', null)).append(eol);
+                copy(out, right, m.i2, m.chg2, needsCr, true);
+                out.append(marker('>', rightLabel)).append(eol);
+            } else if (m.mode == Hunk.LEFT) {
+                copy(out, left, m.i1, m.chg1, false, false);
+            } else {
+                copy(out, right, m.i2, m.chg2, false, false);
+            }
+
+            regions.add(new Region(m.mode == Hunk.CONFLICT, m, start, out.length()));
+            i = m.i1 + m.chg1;
+        }
+
+        copy(out, left, i, left.length - i, false, false);
+
+        return new Result(out.toString(), conflicts, regions, starts(left), starts(right));
+    }
+
+    /**
+     * Returns the offsets at which the given lines start in their text followed by the length of the text.
+     */
+    private static int[] starts(String[] lines) {
+        int[] starts = new int[lines.length + 1];
+
+        for (int i = 0; i < lines.length; i++) {
+            starts[i + 1] = starts[i] + lines[i].length();
+        }
+
+        return starts;
+    }
+
+    private static String marker(char c, String label) {
+        StringBuilder marker = new StringBuilder(MARKER_SIZE + 1);
+
+        for (int i = 0; i < MARKER_SIZE; i++) {
+            marker.append(c);
+        }
+
+        if (label != null) {
+            marker.append(' ').append(label);
+        }
+
+        return marker.toString();
+    }
+
+    /**
+     * Appends <code>count</code> lines starting at <code>from</code> to <code>out</code>. If <code>addNl</code> is
+     * set and the last line has no line terminator, one is added.
+     */
+    private static void copy(StringBuilder out, String[] lines, int from, int count, boolean needsCr, boolean addNl) {
+
+        if (count <= 0) {
+            return;
+        }
+
+        for (int i = from; i < from + count; i++) {
+            out.append(lines[i]);
+        }
+
+        if (addNl && !lines[from + count - 1].endsWith("\n")) {
+            out.append(needsCr ? "\r\n" : "\n");
+        }
+    }
+
+    /**
+     * Determines whether the lines around the given conflict use CRLF line endings, in which case the conflict
+     * markers do too.
+     */
+    private boolean isCrNeeded(Hunk m) {
+        int needsCr = isEolCrlf(left, m.i1 > 0 ? m.i1 - 1 : 0);
+
+        if (needsCr != 0) {
+            needsCr = isEolCrlf(right, m.i2 > 0 ? m.i2 - 1 : 0);
+        }
+
+        if (needsCr != 0) {
+            needsCr = isEolCrlf(base, 0);
+        }
+
+        return needsCr > 0;
+    }
+
+    /**
+     * Returns 1 if line <code>i</code> ends with CRLF, 0 if it ends with LF and -1 if that can not be determined.
+     */
+    private static int isEolCrlf(String[] lines, int i) {
+
+        if (i < lines.length - 1) {
+            return lines[i].endsWith("\r\n") ? 1 : 0;
+        }
+
+        if (lines.length == 0) {
+            return -1;
+        }
+
+        if (lines[i].endsWith("\n")) {
+            return lines[i].endsWith("\r\n") ? 1 : 0;
+        }
+
+        if (i == 0) {
+            return -1;
+        }
+
+        return lines[i - 1].endsWith("\r\n") ? 1 : 0;
+    }
+}
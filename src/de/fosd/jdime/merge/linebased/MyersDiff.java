@@ -0,0 +1,814 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.merge.linebased;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A line based diff implementing the Myers algorithm the way the xdiff library used by <code>git</code> does. This
+ * includes the preprocessing (trimming of common ends, discarding of lines without or with too many matches), the
+ * cost limiting heuristics and the compaction of the resulting change groups. The resulting <code>Change</code>s
+ * are therefore the ones <code>git</code> would compute for the same lines.
+ */
+final class MyersDiff {
+
+    /**
+     * A group of changed lines. <code>len1</code> lines starting at <code>pos1</code> in the first sequence are
+     * replaced by <code>len2</code> lines starting at <code>pos2</code> in the second sequence.
+     */
+    static final class Change {
+
+        final int pos1;
+        final int len1;
+        final int pos2;
+        final int len2;
+
+        private Change(int pos1, int len1, int pos2, int len2) {
+            this.pos1 = pos1;
+            this.len1 = len1;
+            this.pos2 = pos2;
+            this.len2 = len2;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d,%d -> %d,%d", pos1, len1, pos2, len2);
+        }
+    }
+
+    private static final int MAX_EQLIMIT = 1024;
+    private static final int SIMSCAN_WINDOW = 100;
+    private static final int KPDIS_RUN = 4;
+    private static final int MAX_COST_MIN = 256;
+    private static final int HEUR_MIN_COST = 256;
+    private static final int SNAKE_CNT = 20;
+    private static final int K_HEUR = 4;
+    private static final int LINE_MAX = Integer.MAX_VALUE;
+
+    /**
+     * One of the two sequences being compared.
+     */
+    private static final class Side {
+
+        /**
+         * The number of lines.
+         */
+        final int n;
+
+        /**
+         * The equivalence class of every line. Lines are equal iff their classes are.
+         */
+        final int[] ha;
+
+        /**
+         * Whether a line is changed, shifted by one so that there is an unchanged sentinel before the first and after
+         * the last line.
+         */
+        final boolean[] changed;
+
+        /**
+         * The lines taking part in the Myers algorithm after discarding lines that need not be compared.
+         */
+        int[] rindex;
+        int[] rha;
+        int nreff;
+
+        int dstart;
+        int dend;
+
+        Side(int[] ha) {
+            this.n = ha.length;
+            this.ha = ha;
+            this.changed = new boolean[n + 2];
+        }
+
+        boolean isChanged(int i) {
+            return changed[i + 1];
+        }
+
+        void setChanged(int i, boolean c) {
+            changed[i + 1] = c;
+        }
+    }
+
+    /**
+     * The split point of a box chosen by {@link #split(int[], int, int, int[], int, int, boolean, Split)}.
+     */
+    private static final class Split {
+        int i1;
+        int i2;
+        boolean minLo;
+        boolean minHi;
+    }
+
+    private final Side s1;
+    private final Side s2;
+
+    private int[] kvd;
+    private int kvdf;
+    private int kvdb;
+    private int mxcost;
+
+    private MyersDiff(Side s1, Side s2) {
+        this.s1 = s1;
+        this.s2 = s2;
+    }
+
+    /**
+     * Computes the <code>Change</code>s transforming the lines <code>a</code> into the lines <code>b</code>.
+     *
+     * @param a
+     *         the first sequence of lines
+     * @param b
+     *         the second sequence of lines
+     * @return the <code>Change</code>s ordered by their position
+     */
+    static List<Change> diff(String[] a, String[] b) {
+        Map<String, Integer> classes = new HashMap<>();
+        int[] ha1 = classify(a, classes);
+        int[] ha2 = classify(b, classes);
+
+        int[] count1 = new int[classes.size()];
+        int[] count2 = new int[classes.size()];
+
+        for (int c : ha1) {
+            count1[c]++;
+        }
+
+        for (int c : ha2) {
+            count2[c]++;
+        }
+
+        MyersDiff diff = new MyersDiff(new Side(ha1), new Side(ha2));
+
+        diff.trimEnds();
+        diff.cleanupRecords(count1, count2);
+        diff.compare();
+
+        compact(diff.s1, diff.s2);
+        compact(diff.s2, diff.s1);
+
+        return diff.buildScript();
+    }
+
+    private static int[] classify(String[] lines, Map<String, Integer> classes) {
+        int[] ha = new int[lines.length];
+
+        for (int i = 0; i < lines.length; i++) {
+            Integer c = classes.get(lines[i]);
+
+            if (c == null) {
+                c = classes.size();
+                classes.put(lines[i], c);
+            }
+
+            ha[i] = c;
+        }
+
+        return ha;
+    }
+
+    /**
+     * Integer square root approximation used to derive the limits of the heuristics.
+     *
+     * @param n
+     *         the number to approximate the square root of
+     * @return the approximation
+     */
+    private static int bogoSqrt(int n) {
+        int i = 1;
+
+        for (; n > 0; n >>= 2) {
+            i <<= 1;
+        }
+
+        return i;
+    }
+
+    /**
+     * Excludes the common prefix and suffix of the two sequences from the comparison.
+     */
+    private void trimEnds() {
+        int lim = Math.min(s1.n, s2.n);
+        int i = 0;
+
+        while (i < lim && s1.ha[i] == s2.ha[i]) {
+            i++;
+        }
+
+        s1.dstart = s2.dstart = i;
+
+        int j = 0;
+
+        for (lim -= i; j < lim; j++) {
+            if (s1.ha[s1.n - 1 - j] != s2.ha[s2.n - 1 - j]) {
+                break;
+            }
+        }
+
+        s1.dend = s1.n - j - 1;
+        s2.dend = s2.n - j - 1;
+    }
+
+    /**
+     * Marks lines without a match in the other sequence as changed and discards them (and lines with very many
+     * matches that lie in runs of such lines) from the Myers comparison.
+     *
+     * @param count1
+     *         the number of occurrences of every class in the first sequence
+     * @param count2
+     *         the number of occurrences of every class in the second sequence
+     */
+    private void cleanupRecords(int[] count1, int[] count2) {
+        byte[] dis1 = discards(s1, count2);
+        byte[] dis2 = discards(s2, count1);
+
+        reduce(s1, dis1);
+        reduce(s2, dis2);
+    }
+
+    private static byte[] discards(Side side, int[] otherCount) {
+        byte[] dis = new byte[side.n + 1];
+        int mlim = Math.min(bogoSqrt(side.n), MAX_EQLIMIT);
+
+        for (int i = side.dstart; i <= side.dend; i++) {
+            int nm = otherCount[side.ha[i]];
+            dis[i] = (byte) (nm == 0 ? 0 : nm >= mlim ? 2 : 1);
+        }
+
+        return dis;
+    }
+
+    private static void reduce(Side side, byte[] dis) {
+        int size = Math.max(side.dend - side.dstart + 1, 0);
+
+        side.rindex = new int[size];
+        side.rha = new int[size];
+        side.nreff = 0;
+
+        for (int i = side.dstart; i <= side.dend; i++) {
+
+            if (dis[i] == 1 || (dis[i] == 2 && !cleanMultiMatch(dis, i, side.dstart, side.dend))) {
+                side.rindex[side.nreff] = i;
+                side.rha[side.nreff] = side.ha[i];
+                side.nreff++;
+            } else {
+                side.setChanged(i, true);
+            }
+        }
+    }
+
+    /**
+     * Determines whether the line <code>i</code> having multiple matches lies in a run of lines without matches and
+     * should therefore be discarded.
+     */
+    private static boolean cleanMultiMatch(byte[] dis, int i, int s, int e) {
+
+        if (i - s > SIMSCAN_WINDOW) {
+            s = i - SIMSCAN_WINDOW;
+        }
+
+        if (e - i > SIMSCAN_WINDOW) {
+            e = i + SIMSCAN_WINDOW;
+        }
+
+        int r, rdis0 = 0, rpdis0 = 1;
+
+        for (r = 1; i - r >= s; r++) {
+            if (dis[i - r] == 0) {
+                rdis0++;
+            } else if (dis[i - r] == 2) {
+                rpdis0++;
+            } else {
+                break;
+            }
+        }
+
+        if (rdis0 == 0) {
+            return false;
+        }
+
+        int rdis1 = 0, rpdis1 = 1;
+
+        for (r = 1; i + r <= e; r++) {
+            if (dis[i + r] == 0) {
+                rdis1++;
+            } else if (dis[i + r] == 2) {
+                rpdis1++;
+            } else {
+                break;
+            }
+        }
+
+        if (rdis1 == 0) {
+            return false;
+        }
+
+        rdis1 += rdis0;
+        rpdis1 += rpdis0;
+
+        return rpdis1 * KPDIS_RUN < (rpdis1 + rdis1);
+    }
+
+    /**
+     * Runs the Myers algorithm on the lines that were not discarded.
+     */
+    private void compare() {
+        int ndiags = s1.nreff + s2.nreff + 3;
+
+        kvd = new int[2 * ndiags + 2];
+        kvdf = s2.nreff + 1;
+        kvdb = ndiags + s2.nreff + 1;
+        mxcost = Math.max(bogoSqrt(ndiags), MAX_COST_MIN);
+
+        recsCmp(0, s1.nreff, 0, s2.nreff, false);
+    }
+
+    private void recsCmp(int off1, int lim1, int off2, int lim2, boolean needMin) {
+        int[] ha1 = s1.rha;
+        int[] ha2 = s2.rha;
+
+        while (off1 < lim1 && off2 < lim2 && ha1[off1] == ha2[off2]) {
+            off1++;
+            off2++;
+        }
+
+        while (off1 < lim1 && off2 < lim2 && ha1[lim1 - 1] == ha2[lim2 - 1]) {
+            lim1--;
+            lim2--;
+        }
+
+        if (off1 == lim1) {
+            for (; off2 < lim2; off2++) {
+                s2.setChanged(s2.rindex[off2], true);
+            }
+        } else if (off2 == lim2) {
+            for (; off1 < lim1; off1++) {
+                s1.setChanged(s1.rindex[off1], true);
+            }
+        } else {
+            Split spl = new Split();
+
+            split(ha1, off1, lim1, ha2, off2, lim2, needMin, spl);
+
+            recsCmp(off1, spl.i1, off2, spl.i2, spl.minLo);
+            recsCmp(spl.i1, lim1, spl.i2, lim2, spl.minHi);
+        }
+    }
+
+    private int kf(int d) {
+        return kvd[kvdf + d];
+    }
+
+    private void kf(int d, int v) {
+        kvd[kvdf + d] = v;
+    }
+
+    private int kb(int d) {
+        return kvd[kvdb + d];
+    }
+
+    private void kb(int d, int v) {
+        kvd[kvdb + d] = v;
+    }
+
+    /**
+     * Finds the middle snake of the box or, if that gets too expensive, a good enough split point.
+     */
+    private void split(int[] ha1, int off1, int lim1, int[] ha2, int off2, int lim2, boolean needMin, Split spl) {
+        int dmin = off1 - lim2, dmax = lim1 - off2;
+        int fmid = off1 - off2, bmid = lim1 - lim2;
+        boolean odd = ((fmid - bmid) & 1) != 0;
+        int fmin = fmid, fmax = fmid;
+        int bmin = bmid, bmax = bmid;
+        int i1, i2, prev1, d;
+
+        kf(fmid, off1);
+        kb(bmid, lim1);
+
+        for (int ec = 1; ; ec++) {
+            boolean gotSnake = false;
+
+            if (fmin > dmin) {
+                kf(--fmin - 1, -1);
+            } else {
+                ++fmin;
+            }
+
+            if (fmax < dmax) {
+                kf(++fmax + 1, -1);
+            } else {
+                --fmax;
+            }
+
+            for (d = fmax; d >= fmin; d -= 2) {
+                i1 = kf(d - 1) >= kf(d + 1) ? kf(d - 1) + 1 : kf(d + 1);
+                prev1 = i1;
+                i2 = i1 - d;
+
+                while (i1 < lim1 && i2 < lim2 && ha1[i1] == ha2[i2]) {
+                    i1++;
+                    i2++;
+                }
+
+                if (i1 - prev1 > SNAKE_CNT) {
+                    gotSnake = true;
+                }
+
+                kf(d, i1);
+
+                if (odd && bmin <= d && d <= bmax && kb(d) <= i1) {
+                    spl.i1 = i1;
+                    spl.i2 = i2;
+                    spl.minLo = spl.minHi = true;
+                    return;
+                }
+            }
+
+            if (bmin > dmin) {
+                kb(--bmin - 1, LINE_MAX);
+            } else {
+                ++bmin;
+            }
+
+            if (bmax < dmax) {
+                kb(++bmax + 1, LINE_MAX);
+            } else {
+                --bmax;
+            }
+
+            for (d = bmax; d >= bmin; d -= 2) {
+                i1 = kb(d - 1) < kb(d + 1) ? kb(d - 1) : kb(d + 1) - 1;
+                prev1 = i1;
+                i2 = i1 - d;
+
+                while (i1 > off1 && i2 > off2 && ha1[i1 - 1] == ha2[i2 - 1]) {
+                    i1--;
+                    i2--;
+                }
+
+                if (prev1 - i1 > SNAKE_CNT) {
+                    gotSnake = true;
+                }
+
+                kb(d, i1);
+
+                if (!odd && fmin <= d && d <= fmax && i1 <= kf(d)) {
+                    spl.i1 = i1;
+                    spl.i2 = i2;
+                    spl.minLo = spl.minHi = true;
+                    return;
+                }
+            }
+
+            if (needMin) {
+                continue;
+            }
+
+            if (gotSnake && ec > HEUR_MIN_COST) {
+                int best = 0;
+
+                for (d = fmax; d >= fmin; d -= 2) {
+                    int dd = d > fmid ? d - fmid : fmid - d;
+                    i1 = kf(d);
+                    i2 = i1 - d;
+                    int v = (i1 - off1) + (i2 - off2) - dd;
+
+                    if (v > K_HEUR * ec && v > best && off1 + SNAKE_CNT <= i1 && i1 < lim1
+                            && off2 + SNAKE_CNT <= i2 && i2 < lim2) {
+
+                        for (int k = 1; ha1[i1 - k] == ha2[i2 - k]; k++) {
+                            if (k == SNAKE_CNT) {
+                                best = v;
+                                spl.i1 = i1;
+                                spl.i2 = i2;
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (best > 0) {
+                    spl.minLo = true;
+                    spl.minHi = false;
+                    return;
+                }
+
+                for (d = bmax; d >= bmin; d -= 2) {
+                    int dd = d > bmid ? d - bmid : bmid - d;
+                    i1 = kb(d);
+                    i2 = i1 - d;
+                    int v = (lim1 - i1) + (lim2 - i2) - dd;
+
+                    if (v > K_HEUR * ec && v > best && off1 < i1 && i1 <= lim1 - SNAKE_CNT
+                            && off2 < i2 && i2 <= lim2 - SNAKE_CNT) {
+
+                        for (int k = 0; ha1[i1 + k] == ha2[i2 + k]; k++) {
+                            if (k == SNAKE_CNT - 1) {
+                                best = v;
+                                spl.i1 = i1;
+                                spl.i2 = i2;
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (best > 0) {
+                    spl.minLo = false;
+                    spl.minHi = true;
+                    return;
+                }
+            }
+
+            if (ec >= mxcost) {
+                int fbest = -1, fbest1 = -1;
+
+                for (d = fmax; d >= fmin; d -= 2) {
+                    i1 = Math.min(kf(d), lim1);
+                    i2 = i1 - d;
+
+                    if (lim2 < i2) {
+                        i1 = lim2 + d;
+                        i2 = lim2;
+                    }
+
+                    if (fbest < i1 + i2) {
+                        fbest = i1 + i2;
+                        fbest1 = i1;
+                    }
+                }
+
+                int bbest = LINE_MAX, bbest1 = LINE_MAX;
+
+                for (d = bmax; d >= bmin; d -= 2) {
+                    i1 = Math.max(off1, kb(d));
+                    i2 = i1 - d;
+
+                    if (i2 < off2) {
+                        i1 = off2 + d;
+                        i2 = off2;
+                    }
+
+                    if (i1 + i2 < bbest) {
+                        bbest = i1 + i2;
+                        bbest1 = i1;
+                    }
+                }
+
+                if ((lim1 + lim2) - bbest < fbest - (off1 + off2)) {
+                    spl.i1 = fbest1;
+                    spl.i2 = fbest - fbest1;
+                    spl.minLo = true;
+                    spl.minHi = false;
+                } else {
+                    spl.i1 = bbest1;
+                    spl.i2 = bbest - bbest1;
+                    spl.minLo = false;
+                    spl.minHi = true;
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * A group of changed lines, <code>end</code> is the index of the first unchanged line after the group or
+     * <code>start</code> if the group is empty.
+     */
+    private static final class Group {
+        int start;
+        int end;
+
+        Group(Side side) {
+            while (side.isChanged(end)) {
+                end++;
+            }
+        }
+
+        boolean next(Side side) {
+
+            if (end == side.n) {
+                return false;
+            }
+
+            start = end + 1;
+
+            for (end = start; side.isChanged(end); end++) {
+                // find the end of the group
+            }
+
+            return true;
+        }
+
+        boolean previous(Side side) {
+
+            if (start == 0) {
+                return false;
+            }
+
+            end = start - 1;
+
+            for (start = end; side.isChanged(start - 1); start--) {
+                // find the start of the group
+            }
+
+            return true;
+        }
+
+        boolean slideDown(Side side) {
+
+            if (end < side.n && side.ha[start] == side.ha[end]) {
+                side.setChanged(start++, false);
+                side.setChanged(end++, true);
+
+                while (side.isChanged(end)) {
+                    end++;
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        boolean slideUp(Side side) {
+
+            if (start > 0 && side.ha[start - 1] == side.ha[end - 1]) {
+                side.setChanged(--start, true);
+                side.setChanged(--end, false);
+
+                while (side.isChanged(start - 1)) {
+                    start--;
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Shifts every group of changes in <code>side</code> as far down as possible unless it can be aligned with a
+     * group of changes in <code>other</code>. Groups running into each other while shifting are merged.
+     *
+     * @param side
+     *         the side whose groups to compact
+     * @param other
+     *         the other side
+     */
+    private static void compact(Side side, Side other) {
+        Group g = new Group(side);
+        Group go = new Group(other);
+
+        while (true) {
+
+            if (g.end != g.start) {
+                int groupSize, earliestEnd, endMatchingOther;
+
+                do {
+                    groupSize = g.end - g.start;
+                    endMatchingOther = -1;
+
+                    while (g.slideUp(side)) {
+                        syncGroup(go.previous(other));
+                    }
+
+                    earliestEnd = g.end;
+
+                    if (go.end > go.start) {
+                        endMatchingOther = g.end;
+                    }
+
+                    while (g.slideDown(side)) {
+                        syncGroup(go.next(other));
+
+                        if (go.end > go.start) {
+                            endMatchingOther = g.end;
+                        }
+                    }
+                } while (groupSize != g.end - g.start);
+
+                if (g.end != earliestEnd && endMatchingOther != -1) {
+
+                    while (go.end == go.start) {
+                        syncGroup(g.slideUp(side));
+                        syncGroup(go.previous(other));
+                    }
+                }
+            }
+
+            if (!g.next(side)) {
+                break;
+            }
+
+            syncGroup(go.next(other));
+        }
+    }
+
+    private static void syncGroup(boolean moved) {
+
+        if (!moved) {
+            throw new IllegalStateException("The groups of changed lines of the two sides are out of sync.");
+        }
+    }
+
+    /**
+     * Collects the groups of changed lines of both sides into <code>Change</code>s.
+     *
+     * @return the <code>Change</code>s
+     */
+    private List<Change> buildScript() {
+        List<Change> changes = new ArrayList<>();
+        int i1 = s1.n, i2 = s2.n;
+
+        while (i1 >= 0 || i2 >= 0) {
+
+            if ((i1 >= 0 && s1.isChanged(i1 - 1)) || (i2 >= 0 && s2.isChanged(i2 - 1))) {
+                int l1 = i1, l2 = i2;
+
+                while (i1 > 0 && s1.isChanged(i1 - 1)) {
+                    i1--;
+                }
+
+                while (i2 > 0 && s2.isChanged(i2 - 1)) {
+                    i2--;
+                }
+
+                changes.add(new Change(i1, l1 - i1, i2, l2 - i2));
+            }
+
+            i1--;
+            i2--;
+        }
+
+        Collections.reverse(changes);
+        return changes;
+    }
+
+    /**
+     * Splits the given text into lines. Every line includes its terminating <code>'\n'</code>, only the last line
+     * may lack it.
+     *
+     * @param text
+     *         the text to split
+     * @return the lines
+     */
+    static String[] lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', start)) {
+            lines.add(text.substring(start, i + 1));
+            start = i + 1;
+        }
+
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Returns whether the <code>length</code> lines of <code>a</code> starting at <code>aFrom</code> are equal to
+     * those of <code>b</code> starting at <code>bFrom</code>.
+     */
+    static boolean equal(String[] a, int aFrom, String[] b, int bFrom, int length) {
+
+        for (int i = 0; i < length; i++) {
+            if (!a[aFrom + i].equals(b[bFrom + i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
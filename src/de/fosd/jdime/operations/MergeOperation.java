@@ -30,6 +30,7 @@ import java.util.logging.Logger;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.LabelTable;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.MergeType;
@@ -188,7 +189,15 @@ public class MergeOperation<T extends Artifact<T>> extends Operation<T> {
 
         // FIXME: I think this could be done easier. It's just too fucking ugly.
         T artifact = mergeScenario.get(0);
-        artifact.merge(this, context);
+
+        // nested operations join the run of the outermost one, it ends once the outermost operation is done
+        LabelTable.beginRun();
+
+        try {
+            artifact.merge(this, context);
+        } finally {
+            LabelTable.endRun();
+        }
 
         if (context.hasStatistics()) {
             Statistics statistics = context.getStatistics();
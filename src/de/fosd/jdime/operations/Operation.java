@@ -23,6 +23,8 @@
  */
 package de.fosd.jdime.operations;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
 
@@ -38,7 +40,7 @@ public abstract class Operation<T extends Artifact<T>> {
     /**
      * Operation counter.
      */
-    private static long count = 1;
+    private static final AtomicLong count = new AtomicLong(1);
 
     /**
      * Returns counter value.
@@ -46,7 +48,7 @@ public abstract class Operation<T extends Artifact<T>> {
      * @return counter value
      */
     public static long getCount() {
-        return count;
+        return count.get();
     }
 
     /**
@@ -58,8 +60,7 @@ public abstract class Operation<T extends Artifact<T>> {
      * Returns a new instance of operation.
      */
     public Operation() {
-        this.number = count;
-        count++;
+        this.number = count.getAndIncrement();
     }
 
     /**
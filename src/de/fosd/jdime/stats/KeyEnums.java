@@ -102,4 +102,32 @@ public final class KeyEnums {
          */
         METHOD
     }
+
+    /**
+     * The degradation levels of the structured merge of a file whose time budget (see
+     * {@link de.fosd.jdime.config.merge.MergeContext#getTimeBudget()}) is being exhausted. Every level includes the
+     * restrictions of the levels before it.
+     */
+    public enum Degradation {
+
+        /**
+         * The merge ran with all configured matchers.
+         */
+        NONE,
+
+        /**
+         * Lookahead, the <code>MCESubtreeMatcher</code> and the <code>CostModelMatcher</code> were disabled.
+         */
+        NO_LOOKAHEAD,
+
+        /**
+         * Unordered nodes were matched using the approximating <code>GreedyMatcher</code>.
+         */
+        GREEDY,
+
+        /**
+         * The structured merge was aborted and the file was merged line based.
+         */
+        LINEBASED
+    }
 }
@@ -53,6 +53,27 @@ public class MergeScenarioStatistics {
     private ElementStatistics directoryStatistics;
     private int conflicts;
 
+    /**
+     * The number of times the children of two nodes were matched approximately because the nodes were too wide.
+     */
+    private int approximatedMatchings;
+
+    /**
+     * The highest degradation level that had to be used because the time budget was being exhausted.
+     */
+    private KeyEnums.Degradation degradation;
+
+    /**
+     * The number of files whose AST was taken from the <code>ParseCache</code> or had to be parsed respectively.
+     */
+    private int parseCacheHits;
+    private int parseCacheMisses;
+
+    /**
+     * The number of files that were merged without running the merge strategy because two of them were identical.
+     */
+    private int trivialMerges;
+
     private long runtime;
 
     /**
@@ -71,6 +92,11 @@ public class MergeScenarioStatistics {
         this.fileStatistics = new ElementStatistics();
         this.directoryStatistics = new ElementStatistics();
         this.conflicts = 0;
+        this.approximatedMatchings = 0;
+        this.degradation = KeyEnums.Degradation.NONE;
+        this.parseCacheHits = 0;
+        this.parseCacheMisses = 0;
+        this.trivialMerges = 0;
         this.runtime = 0;
     }
 
@@ -123,6 +149,11 @@ public class MergeScenarioStatistics {
         this.fileStatistics = new ElementStatistics(toCopy.fileStatistics);
         this.directoryStatistics = new ElementStatistics(toCopy.directoryStatistics);
         this.conflicts = toCopy.conflicts;
+        this.approximatedMatchings = toCopy.approximatedMatchings;
+        this.degradation = toCopy.degradation;
+        this.parseCacheHits = toCopy.parseCacheHits;
+        this.parseCacheMisses = toCopy.parseCacheMisses;
+        this.trivialMerges = toCopy.trivialMerges;
         this.runtime = toCopy.runtime;
     }
 
@@ -339,6 +370,90 @@ public class MergeScenarioStatistics {
         return conflicts;
     }
 
+    /**
+     * Returns the number of times the children of two nodes were matched approximately.
+     *
+     * @return the number of approximated matchings
+     */
+    public int getApproximatedMatchings() {
+        return approximatedMatchings;
+    }
+
+    /**
+     * Increments the number of times the children of two nodes were matched approximately.
+     */
+    public void incrementApproximatedMatchings() {
+        approximatedMatchings++;
+    }
+
+    /**
+     * Returns the highest degradation level that had to be used because the time budget was being exhausted.
+     *
+     * @return the degradation level
+     */
+    public KeyEnums.Degradation getDegradation() {
+        return degradation;
+    }
+
+    /**
+     * Sets the degradation level to the new value.
+     *
+     * @param degradation
+     *         the new degradation level
+     */
+    public void setDegradation(KeyEnums.Degradation degradation) {
+        this.degradation = degradation;
+    }
+
+    /**
+     * Returns the number of files whose AST was taken from the <code>ParseCache</code>.
+     *
+     * @return the number of parse cache hits
+     */
+    public int getParseCacheHits() {
+        return parseCacheHits;
+    }
+
+    /**
+     * Increments the number of files whose AST was taken from the <code>ParseCache</code>.
+     */
+    public void incrementParseCacheHits() {
+        parseCacheHits++;
+    }
+
+    /**
+     * Returns the number of files that had to be parsed because their AST was not in the <code>ParseCache</code>.
+     *
+     * @return the number of parse cache misses
+     */
+    public int getParseCacheMisses() {
+        return parseCacheMisses;
+    }
+
+    /**
+     * Increments the number of files that had to be parsed because their AST was not in the <code>ParseCache</code>.
+     */
+    public void incrementParseCacheMisses() {
+        parseCacheMisses++;
+    }
+
+    /**
+     * Returns the number of files that were merged without running the merge strategy because two of them were
+     * identical.
+     *
+     * @return the number of trivial merges
+     */
+    public int getTrivialMerges() {
+        return trivialMerges;
+    }
+
+    /**
+     * Increments the number of files that were merged without running the merge strategy.
+     */
+    public void incrementTrivialMerges() {
+        trivialMerges++;
+    }
+
     /**
      * Returns the runtime.
      *
@@ -397,7 +512,15 @@ public class MergeScenarioStatistics {
         fileStatistics.add(other.fileStatistics);
         directoryStatistics.add(other.directoryStatistics);
         conflicts += other.conflicts;
+        approximatedMatchings += other.approximatedMatchings;
+        parseCacheHits += other.parseCacheHits;
+        parseCacheMisses += other.parseCacheMisses;
+        trivialMerges += other.trivialMerges;
         runtime += other.runtime;
+
+        if (other.degradation.compareTo(degradation) > 0) {
+            degradation = other.degradation;
+        }
     }
 
     /**
@@ -414,6 +537,11 @@ public class MergeScenarioStatistics {
         mergeScenario.asList().forEach(artifact -> os.printf("%s%s%n", indent, artifact.getId()));
         os.println("General:");
         os.printf("%sConflicts: %s%n", indent, conflicts);
+        os.printf("%sApproximated Matchings: %s%n", indent, approximatedMatchings);
+        os.printf("%sDegradation: %s%n", indent, degradation);
+        os.printf("%sParse Cache Hits: %s%n", indent, parseCacheHits);
+        os.printf("%sParse Cache Misses: %s%n", indent, parseCacheMisses);
+        os.printf("%sTrivial Merges: %s%n", indent, trivialMerges);
         os.printf("%sRuntime: %dms%n", indent, runtime);
 
         if (!matchings.isEmpty()) os.println("Matchings");
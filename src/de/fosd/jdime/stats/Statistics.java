@@ -79,6 +79,7 @@ public class Statistics {
 
         serializer.alias(KeyEnums.Type.class.getSimpleName().toLowerCase(), KeyEnums.Type.class);
         serializer.alias(KeyEnums.Level.class.getSimpleName().toLowerCase(), KeyEnums.Level.class);
+        serializer.alias(KeyEnums.Degradation.class.getSimpleName().toLowerCase(), KeyEnums.Degradation.class);
 
         serializer.alias(Matching.class.getSimpleName().toLowerCase(), Matching.class);
         serializer.alias(Matching.class.getSimpleName().toLowerCase(), LookAheadMatching.class);
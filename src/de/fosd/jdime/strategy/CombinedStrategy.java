@@ -25,11 +25,17 @@ package de.fosd.jdime.strategy;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.CancellationToken;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.execption.AbortException;
 import de.fosd.jdime.operations.MergeOperation;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.Statistics;
@@ -44,6 +50,16 @@ public class CombinedStrategy extends MergeStrategy<FileArtifact> {
 
     private static final Logger LOG = Logger.getLogger(CombinedStrategy.class.getCanonicalName());
 
+    /**
+     * Runs the speculative structured merges, see {@link MergeContext#isCombinedSpeculative()}.
+     */
+    private static final ExecutorService SPECULATION = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "jdime-speculative-structured-merge");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
     /**
      * TODO: high-level documentation
      * @param operation the <code>MergeOperation</code> to perform
@@ -74,53 +90,59 @@ public class CombinedStrategy extends MergeStrategy<FileArtifact> {
 
         long startTime = System.currentTimeMillis();
 
-        MergeContext subContext = new MergeContext(context);
-        MergeStrategy<FileArtifact> strategy = new LinebasedStrategy();
+        MergeContext subContext;
 
-        subContext.setOutputFile(null);
-        subContext.setMergeStrategy(strategy);
-        subContext.collectStatistics(true);
+        if (isSpeculative(context)) {
+            subContext = mergeSpeculatively(operation, context);
+        } else {
+            subContext = new MergeContext(context);
+            MergeStrategy<FileArtifact> strategy = new LinebasedStrategy();
 
-        LOG.fine("Trying line based strategy.");
+            subContext.setOutputFile(null);
+            subContext.setMergeStrategy(strategy);
+            subContext.collectStatistics(true);
 
-        strategy.merge(operation, subContext);
+            LOG.fine("Trying line based strategy.");
 
-        if (subContext.getStatistics().hasConflicts()) {
-            long conflicts = subContext.getStatistics().getConflictStatistics().getSum();
+            strategy.merge(operation, subContext);
 
-            LOG.fine(() -> {
-                String noun = conflicts > 1 ? "conflicts" : "conflict";
-                return String.format("Got %d %s. Need to use structured strategy.", conflicts, noun);
-            });
+            if (subContext.getStatistics().hasConflicts()) {
+                long conflicts = subContext.getStatistics().getConflictStatistics().getSum();
 
-            if (target != null) {
-                LOG.fine("Deleting: " + target);
+                LOG.fine(() -> {
+                    String noun = conflicts > 1 ? "conflicts" : "conflict";
+                    return String.format("Got %d %s. Need to use structured strategy.", conflicts, noun);
+                });
 
-                boolean isLeaf = target.isLeaf();
-                boolean targetExists = target.exists();
-                String targetFileName = target.getFullPath();
+                if (target != null) {
+                    LOG.fine("Deleting: " + target);
 
-                try {
-                    if (target.exists()) {
-                        target.remove();
-                    }
+                    boolean isLeaf = target.isLeaf();
+                    boolean targetExists = target.exists();
+                    String targetFileName = target.getFullPath();
+
+                    try {
+                        if (target.exists()) {
+                            target.remove();
+                        }
 
-                    target = new FileArtifact(MergeScenario.MERGE, new File(targetFileName), targetExists, isLeaf);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                        target = new FileArtifact(MergeScenario.MERGE, new File(targetFileName), targetExists, isLeaf);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
                 }
-            }
 
-            subContext = new MergeContext(context);
-            strategy = new StructuredStrategy();
+                subContext = new MergeContext(context);
+                strategy = new StructuredStrategy();
 
-            subContext.setOutputFile(null);
-            subContext.setMergeStrategy(strategy);
-            subContext.collectStatistics(true);
+                subContext.setOutputFile(null);
+                subContext.setMergeStrategy(strategy);
+                subContext.collectStatistics(true);
 
-            strategy.merge(operation, subContext);
-        } else {
-            LOG.fine("Line based strategy worked fine.");
+                strategy.merge(operation, subContext);
+            } else {
+                LOG.fine("Line based strategy worked fine.");
+            }
         }
 
         long runtime = System.currentTimeMillis() - startTime;
@@ -135,7 +157,7 @@ public class CombinedStrategy extends MergeStrategy<FileArtifact> {
         }
 
         if (!context.isPretend() && target != null) {
-            target.write(context.getStdIn());
+            target.write(context.getOutput());
         }
 
         if (context.hasStatistics()) {
@@ -147,4 +169,107 @@ public class CombinedStrategy extends MergeStrategy<FileArtifact> {
             statistics.addScenarioStatistics(scenarioStats);
         }
     }
+
+    /**
+     * Returns whether the structured strategy is to be run speculatively for a merge using the given
+     * <code>context</code>. Speculation only pays off if there is a processor to spare. If files are merged by
+     * multiple threads (see {@link MergeContext#getFileMergeThreads()}) the processors are already busy and every
+     * speculative structured merge would compete with the other files for the ExtendJ lock, so speculation is skipped.
+     *
+     * @param context
+     *         the <code>MergeContext</code> of the combined merge
+     * @return whether to use {@link #mergeSpeculatively(MergeOperation, MergeContext)}
+     */
+    static boolean isSpeculative(MergeContext context) {
+        return context.isCombinedSpeculative() && context.getFileMergeThreads() == 1
+                && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Runs the line based and the structured strategy concurrently. If the line based merge is free of conflicts,
+     * the structured merge is cancelled and the line based result is used. Otherwise the result of the structured
+     * merge is awaited. Neither strategy writes the target file, this is left to the caller.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to perform
+     * @param context
+     *         the <code>MergeContext</code> of the combined merge
+     * @return the <code>MergeContext</code> of the strategy whose result is to be used
+     */
+    static MergeContext mergeSpeculatively(MergeOperation<FileArtifact> operation, MergeContext context) {
+        MergeOperation<FileArtifact> subOperation = new MergeOperation<>(operation.getMergeScenario(), null, null, null);
+        MergeContext linebasedContext = subContext(context, new LinebasedStrategy());
+        MergeContext structuredContext = subContext(context, new StructuredStrategy());
+        CancellationToken structuredToken = new CancellationToken(context.getCancellationToken());
+
+        structuredContext.setCancellationToken(structuredToken);
+
+        LOG.fine("Trying line based strategy while speculatively running the structured strategy.");
+
+        // the StructuredStrategy checks the token before parsing and after acquiring the ExtendJ lock
+        Future<?> structured = SPECULATION.submit(() -> {
+            structuredContext.getMergeStrategy().merge(subOperation, structuredContext);
+        });
+
+        try {
+            linebasedContext.getMergeStrategy().merge(subOperation, linebasedContext);
+        } catch (RuntimeException | Error e) {
+            structuredToken.cancel();
+            throw e;
+        }
+
+        if (!linebasedContext.getStatistics().hasConflicts()) {
+            LOG.fine("Line based strategy worked fine. Cancelling the structured strategy.");
+            structuredToken.cancel();
+
+            return linebasedContext;
+        }
+
+        long conflicts = linebasedContext.getStatistics().getConflictStatistics().getSum();
+
+        LOG.fine(() -> {
+            String noun = conflicts > 1 ? "conflicts" : "conflict";
+            return String.format("Got %d %s. Using the result of the structured strategy.", conflicts, noun);
+        });
+
+        try {
+            structured.get();
+        } catch (InterruptedException e) {
+            structuredToken.cancel();
+            Thread.currentThread().interrupt();
+            throw new AbortException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+
+        return structuredContext;
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> for running the given <code>strategy</code> on behalf of the combined
+     * merge using the given <code>context</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code> of the combined merge
+     * @param strategy
+     *         the <code>MergeStrategy</code> to be run
+     * @return the new <code>MergeContext</code>
+     */
+    private static MergeContext subContext(MergeContext context, MergeStrategy<FileArtifact> strategy) {
+        MergeContext subContext = context.createScenarioContext();
+
+        subContext.setOutputFile(null);
+        subContext.setMergeStrategy(strategy);
+        subContext.collectStatistics(true);
+
+        return subContext;
+    }
 }
@@ -23,9 +23,12 @@
  */
 package de.fosd.jdime.strategy;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -36,15 +39,20 @@ import java.util.stream.Collectors;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.merge.linebased.Diff3;
 import de.fosd.jdime.operations.MergeOperation;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.Statistics;
 import de.fosd.jdime.stats.parser.ParseResult;
+import org.apache.commons.io.IOUtils;
 
 /**
  * Performs an unstructured, line based merge.
  * <p>
- * The current implementation uses the merge routine provided by <code>git</code>.
+ * Depending on the {@link LinebasedBackend} configured in the <code>MergeContext</code>, the merge routine provided by
+ * <code>git</code> or an in-process implementation producing the same output is used. Both keep the line terminators
+ * of the input files and a missing terminator of their last lines. The files are decoded using the platform default
+ * charset, which is the one the output is written in.
  *
  * @author Olaf Lessenich
  */
@@ -64,10 +72,10 @@ public class LinebasedStrategy extends MergeStrategy<FileArtifact> {
 
     /**
      * This line-based <code>merge</code> method uses the merging routine of
-     * the external tool <code>git</code>.
+     * the external tool <code>git</code> or {@link Diff3}.
      * <p>
      * Basically, the input <code>FileArtifacts</code> are passed as arguments to
-     * `git merge-file -q -p`.
+     * `git merge-file -q -p` or merged in-process with the same result.
      * <p>
      * In a common run, the number of processed lines of code, the number of
      * conflicting situations, and the number of conflicting lines of code will
@@ -97,80 +105,150 @@ public class LinebasedStrategy extends MergeStrategy<FileArtifact> {
 
         context.resetStreams();
 
+        long runtime, startTime = System.currentTimeMillis();
+        String output;
+
+        if (context.getLinebasedBackend() == LinebasedBackend.INTERNAL) {
+            output = mergeInternal(triple, context);
+        } else {
+            output = mergeGit(triple, context);
+        }
+
+        runtime = System.currentTimeMillis() - startTime;
+
+        LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), runtime));
+
+        if (!context.isPretend() && target != null) {
+            LOG.fine("Writing output to: " + target.getFullPath());
+            target.write(context.getOutput());
+        }
+
+        if (context.hasStatistics()) {
+            Statistics statistics = context.getStatistics();
+            MergeScenarioStatistics scenarioStatistics = new MergeScenarioStatistics(triple);
+            ParseResult res = scenarioStatistics.setLineStatistics(output);
+
+            if (res.getConflicts() > 0) {
+                scenarioStatistics.getFileStatistics().incrementNumOccurInConflic();
+            }
+
+            scenarioStatistics.setRuntime(runtime);
+            statistics.addScenarioStatistics(scenarioStatistics);
+        }
+    }
+
+    /**
+     * Merges the files of the given <code>MergeScenario</code> in-process using {@link Diff3}. The conflict markers
+     * are labeled with the paths of the left and right file just like <code>git merge-file</code> labels them.
+     *
+     * @param triple
+     *         the <code>MergeScenario</code> to merge
+     * @param context
+     *         the <code>MergeContext</code> to append the output to
+     * @return the merged text
+     */
+    private String mergeInternal(MergeScenario<FileArtifact> triple, MergeContext context) {
+        FileArtifact left = triple.getLeft();
+        FileArtifact base = triple.getBase();
+        FileArtifact right = triple.getRight();
+
+        LOG.fine(() -> String.format("Merging in-process: %s %s %s", left.getPath(), base.getPath(), right.getPath()));
+
+        Diff3.Result result;
+
+        try {
+            result = Diff3.merge(content(base), content(left), content(right), left.getPath(), right.getPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the files of " + triple + ".", e);
+        }
+
+        context.append(result.getText());
+        return result.getText();
+    }
+
+    /**
+     * Returns the content of the given <code>FileArtifact</code> decoded using the platform default charset or an
+     * empty <code>String</code> if its file does not exist (as is the case for the base of a two-way merge). The
+     * output of the merge is written using the same charset, so any content that is valid in it is reproduced
+     * exactly.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> to read
+     * @return the content of the file
+     * @throws IOException
+     *         if the file can not be read
+     */
+    static String content(FileArtifact artifact) throws IOException {
+        return artifact.exists() ? artifact.getFileContent().toString(Charset.defaultCharset()) : "";
+    }
+
+    /**
+     * Merges the files of the given <code>MergeScenario</code> by running <code>git merge-file -q -p</code>. The
+     * output of <code>git</code> is used unchanged. Its error output is redirected to a temporary file so that
+     * <code>git</code> can not block on a full pipe while its output is being read.
+     *
+     * @param triple
+     *         the <code>MergeScenario</code> to merge
+     * @param context
+     *         the <code>MergeContext</code> to append the output and errors to
+     * @return the merged text
+     */
+    private String mergeGit(MergeScenario<FileArtifact> triple, MergeContext context) {
         List<String> cmd = new ArrayList<>();
         cmd.add(BASECMD);
         cmd.addAll(BASEARGS);
         cmd.addAll(triple.asList().stream().limit(3).map(FileArtifact::getPath).collect(Collectors.toList()));
 
-        ProcessBuilder pb = new ProcessBuilder(cmd);
+        String command = String.join(" ", cmd);
 
-        LOG.fine(() -> "Running external command: " + String.join(" ", cmd));
-        long runtime, startTime = System.currentTimeMillis();
+        LOG.fine(() -> "Running external command: " + command);
+
+        File errors;
         Process pr;
 
         try {
-            pr = pb.start();
+            errors = File.createTempFile("jdime-git", ".err");
         } catch (IOException e) {
-            throw new RuntimeException("Could not run '" + String.join(" ", cmd) + "'.", e);
+            throw new RuntimeException("Could not create a file for the error output of '" + command + "'.", e);
         }
 
-        StringBuilder processOutput = new StringBuilder();
-        StringBuilder processErrorOutput = new StringBuilder();
-        String ls = System.lineSeparator();
-
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(pr.getInputStream()))) {
-            String line;
-
-            while ((line = r.readLine()) != null) {
-                processOutput.append(line).append(ls);
-            }
+        try {
+            pr = new ProcessBuilder(cmd).redirectError(errors).start();
         } catch (IOException e) {
-            LOG.log(Level.SEVERE, e, () -> "Could not fully read the process output.");
+            errors.delete();
+            throw new RuntimeException("Could not run '" + command + "'.", e);
         }
 
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(pr.getErrorStream()))) {
-            String line;
+        ByteArrayOutputStream processOutput = new ByteArrayOutputStream();
 
-            while ((line = r.readLine()) != null) {
-                processErrorOutput.append(line).append(ls);
-            }
+        try (InputStream in = pr.getInputStream()) {
+            IOUtils.copy(in, processOutput);
         } catch (IOException e) {
-            LOG.log(Level.SEVERE, e, () -> "Could not fully read the process error output.");
+            LOG.log(Level.SEVERE, e, () -> "Could not fully read the process output.");
         }
 
-        context.append(processOutput.toString());
-        context.appendError(processErrorOutput.toString());
-
         try {
             pr.waitFor();
         } catch (InterruptedException e) {
             LOG.log(Level.WARNING, e, () -> "Interrupted while waiting for the external command to finish.");
         }
 
-        runtime = System.currentTimeMillis() - startTime;
+        String output = new String(processOutput.toByteArray(), Charset.defaultCharset());
 
-        LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), runtime));
+        context.append(output);
 
-        if (context.hasErrors()) {
-            LOG.severe(() -> String.format("Errors occurred while calling '%s'%n%s", String.join(" ", cmd), context.getStdErr()));
+        try {
+            context.appendError(new String(Files.readAllBytes(errors.toPath()), Charset.defaultCharset()));
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, e, () -> "Could not read the process error output.");
+        } finally {
+            errors.delete();
         }
 
-        if (!context.isPretend() && target != null) {
-            LOG.fine("Writing output to: " + target.getFullPath());
-            target.write(context.getStdIn());
+        if (context.hasErrors()) {
+            LOG.severe(() -> String.format("Errors occurred while calling '%s'%n%s", command, context.getStdErr()));
         }
 
-        if (context.hasStatistics()) {
-            Statistics statistics = context.getStatistics();
-            MergeScenarioStatistics scenarioStatistics = new MergeScenarioStatistics(triple);
-            ParseResult res = scenarioStatistics.setLineStatistics(processOutput.toString());
-
-            if (res.getConflicts() > 0) {
-                scenarioStatistics.getFileStatistics().incrementNumOccurInConflic();
-            }
-
-            scenarioStatistics.setRuntime(runtime);
-            statistics.addScenarioStatistics(scenarioStatistics);
-        }
+        return output;
     }
 }
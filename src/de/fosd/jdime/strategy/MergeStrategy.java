@@ -50,6 +50,7 @@ public abstract class MergeStrategy<T extends Artifact<T>> implements MergeInter
     public static final String LINEBASED = "linebased";
     public static final String UNSTRUCTURED = "unstructured";
     public static final String STRUCTURED = "structured";
+    public static final String SEMISTRUCTURED = "semistructured";
     public static final String COMBINED = "combined";
     public static final String AUTOTUNING = "autotuning";
     public static final String NWAY = "nway";
@@ -59,12 +60,14 @@ public abstract class MergeStrategy<T extends Artifact<T>> implements MergeInter
         Map<String, MergeStrategy<FileArtifact>> entries = new HashMap<>();
         LinebasedStrategy lineBased = new LinebasedStrategy();
         StructuredStrategy structured = new StructuredStrategy();
+        SemistructuredStrategy semistructured = new SemistructuredStrategy();
         CombinedStrategy combined = new CombinedStrategy();
         NWayStrategy nway = new NWayStrategy();
 
         entries.put(LINEBASED, lineBased);
         entries.put(UNSTRUCTURED, lineBased);
         entries.put(STRUCTURED, structured);
+        entries.put(SEMISTRUCTURED, semistructured);
         entries.put(COMBINED, combined);
         entries.put(AUTOTUNING, combined);
         entries.put(NWAY, nway);
@@ -23,9 +23,7 @@
  */
 package de.fosd.jdime.strategy;
 
-import java.io.BufferedReader;
 import java.io.FileWriter;
-import java.io.StringReader;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
@@ -37,6 +35,7 @@ import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.MergeType;
 import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.execption.MergeCancelledException;
 import de.fosd.jdime.operations.MergeOperation;
 
 import static de.fosd.jdime.config.merge.MergeScenario.BASE;
@@ -98,95 +97,96 @@ public class NWayStrategy extends MergeStrategy<FileArtifact> {
         }
 
         Iterator<Revision> it = variants.keySet().iterator();
-        targetNode = new ASTNodeArtifact(variants.get(it.next()));
+        targetNode = context.getParseCache().parse(variants.get(it.next()), null);
 
         while (it.hasNext()) {
 
             merged = targetNode;
-            next = new ASTNodeArtifact(variants.get(it.next()));
+            next = context.getParseCache().parse(variants.get(it.next()), null);
 
-            try {
-                mergeContext = context;
-                mergeContext.resetStreams();
+            // ExtendJ evaluates attributes and rewrites using global state, see ASTNodeArtifact#EXTENDJ_LOCK
+            synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
 
-                long cmdStart = System.currentTimeMillis();
+                try {
+                    mergeContext = context;
+                    mergeContext.resetStreams();
 
-                targetNode = ASTNodeArtifact.createProgram(merged);
+                    long cmdStart = System.currentTimeMillis();
 
-                if (LOG.isLoggable(Level.FINEST)) {
-                    LOG.finest("Plaintext tree dump of target node:");
-                    System.out.println(targetNode.dump(PLAINTEXT_TREE));
-                }
+                    targetNode = ASTNodeArtifact.createProgram(merged);
 
-                MergeScenario<ASTNodeArtifact> astScenario = new MergeScenario<>(MergeType.TWOWAY, merged, merged.createEmptyArtifact(BASE), next);
+                    if (LOG.isLoggable(Level.FINEST)) {
+                        LOG.finest("Plaintext tree dump of target node:");
+                        System.out.println(targetNode.dump(PLAINTEXT_TREE));
+                    }
 
-                MergeOperation<ASTNodeArtifact> astMergeOp = new MergeOperation<>(astScenario, targetNode,
-                        merged.getRevision().getName(), next.getRevision().getName());
+                    MergeScenario<ASTNodeArtifact> astScenario = new MergeScenario<>(MergeType.TWOWAY, merged, merged.createEmptyArtifact(BASE), next);
 
-                if (LOG.isLoggable(Level.FINEST)) {
-                    LOG.finest("ASTMOperation.apply(context)");
-                }
+                    MergeOperation<ASTNodeArtifact> astMergeOp = new MergeOperation<>(astScenario, targetNode,
+                            merged.getRevision().getName(), next.getRevision().getName());
 
-                astMergeOp.apply(mergeContext);
+                    if (LOG.isLoggable(Level.FINEST)) {
+                        LOG.finest("ASTMOperation.apply(context)");
+                    }
 
-                if (LOG.isLoggable(Level.FINEST)) {
-                    LOG.finest("Structured merge finished.");
+                    astMergeOp.apply(mergeContext);
 
-                    if (!context.isDiffOnly()) {
-                        LOG.finest("Plaintext tree dump of target node:");
-                        System.out.println(targetNode.dump(PLAINTEXT_TREE));
-                    }
+                    if (LOG.isLoggable(Level.FINEST)) {
+                        LOG.finest("Structured merge finished.");
 
-                    LOG.finest("Pretty-printing merged:");
-                    System.out.println(merged.prettyPrint());
-                    LOG.finest("Pretty-printing next:");
-                    System.out.println(next.prettyPrint());
+                        if (!context.isDiffOnly()) {
+                            LOG.finest("Plaintext tree dump of target node:");
+                            System.out.println(targetNode.dump(PLAINTEXT_TREE));
+                        }
 
-                    if (!context.isDiffOnly()) {
-                        LOG.finest("Pretty-printing target:");
-                        System.out.print(targetNode.prettyPrint());
-                    }
-                }
+                        LOG.finest("Pretty-printing merged:");
+                        System.out.println(merged.prettyPrint());
+                        LOG.finest("Pretty-printing next:");
+                        System.out.println(next.prettyPrint());
 
-                try (BufferedReader buf = new BufferedReader(new StringReader(targetNode.prettyPrint()))) {
-                    String line;
-                    while ((line = buf.readLine()) != null) {
-                        context.appendLine(line);
+                        if (!context.isDiffOnly()) {
+                            LOG.finest("Pretty-printing target:");
+                            System.out.print(targetNode.prettyPrint());
+                        }
                     }
-                }
 
-                long runtime = System.currentTimeMillis() - cmdStart;
+                    context.appendLine(targetNode.prettyPrint());
+
+                    long runtime = System.currentTimeMillis() - cmdStart;
 
-                if (LOG.isLoggable(Level.FINE)) {
+                    if (LOG.isLoggable(Level.FINE)) {
 
-                    try (FileWriter fw = new FileWriter(merged + ".dot")) {
-                        fw.write(targetNode.dump(GRAPHVIZ_TREE));
+                        try (FileWriter fw = new FileWriter(merged + ".dot")) {
+                            fw.write(targetNode.dump(GRAPHVIZ_TREE));
+                        }
                     }
-                }
 
-                LOG.fine(() -> String.format("Structured merge time was %s ms.", runtime));
+                    LOG.fine(() -> String.format("Structured merge time was %s ms.", runtime));
 
-                if (context.hasErrors()) {
-                    System.err.println(context.getStdErr());
-                }
+                    if (context.hasErrors()) {
+                        System.err.println(context.getStdErr());
+                    }
 
-                // write output
-                if (!context.isPretend() && target != null) {
-                    assert (target.exists());
-                    target.write(context.getStdIn());
-                }
+                    // write output
+                    if (!context.isPretend() && target != null) {
+                        assert (target.exists());
+                        target.write(context.getOutput());
+                    }
 
-            } catch (Throwable t) {
-                LOG.severe("Exception while merging:");
-                context.addCrash(scenario, t);
+                } catch (MergeCancelledException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    LOG.severe("Exception while merging:");
+                    context.addCrash(scenario, t);
 
-                for (Revision rev : variants.keySet()) {
-                    LOG.severe(String.format("%s: %s", rev, variants.get(rev).getPath()));
-                }
-                LOG.severe(t.toString());
+                    for (Revision rev : variants.keySet()) {
+                        LOG.severe(String.format("%s: %s", rev, variants.get(rev).getPath()));
+                    }
+                    LOG.severe(t.toString());
 
-                if (!context.isKeepGoing()) {
-                    throw new Error(t);
+                    if (!context.isKeepGoing()) {
+                        throw new Error(t);
+                    }
                 }
             }
         }
@@ -0,0 +1,670 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import beaver.Symbol;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ParseCache;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.config.merge.MergeType;
+import de.fosd.jdime.execption.ClassFileReadError;
+import de.fosd.jdime.execption.TimeBudgetExceededException;
+import de.fosd.jdime.merge.linebased.Diff3;
+import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Statistics;
+import de.fosd.jdime.stats.StatisticsInterface;
+import de.fosd.jdime.stats.parser.ParseResult;
+import org.jastadd.extendj.ast.ASTNode;
+import org.jastadd.extendj.ast.BodyDecl;
+import org.jastadd.extendj.ast.MemberTypeDecl;
+import org.jastadd.extendj.ast.TypeDecl;
+
+/**
+ * Performs a semistructured merge that uses structured merging only where the line based merge fails.
+ * <p>
+ * The files are merged line based using {@link Diff3} first. Every conflict of the line based merge is then attributed
+ * to the innermost declaration (a type, method, field, ...) enclosing it in both the left and the right revision. Only
+ * these declarations are merged structurally, the pretty-printed results replace their code in the otherwise clean
+ * line based merge result. If a conflict can not be attributed to a declaration, the whole file is merged by the
+ * {@link StructuredStrategy}.
+ */
+public class SemistructuredStrategy extends MergeStrategy<FileArtifact> {
+
+    private static final Logger LOG = Logger.getLogger(SemistructuredStrategy.class.getCanonicalName());
+
+    /**
+     * Matches a carriage return that does not start a CRLF line separator. The parser counts those as line
+     * separators, {@link Diff3} does not.
+     */
+    private static final Pattern LONE_CR = Pattern.compile("\r(?!\n)");
+
+    /**
+     * Matches the characters ending the header of a declaration.
+     */
+    private static final Pattern HEADER_END = Pattern.compile("[{;=]");
+
+    /**
+     * The source code of a revision and the offsets of its lines. The source code is decoded using the platform
+     * charset like the ExtendJ parser does, the columns of the parsed declarations are offsets into it.
+     */
+    private static final class Source {
+
+        private final String text;
+        private final int[] lineStarts;
+
+        /**
+         * Constructs a new <code>Source</code> for the given source code.
+         *
+         * @param text
+         *         the source code
+         */
+        private Source(String text) {
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+                starts.add(i + 1);
+            }
+
+            if (starts.get(starts.size() - 1) < text.length()) {
+                starts.add(text.length());
+            }
+
+            this.text = text;
+            this.lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Returns the offset of the given position.
+         *
+         * @param position
+         *         the position as stored by the parser
+         * @return the offset or -1 if the position is unknown or invalid
+         */
+        private int offset(int position) {
+            int line = Symbol.getLine(position);
+            int column = Symbol.getColumn(position);
+
+            if (line < 1 || line >= lineStarts.length || column < 1) {
+                return -1;
+            }
+
+            int offset = lineStarts[line - 1] + column - 1;
+            return offset < lineStarts[line] ? offset : -1;
+        }
+    }
+
+    /**
+     * A declaration occupying whole lines of its revision and the region of the line based merge result
+     * corresponding to these lines.
+     */
+    private static final class Declaration {
+
+        private final ASTNodeArtifact artifact;
+        private final int start;
+        private final int end;
+        private final String prefix;
+        private final String suffix;
+
+        /**
+         * Constructs a new <code>Declaration</code>.
+         *
+         * @param artifact
+         *         the <code>ASTNodeArtifact</code> of the declaration
+         * @param start
+         *         the offset in the merged text at which the lines of the declaration start
+         * @param end
+         *         the offset in the merged text after the lines of the declaration
+         * @param prefix
+         *         the indentation in front of the declaration on its first line
+         * @param suffix
+         *         the whitespace and line separator after the declaration on its last line
+         */
+        private Declaration(ASTNodeArtifact artifact, int start, int end, String prefix, String suffix) {
+            this.artifact = artifact;
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        /**
+         * Returns whether the region of this <code>Declaration</code> contains the given one.
+         *
+         * @param region
+         *         the <code>Region</code> to check
+         * @return true iff <code>region</code> lies within the region of this <code>Declaration</code>
+         */
+        private boolean contains(Diff3.Region region) {
+            return start <= region.getStart() && region.getEnd() <= end;
+        }
+    }
+
+    /**
+     * Merges the files line based and merges the declarations containing conflicts structurally.
+     *
+     * @param operation the <code>MergeOperation</code> to perform
+     * @param context the <code>MergeContext</code>
+     */
+    @Override
+    public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
+        MergeScenario<FileArtifact> triple = operation.getMergeScenario();
+        FileArtifact leftFile = triple.getLeft();
+        FileArtifact baseFile = triple.getBase();
+        FileArtifact rightFile = triple.getRight();
+        FileArtifact target = null;
+
+        if (context.isDiffOnly()) {
+            new StructuredStrategy().merge(operation, context);
+            return;
+        }
+
+        if (operation.getTarget() != null) {
+            target = operation.getTarget();
+
+            if (target.exists() && !target.isEmpty()) {
+                throw new AssertionError(String.format("Would be overwritten: %s", target));
+            }
+        }
+
+        context.resetStreams();
+
+        String lPath = leftFile.getPath();
+        String bPath = baseFile.getPath();
+        String rPath = rightFile.getPath();
+
+        LOG.fine(() -> String.format("Merging:%nLeft: %s%nBase: %s%nRight: %s", lPath, bPath, rPath));
+
+        long startTime = System.currentTimeMillis();
+        Source left, base, right;
+
+        try {
+            left = new Source(LinebasedStrategy.content(leftFile));
+            base = new Source(LinebasedStrategy.content(baseFile));
+            right = new Source(LinebasedStrategy.content(rightFile));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the files of " + triple + ".", e);
+        }
+
+        Diff3.Result lineMerge = Diff3.merge(base.text, left.text, right.text, lPath, rPath);
+        String output = lineMerge.getText();
+        boolean degraded = false;
+
+        MergeScenarioStatistics scenarioStatistics = null;
+
+        if (context.hasStatistics()) {
+            scenarioStatistics = new MergeScenarioStatistics(triple);
+        }
+
+        if (lineMerge.hasConflicts()) {
+            LOG.fine(() -> {
+                String noun = lineMerge.getConflicts() > 1 ? "conflicts" : "conflict";
+                return String.format("Got %d %s. Merging the enclosing declarations structurally.",
+                        lineMerge.getConflicts(), noun);
+            });
+
+            String merged;
+            context.startTimeBudget();
+
+            try {
+                merged = mergeDeclarations(triple, left, base, right, lineMerge, scenarioStatistics, context);
+            } catch (TimeBudgetExceededException e) {
+                LOG.warning(() -> String.format("%s Falling back to line based merging for %s.", e.getMessage(), lPath));
+
+                merged = lineMerge.getText();
+                degraded = true;
+            } catch (ClassFileReadError e) {
+                throw new RuntimeException(String.format("Could not parse %s. %s", lPath, e.getMessage()), e);
+            }
+
+            if (merged == null) {
+                LOG.fine(() -> "Falling back to the structured strategy for " + lPath);
+
+                new StructuredStrategy().merge(operation, context);
+                return;
+            }
+
+            output = merged;
+        }
+
+        long runtime = System.currentTimeMillis() - startTime;
+
+        LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), runtime));
+
+        context.append(output);
+
+        if (!context.isPretend() && target != null) {
+            LOG.fine("Writing output to: " + target.getFullPath());
+            target.write(context.getOutput());
+        }
+
+        if (scenarioStatistics != null) {
+            Statistics statistics = context.getStatistics();
+            ParseResult res = scenarioStatistics.setLineStatistics(output);
+
+            if (res.getConflicts() > 0) {
+                scenarioStatistics.getFileStatistics().incrementNumOccurInConflic();
+            }
+
+            if (degraded) {
+                scenarioStatistics.setDegradation(KeyEnums.Degradation.LINEBASED);
+            }
+
+            scenarioStatistics.setRuntime(runtime);
+            statistics.addScenarioStatistics(scenarioStatistics);
+        }
+    }
+
+    /**
+     * Merges the declarations enclosing the conflicts of <code>lineMerge</code> structurally and replaces their code
+     * in the merged text.
+     *
+     * @param triple
+     *         the <code>MergeScenario</code> of the files
+     * @param left
+     *         the left source code
+     * @param base
+     *         the base source code
+     * @param right
+     *         the right source code
+     * @param lineMerge
+     *         the result of merging the files line based
+     * @param statistics
+     *         the <code>MergeScenarioStatistics</code> to add the parse cache and AST statistics to, may be
+     *         <code>null</code>
+     * @param context
+     *         the <code>MergeContext</code>
+     * @return the merged text or <code>null</code> if not every conflict could be attributed to a declaration
+     */
+    private String mergeDeclarations(MergeScenario<FileArtifact> triple, Source left, Source base, Source right,
+                                     Diff3.Result lineMerge, MergeScenarioStatistics statistics,
+                                     MergeContext context) {
+
+        if (Stream.of(left, base, right).anyMatch(source -> LONE_CR.matcher(source.text).find())) {
+            LOG.fine("The line numbers of the parser do not match the lines of the files.");
+            return null;
+        }
+
+        ParseCache parseCache = context.getParseCache();
+
+        // the revisions are parsed concurrently, the ParseCache serializes everything but the syntactic parsing
+        List<ASTNodeArtifact> revisions = Stream.of(triple.getLeft(), triple.getBase(), triple.getRight()).parallel()
+                                                .map(file -> parseCache.parse(file, statistics))
+                                                .collect(Collectors.toList());
+
+        // ExtendJ evaluates attributes and rewrites using global state, see ASTNodeArtifact#EXTENDJ_LOCK
+        synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
+            List<Declaration> leftDeclarations = new ArrayList<>();
+            List<Declaration> rightDeclarations = new ArrayList<>();
+
+            declarations(revisions.get(0), left, lineMerge, true, leftDeclarations);
+            declarations(revisions.get(2), right, lineMerge, false, rightDeclarations);
+
+            List<Declaration[]> enclosing = new ArrayList<>();
+
+            for (Diff3.Region conflict : lineMerge.getConflictRegions()) {
+                Declaration[] declarations = enclosing(conflict, leftDeclarations, rightDeclarations);
+
+                if (declarations == null) {
+                    LOG.fine(() -> String.format("The conflict at offset %d is not enclosed by matching declarations.",
+                            conflict.getStart()));
+                    return null;
+                }
+
+                enclosing.add(declarations);
+            }
+
+            // declarations enclosed by others are merged along with them
+            enclosing.sort(Comparator.<Declaration[]>comparingInt(d -> d[0].start).thenComparingInt(d -> -d[0].end));
+
+            List<Declaration[]> toMerge = new ArrayList<>();
+            List<ASTNodeArtifact> baseDeclarations = new ArrayList<>();
+            int end = 0;
+
+            for (Declaration[] declarations : enclosing) {
+
+                if (!toMerge.isEmpty() && declarations[0].start < end) {
+                    continue;
+                }
+
+                ASTNodeArtifact baseDeclaration = baseDeclaration(declarations[0].artifact, left,
+                                                                  revisions.get(1), base);
+
+                if (baseDeclaration == null) {
+                    LOG.fine(() -> "The base revision of " + declarations[0].artifact.getId() + " is ambiguous.");
+                    return null;
+                }
+
+                toMerge.add(declarations);
+                baseDeclarations.add(baseDeclaration);
+                end = declarations[0].end;
+            }
+
+            String text = lineMerge.getText();
+            StringBuilder result = new StringBuilder(text.length());
+            List<ASTNodeArtifact> targets = new ArrayList<>();
+            int offset = 0;
+
+            for (int i = 0; i < toMerge.size(); i++) {
+                Declaration leftDeclaration = toMerge.get(i)[0];
+                Declaration rightDeclaration = toMerge.get(i)[1];
+                ASTNodeArtifact merged = merge(leftDeclaration.artifact, baseDeclarations.get(i),
+                                               rightDeclaration.artifact, context);
+
+                LOG.fine(() -> "Merged " + leftDeclaration.artifact.getId() + " structurally.");
+                targets.add(merged);
+
+                result.append(text, offset, leftDeclaration.start);
+                result.append(leftDeclaration.prefix);
+                result.append(merged.prettyPrintSpliced(leftDeclaration.artifact, left.text));
+                result.append(leftDeclaration.suffix);
+                offset = leftDeclaration.end;
+            }
+
+            result.append(text, offset, text.length());
+
+            if (statistics != null) {
+
+                for (int i = 0; i < toMerge.size(); i++) {
+                    ASTNodeArtifact l = toMerge.get(i)[0].artifact;
+                    ASTNodeArtifact r = toMerge.get(i)[1].artifact;
+
+                    statistics.add(StatisticsInterface.getASTStatistics(l, r.getRevision()));
+                    statistics.add(StatisticsInterface.getASTStatistics(r, l.getRevision()));
+                    statistics.add(StatisticsInterface.getASTStatistics(targets.get(i), null));
+                }
+            }
+
+            return result.toString();
+        }
+    }
+
+    /**
+     * Merges the given declarations structurally.
+     *
+     * @param left
+     *         the left declaration
+     * @param base
+     *         the base declaration, may be empty
+     * @param right
+     *         the right declaration
+     * @param context
+     *         the <code>MergeContext</code>
+     * @return the merged declaration
+     */
+    private static ASTNodeArtifact merge(ASTNodeArtifact left, ASTNodeArtifact base, ASTNodeArtifact right,
+                                         MergeContext context) {
+        ASTNodeArtifact targetNode = left.clone();
+        targetNode.deleteChildren();
+
+        String lCond = left.getRevision().getName();
+        String rCond = right.getRevision().getName();
+        MergeType mergeType = base.isEmpty() ? MergeType.TWOWAY : MergeType.THREEWAY;
+        MergeScenario<ASTNodeArtifact> nodeTriple = new MergeScenario<>(mergeType, left, base, right);
+
+        new MergeOperation<>(nodeTriple, targetNode, lCond, rCond).apply(context);
+        targetNode.setRevision(MergeScenario.TARGET, true);
+
+        return targetNode;
+    }
+
+    /**
+     * Returns the innermost declarations of the left and right revision that enclose the given conflict and match
+     * each other.
+     *
+     * @param conflict
+     *         the conflict <code>Region</code>
+     * @param left
+     *         the <code>Declaration</code>s of the left revision
+     * @param right
+     *         the <code>Declaration</code>s of the right revision
+     * @return the left and right <code>Declaration</code> or <code>null</code> if there are none
+     */
+    private static Declaration[] enclosing(Diff3.Region conflict, List<Declaration> left, List<Declaration> right) {
+        List<Declaration> candidates = left.stream().filter(d -> d.contains(conflict)).collect(Collectors.toList());
+
+        // nested declarations occupying the same lines as their parent come later in preorder
+        Collections.reverse(candidates);
+        candidates.sort(Comparator.comparingInt(d -> d.end - d.start));
+
+        for (Declaration candidate : candidates) {
+
+            for (Declaration other : right) {
+                if (other.start == candidate.start && other.end == candidate.end
+                        && candidate.artifact.matches(other.artifact)) {
+
+                    return new Declaration[] { candidate, other };
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Collects the <code>Declaration</code>s below <code>artifact</code> in preorder. The members of types are
+     * searched recursively, the bodies of methods and the like are not.
+     *
+     * @param artifact
+     *         the <code>ASTNodeArtifact</code> to search
+     * @param source
+     *         the source code of the revision
+     * @param lineMerge
+     *         the result of the line based merge
+     * @param isLeft
+     *         whether <code>artifact</code> is part of the left revision rather than the right one
+     * @param declarations
+     *         the <code>List</code> to add the <code>Declaration</code>s to
+     */
+    private static void declarations(ASTNodeArtifact artifact, Source source, Diff3.Result lineMerge,
+                                     boolean isLeft, List<Declaration> declarations) {
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            ASTNode<?> node = child.getASTNode();
+
+            if (isDeclaration(child)) {
+                Declaration declaration = declaration(child, source, lineMerge, isLeft);
+
+                if (declaration != null) {
+                    declarations.add(declaration);
+                }
+
+                if (!(node instanceof TypeDecl || node instanceof MemberTypeDecl)) {
+                    continue;
+                }
+            }
+
+            declarations(child, source, lineMerge, isLeft, declarations);
+        }
+    }
+
+    /**
+     * Returns the <code>Declaration</code> for the given <code>ASTNodeArtifact</code>.
+     *
+     * @param artifact
+     *         the declaration
+     * @param source
+     *         the source code of the revision
+     * @param lineMerge
+     *         the result of the line based merge
+     * @param isLeft
+     *         whether <code>artifact</code> is part of the left revision rather than the right one
+     * @return the <code>Declaration</code> or <code>null</code> if the declaration does not occupy whole lines whose
+     *         boundaries can be found in the merged text
+     */
+    private static Declaration declaration(ASTNodeArtifact artifact, Source source, Diff3.Result lineMerge,
+                                           boolean isLeft) {
+        ASTNode<?> node = artifact.getASTNode();
+        int start = source.offset(node.getStart());
+        int end = source.offset(node.getEnd());
+
+        if (start < 0 || end < start) {
+            return null;
+        }
+
+        int firstLine = Symbol.getLine(node.getStart()) - 1;
+        int lastLine = Symbol.getLine(node.getEnd()) - 1;
+        String prefix = source.text.substring(source.lineStarts[firstLine], start);
+        String suffix = source.text.substring(end + 1, source.lineStarts[lastLine + 1]);
+
+        if (!prefix.trim().isEmpty() || !suffix.trim().isEmpty()) {
+            return null;
+        }
+
+        int mergedStart, mergedEnd;
+
+        if (isLeft) {
+            mergedStart = lineMerge.leftOffset(firstLine, true);
+            mergedEnd = lineMerge.leftOffset(lastLine + 1, false);
+        } else {
+            mergedStart = lineMerge.rightOffset(firstLine, true);
+            mergedEnd = lineMerge.rightOffset(lastLine + 1, false);
+        }
+
+        if (mergedStart < 0 || mergedEnd < mergedStart) {
+            return null;
+        }
+
+        return new Declaration(artifact, mergedStart, mergedEnd, prefix, suffix);
+    }
+
+    /**
+     * Returns the declaration of the base revision corresponding to the given left one. It is found by following the
+     * declarations enclosing <code>left</code> from the root of the base revision. Overloaded methods and
+     * constructors (which match each other) are told apart by their headers.
+     *
+     * @param left
+     *         the declaration of the left revision
+     * @param leftSource
+     *         the left source code
+     * @param base
+     *         the root of the base revision
+     * @param baseSource
+     *         the base source code
+     * @return the base declaration, an empty <code>ASTNodeArtifact</code> if the base revision does not contain it
+     *         or <code>null</code> if it is ambiguous
+     */
+    private static ASTNodeArtifact baseDeclaration(ASTNodeArtifact left, Source leftSource, ASTNodeArtifact base,
+                                                   Source baseSource) {
+        List<ASTNodeArtifact> path = new ArrayList<>();
+
+        for (ASTNodeArtifact node = left; node != null; node = node.getParent()) {
+            if (isDeclaration(node)) {
+                path.add(0, node);
+            }
+        }
+
+        ASTNodeArtifact current = base;
+
+        for (ASTNodeArtifact declaration : path) {
+            List<ASTNodeArtifact> children = new ArrayList<>();
+            childDeclarations(current, children);
+            children.removeIf(child -> !child.matches(declaration));
+
+            if (children.size() > 1) {
+                String header = header(declaration, leftSource);
+                children.removeIf(child -> !header.equals(header(child, baseSource)));
+
+                if (children.size() != 1) {
+                    return null;
+                }
+            }
+
+            if (children.isEmpty()) {
+                return left.createEmptyArtifact(MergeScenario.BASE);
+            }
+
+            current = children.get(0);
+        }
+
+        return current;
+    }
+
+    /**
+     * Collects the declarations below <code>artifact</code> that are not nested in other declarations.
+     *
+     * @param artifact
+     *         the <code>ASTNodeArtifact</code> to search
+     * @param declarations
+     *         the <code>List</code> to add the declarations to
+     */
+    private static void childDeclarations(ASTNodeArtifact artifact, List<ASTNodeArtifact> declarations) {
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            if (isDeclaration(child)) {
+                declarations.add(child);
+            } else {
+                childDeclarations(child, declarations);
+            }
+        }
+    }
+
+    /**
+     * Returns the code of the given declaration up to its body or initializer with normalized whitespace.
+     *
+     * @param declaration
+     *         the declaration
+     * @param source
+     *         the source code of its revision
+     * @return the header of the declaration
+     */
+    private static String header(ASTNodeArtifact declaration, Source source) {
+        ASTNode<?> node = declaration.getASTNode();
+        int start = source.offset(node.getStart());
+        int end = source.offset(node.getEnd());
+
+        if (start < 0 || end < start) {
+            return "";
+        }
+
+        String code = HEADER_END.split(source.text.substring(start, end + 1), 2)[0];
+        return code.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Returns whether the given <code>ASTNodeArtifact</code> is a declaration this strategy may merge on its own.
+     *
+     * @param artifact
+     *         the <code>ASTNodeArtifact</code> to check
+     * @return true iff <code>artifact</code> declares a type or a member of a type
+     */
+    private static boolean isDeclaration(ASTNodeArtifact artifact) {
+        ASTNode<?> node = artifact.getASTNode();
+        return node instanceof TypeDecl || node instanceof BodyDecl;
+    }
+}
@@ -25,15 +25,21 @@ package de.fosd.jdime.strategy;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.security.Permission;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ParseCache;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.execption.ClassFileReadError;
+import de.fosd.jdime.execption.TimeBudgetExceededException;
 import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.KeyEnums;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.Statistics;
 import de.fosd.jdime.stats.StatisticsInterface;
@@ -51,25 +57,6 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
 
     private static final Logger LOG = Logger.getLogger(StructuredStrategy.class.getCanonicalName());
 
-    private SecurityManager systemSecurityManager = System.getSecurityManager();
-    private SecurityManager noExitManager = new SecurityManager() {
-            @Override
-            public void checkPermission(Permission perm) {
-                // allow anything.
-            }
-
-            @Override
-            public void checkPermission(Permission perm, Object context) {
-                // allow anything.
-            }
-
-            @Override
-            public void checkExit(int status) {
-                super.checkExit(status);
-                throw new SecurityException("Captured attempt to exit JVM.");
-            }
-        };
-
     /**
      * The source <code>FileArtifacts</code> are extracted from the
      * <code>MergeOperation</code>, parsed by the <code>JastAddJ</code> parser
@@ -86,6 +73,24 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
      */
     @Override
     public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
+
+        try {
+            mergeASTs(operation, context);
+        } catch (ClassFileReadError e) {
+            String path = operation.getMergeScenario().getLeft().getPath();
+            throw new RuntimeException(String.format("Could not parse %s. %s", path, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Performs the structured merge described in {@link #merge(MergeOperation, MergeContext)}. ExtendJ reads the
+     * class files of library classes while evaluating attributes, so a {@link ClassFileReadError} may be thrown by
+     * any part of the merge.
+     *
+     * @param operation the <code>MergeOperation</code> to perform
+     * @param context the <code>MergeContext</code>
+     */
+    private void mergeASTs(MergeOperation<FileArtifact> operation, MergeContext context) {
         /**
          * The method creates ASTNodeArtifacts from the input files. An ASTNodeStrategy is then applied.
          * The result is pretty printed and possibly written to the output file.
@@ -111,18 +116,41 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
         }
 
         context.resetStreams();
-        System.setSecurityManager(noExitManager);
 
         LOG.fine(() -> String.format("Merging:%nLeft: %s%nBase: %s%nRight: %s", lPath, bPath, rPath));
 
-        try {
-            long startTime = System.currentTimeMillis();
+        long startTime = System.currentTimeMillis();
+        context.startTimeBudget();
+
+        ParseCache parseCache = context.getParseCache();
+        MergeScenarioStatistics parseStatistics;
+
+        if (context.hasStatistics()) {
+            parseStatistics = context.getStatistics().getScenarioStatistics(triple);
+        } else {
+            parseStatistics = null;
+        }
+
+        // a speculative merge may have been cancelled while it was waiting to be run
+        context.checkCancelled();
 
-            ASTNodeArtifact left = new ASTNodeArtifact(leftFile);
-            ASTNodeArtifact base = new ASTNodeArtifact(baseFile);
-            ASTNodeArtifact right = new ASTNodeArtifact(rightFile);
+        // the revisions are parsed concurrently, the ParseCache serializes everything but the syntactic parsing
+        List<ASTNodeArtifact> revisions = Stream.of(leftFile, baseFile, rightFile).parallel()
+                                                .map(file -> parseCache.parse(file, parseStatistics))
+                                                .collect(Collectors.toList());
 
-            ASTNodeArtifact targetNode = ASTNodeArtifact.createProgram(left);
+        ASTNodeArtifact left = revisions.get(0);
+        ASTNodeArtifact base = revisions.get(1);
+        ASTNodeArtifact right = revisions.get(2);
+
+        ASTNodeArtifact targetNode;
+        TimeBudgetExceededException budgetExceeded = null;
+
+        // ExtendJ evaluates attributes and rewrites using global state, see ASTNodeArtifact#EXTENDJ_LOCK
+        synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
+            context.checkCancelled(); // do not hold up the other merges waiting for the lock if cancelled meanwhile
+
+            targetNode = ASTNodeArtifact.createProgram(left);
 
             String lCond = left.getRevision().getName();
             String rCond = right.getRevision().getName();
@@ -133,7 +161,29 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
             LOG.finest(() -> String.format("MergeScenario:%n%s", nodeTriple.toString()));
             LOG.finest("Applying an ASTNodeArtifact MergeOperation.");
 
-            astMergeOp.apply(context);
+            try {
+                astMergeOp.apply(context);
+            } catch (TimeBudgetExceededException e) {
+                budgetExceeded = e;
+            }
+        }
+
+        if (budgetExceeded != null) {
+            String msg = budgetExceeded.getMessage();
+            LOG.warning(() -> String.format("%s Falling back to line based merging for %s.", msg, lPath));
+
+            // the line based merge does not use ExtendJ and must not block the other merges holding the lock
+            new LinebasedStrategy().merge(operation, context);
+
+            if (context.hasStatistics()) {
+                MergeScenarioStatistics scenarioStatistics = context.getStatistics().getScenarioStatistics(triple);
+                scenarioStatistics.setDegradation(KeyEnums.Degradation.LINEBASED);
+            }
+
+            return;
+        }
+
+        synchronized (ASTNodeArtifact.EXTENDJ_LOCK) {
             targetNode.setRevision(MergeScenario.TARGET, true); // TODO do this somewhere else?
 
             long runtime = System.currentTimeMillis() - startTime;
@@ -148,7 +198,13 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
             LOG.finest(() -> String.format("Pretty-printing right:%n%s", right.prettyPrint()));
 
             if (!context.isDiffOnly()) {
-                context.appendLine(targetNode.prettyPrint());
+
+                if (context.isSplicePrettyPrint()) {
+                    context.appendLine(targetNode.prettyPrintSpliced(left, leftFile.getContent()));
+                } else {
+                    context.appendLine(targetNode.prettyPrint());
+                }
+
                 LOG.finest(() -> String.format("Pretty-printing merge result:%n%s", context.getStdIn()));
             }
 
@@ -158,11 +214,6 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
                 LOG.severe(() -> String.format("Errors occurred while merging structurally.%n%s", context.getStdErr()));
             }
 
-            if (!context.isPretend() && target != null) {
-                LOG.fine("Writing output to: " + target.getFullPath());
-                target.write(context.getStdIn());
-            }
-
             if (context.hasStatistics()) {
                 if (LOG.isLoggable(Level.FINE)) {
                     String fileName = leftFile + ".dot";
@@ -190,11 +241,16 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
                 scenarioStatistics.add(StatisticsInterface.getASTStatistics(right, left.getRevision()));
                 scenarioStatistics.add(StatisticsInterface.getASTStatistics(targetNode, null));
                 scenarioStatistics.setRuntime(runtime);
+                scenarioStatistics.setDegradation(context.getDegradation());
 
                 statistics.addScenarioStatistics(scenarioStatistics);
             }
-        } finally {
-            System.setSecurityManager(systemSecurityManager);
+        }
+
+        // writing the output does not use ExtendJ and must not block the other merges holding the lock
+        if (!context.isPretend() && target != null) {
+            LOG.fine("Writing output to: " + target.getFullPath());
+            target.write(context.getOutput());
         }
     }
 }
@@ -28,11 +28,23 @@ import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.strategy.MergeStrategy;
 import org.junit.BeforeClass;
 
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -134,6 +146,72 @@ public class JDimeTest {
         }
     }
 
+    /**
+     * Writes the given contents of the left, base and right revision of a file named <code>name</code> to the
+     * directories 'left', 'base' and 'right' of a new temporary directory.
+     *
+     * @param name
+     *         the name of the file
+     * @param left
+     *         the content of the left revision
+     * @param base
+     *         the content of the base revision
+     * @param right
+     *         the content of the right revision
+     * @return the left, base and right <code>File</code>
+     * @throws IOException
+     *         if the files can not be written
+     */
+    protected static File[] scenario(String name, String left, String base, String right) throws IOException {
+        Path dir = Files.createTempDirectory("jdime-tests");
+        String[] contents = { left, base, right };
+        String[] revisions = { "left", "base", "right" };
+        File[] files = new File[contents.length];
+
+        for (int i = 0; i < contents.length; i++) {
+            Path file = dir.resolve(revisions[i]).resolve(name);
+
+            Files.createDirectories(file.getParent());
+            files[i] = Files.write(file, contents[i].getBytes(UTF_8)).toFile();
+        }
+
+        return files;
+    }
+
+    /**
+     * Merges the given left, base and right <code>File</code> using the given <code>strategy</code> and returns the
+     * content of the merged file.
+     *
+     * @param context
+     *         the <code>MergeContext</code> to use, its input and output files are replaced
+     * @param strategy
+     *         the name of the strategy to use
+     * @param files
+     *         the left, base and right <code>File</code> as returned by {@link #scenario(String, String, String,
+     *         String)}
+     * @return the merge result
+     * @throws Exception
+     *         if the merge fails
+     */
+    protected static String merge(MergeContext context, String strategy, File... files) throws Exception {
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(LEFT, files[0]));
+        inputArtifacts.add(new FileArtifact(BASE, files[1]));
+        inputArtifacts.add(new FileArtifact(RIGHT, files[2]));
+
+        File out = Files.createTempFile("jdime-tests", ".java").toFile();
+        out.deleteOnExit();
+
+        context.setMergeStrategy(MergeStrategy.parse(strategy));
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MERGE, out));
+
+        Main.merge(context);
+
+        return new String(Files.readAllBytes(out.toPath()), UTF_8);
+    }
+
     /**
      * Removes everything after the conflict marker in any line starting with one.
      *
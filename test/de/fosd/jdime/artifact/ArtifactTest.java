@@ -23,9 +23,16 @@
  */
 package de.fosd.jdime.artifact;
 
+import de.fosd.jdime.matcher.matching.Matching;
 import org.junit.Test;
 
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the <code>Artifact</code> class.
@@ -38,4 +45,109 @@ public class ArtifactTest {
 
         assertEquals(7, artifact.getMaxDepth());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMetricsAfterAddChild() throws Exception {
+        TestArtifact left = new TestArtifact(LEFT, "a", NODE);
+        TestArtifact leftChild = left.addChild(new TestArtifact(LEFT, "b", NODE));
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+        TestArtifact baseChild = base.addChild(new TestArtifact(BASE, "b", NODE));
+
+        match(left, base);
+        match(leftChild, baseChild);
+
+        int depth = left.getMaxDepth();
+
+        assertEquals(1, left.getSubtreeSize());
+        assertFalse(left.hasChanges());
+        assertFalse(left.hasChanges(BASE));
+        assertFalse(base.hasChanges(LEFT));
+
+        TestArtifact leftGrandChild = leftChild.addChild(new TestArtifact(LEFT, "c", NODE));
+
+        assertEquals(2, left.getSubtreeSize());
+        assertEquals(depth + 1, left.getMaxDepth());
+        assertTrue(left.hasChanges());
+        assertTrue(left.hasChanges(BASE));
+        assertTrue(base.hasChanges(LEFT));
+
+        match(leftGrandChild, baseChild.addChild(new TestArtifact(BASE, "c", NODE)));
+
+        assertEquals(2, base.getSubtreeSize());
+        assertFalse(left.hasChanges());
+        assertFalse(left.hasChanges(BASE));
+        assertFalse(base.hasChanges(LEFT));
+    }
+
+    @Test
+    public void testMetricsAfterSetRevision() throws Exception {
+        TestArtifact left = new TestArtifact(LEFT, "a", NODE);
+        TestArtifact leftChild = left.addChild(new TestArtifact(LEFT, "b", NODE));
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+        TestArtifact baseChild = base.addChild(new TestArtifact(BASE, "b", NODE));
+
+        match(left, base);
+        match(leftChild, baseChild);
+
+        int size = left.getSubtreeSize();
+        int depth = left.getMaxDepth();
+
+        assertFalse(left.hasChanges(BASE));
+        assertFalse(leftChild.hasChanges(BASE));
+
+        left.setRevision(RIGHT, true);
+
+        assertEquals(RIGHT, leftChild.getRevision());
+        assertEquals(size, left.getSubtreeSize());
+        assertEquals(depth, left.getMaxDepth());
+        assertFalse(left.hasChanges());
+        assertTrue(left.hasChanges(BASE));
+        assertTrue(leftChild.hasChanges(BASE));
+        assertTrue(base.hasChanges(RIGHT));
+        assertFalse(base.hasChanges(LEFT));
+    }
+
+    @Test
+    public void testHasChangesDeletion() throws Exception {
+        TestArtifact left = new TestArtifact(LEFT, "a", NODE);
+        TestArtifact leftChild = left.addChild(new TestArtifact(LEFT, "b", NODE));
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+        TestArtifact baseChild = base.addChild(new TestArtifact(BASE, "b", NODE));
+        TestArtifact deleted = baseChild.addChild(new TestArtifact(BASE, "c", NODE));
+
+        match(left, base);
+        match(leftChild, baseChild);
+
+        // nothing was inserted in left, but the deletion of 'c' is a change relative to base
+        assertFalse(left.hasChanges());
+        assertTrue(left.hasChanges(BASE));
+        assertTrue(leftChild.hasChanges(BASE));
+        assertTrue(base.hasChanges(LEFT));
+        assertTrue(deleted.hasChanges(LEFT));
+
+        TestArtifact right = new TestArtifact(RIGHT, "a", NODE);
+        TestArtifact rightChild = right.addChild(new TestArtifact(RIGHT, "b", NODE));
+
+        match(right, base);
+        match(rightChild, baseChild);
+        match(rightChild.addChild(new TestArtifact(RIGHT, "c", NODE)), deleted);
+
+        assertFalse(right.hasChanges(BASE));
+        assertTrue(left.hasChanges(BASE));
+    }
+
+    /**
+     * Adds a <code>Matching</code> of the two <code>TestArtifact</code>s to both of them.
+     *
+     * @param left
+     *         the first <code>TestArtifact</code>
+     * @param right
+     *         the second <code>TestArtifact</code>
+     */
+    private static void match(TestArtifact left, TestArtifact right) {
+        Matching<TestArtifact> matching = new Matching<>(left, right, 1);
+
+        left.addMatching(matching);
+        right.addMatching(matching);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.strategy.MergeStrategy;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>LabelTable</code> class.
+ */
+public class LabelTableTest {
+
+    @Test
+    public void testIntern() throws Exception {
+        LabelTable table = LabelTable.current();
+
+        int a = table.intern("LabelTableTest:a");
+        int b = table.intern("LabelTableTest:b");
+
+        assertNotEquals(a, b);
+        assertEquals(a, table.intern("LabelTableTest:a"));
+        assertEquals(b, table.intern("LabelTableTest:b"));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        LabelTable.beginRun();
+        LabelTable table = LabelTable.current();
+        table.intern("LabelTableTest:run");
+
+        LabelTable.beginRun();
+        assertSame(table, LabelTable.current());
+        LabelTable.endRun();
+        assertSame(table, LabelTable.current());
+
+        LabelTable.endRun();
+        assertNotSame(table, LabelTable.current());
+        assertEquals(0, LabelTable.current().size());
+    }
+
+    @Test
+    public void testLazyLabels() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-labels");
+        File left = Files.write(Files.createDirectory(dir.resolve("left")).resolve("A.java"), new byte[0]).toFile();
+        File right = Files.write(Files.createDirectory(dir.resolve("right")).resolve("A.java"), new byte[0]).toFile();
+        File other = Files.write(dir.resolve("B.java"), new byte[0]).toFile();
+
+        LabelTable.beginRun();
+        LabelTable.endRun();
+
+        FileArtifact l = new FileArtifact(new Revision("left"), left);
+        FileArtifact r = new FileArtifact(new Revision("right"), right);
+        FileArtifact o = new FileArtifact(new Revision("right"), other);
+
+        assertEquals(0, LabelTable.current().size());
+        assertTrue(l.matches(r));
+        assertFalse(l.matches(o));
+        assertEquals(2, LabelTable.current().size());
+
+        LabelTable.beginRun();
+        LabelTable.endRun();
+
+        assertTrue(l.matches(r));
+        assertEquals(1, LabelTable.current().size());
+    }
+
+    @Test
+    public void testMergeOperationRun() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-labels");
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        for (String rev : new String[] { "left", "base", "right" }) {
+            String content = String.format("class A {%n    int %s() { return 0; }%n}%n", rev);
+            File file = Files.write(dir.resolve(rev + ".java"), content.getBytes(UTF_8)).toFile();
+
+            inputArtifacts.add(new FileArtifact(new Revision(rev), file));
+        }
+
+        MergeContext context = new MergeContext();
+        context.setQuiet(true);
+        context.setMergeStrategy(MergeStrategy.parse("structured"));
+
+        LabelTable table = LabelTable.current();
+
+        // a MergeOperation applied outside of Main does not leave its labels in the table
+        new MergeOperation<>(inputArtifacts, null, null, null, false).apply(context);
+
+        assertNotSame(table, LabelTable.current());
+        assertEquals(0, LabelTable.current().size());
+    }
+}
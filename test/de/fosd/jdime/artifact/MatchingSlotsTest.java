@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.matcher.matching.Matching;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the <code>MatchingSlots</code> class.
+ */
+public class MatchingSlotsTest {
+
+    @Test
+    public void testSlots() throws Exception {
+        MatchingSlots<TestArtifact> slots = new MatchingSlots<>();
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+        Matching<TestArtifact> toLeft = matching(base, LEFT);
+        Matching<TestArtifact> toRight = matching(base, RIGHT);
+
+        assertTrue(slots.isEmpty());
+        assertTrue(slots.asMap().isEmpty());
+        assertNull(slots.get(LEFT));
+
+        slots.put(RIGHT, toRight);
+        slots.put(LEFT, toLeft);
+
+        assertFalse(slots.isEmpty());
+        assertSame(toLeft, slots.get(LEFT));
+        assertSame(toRight, slots.get(RIGHT));
+        assertSame(toLeft, slots.get(new Revision("left")));
+        assertFalse(slots.containsKey(BASE));
+
+        Map<Revision, Matching<TestArtifact>> map = slots.asMap();
+
+        assertEquals(2, map.size());
+        assertEquals(Arrays.asList(LEFT, RIGHT), new ArrayList<>(map.keySet()));
+        assertEquals(Arrays.asList(toLeft, toRight), new ArrayList<>(map.values()));
+
+        Matching<TestArtifact> replacement = matching(base, LEFT);
+        slots.put(LEFT, replacement);
+
+        assertSame(replacement, slots.get(LEFT));
+        assertEquals(2, map.size());
+        assertSame(replacement, map.get(LEFT));
+    }
+
+    @Test
+    public void testOtherRevisions() throws Exception {
+        MatchingSlots<TestArtifact> slots = new MatchingSlots<>();
+        Revision.SuccessiveRevSupplier revisions = new Revision.SuccessiveRevSupplier();
+        Revision a = revisions.get();
+        Revision b = revisions.get();
+        Revision condition = new Revision("A && !B");
+
+        assertEquals(Revision.NO_SLOT, a.getSlot());
+        assertEquals(Revision.NO_SLOT, condition.getSlot());
+
+        TestArtifact artifact = new TestArtifact(a, "a", NODE);
+        Matching<TestArtifact> toB = matching(artifact, b);
+        Matching<TestArtifact> toCondition = matching(artifact, condition);
+        Matching<TestArtifact> toBase = matching(artifact, BASE);
+
+        slots.put(b, toB);
+        slots.put(condition, toCondition);
+        slots.put(BASE, toBase);
+
+        assertSame(toB, slots.get(b));
+        assertSame(toB, slots.get(new Revision("B")));
+        assertSame(toCondition, slots.get(condition));
+        assertNull(slots.get(a));
+        assertNull(slots.get(null));
+
+        Map<Revision, Matching<TestArtifact>> map = slots.asMap();
+        List<Revision> keys = new ArrayList<>(map.keySet());
+
+        assertEquals(3, map.size());
+        assertEquals(BASE, keys.get(0));
+        assertTrue(keys.containsAll(Arrays.asList(b, condition)));
+        assertSame(toCondition, map.get(condition));
+        assertNull(map.get("B"));
+
+        slots.put(null, toB);
+
+        assertSame(toB, slots.get(null));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void testViewIsUnmodifiable() throws Exception {
+        MatchingSlots<TestArtifact> slots = new MatchingSlots<>();
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+
+        slots.put(LEFT, matching(base, LEFT));
+        slots.put(new Revision("A"), matching(base, new Revision("A")));
+
+        Map<Revision, Matching<TestArtifact>> map = slots.asMap();
+
+        try {
+            map.put(RIGHT, matching(base, RIGHT));
+            fail("The view could be modified.");
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        for (Map.Entry<Revision, Matching<TestArtifact>> entry : map.entrySet()) {
+            try {
+                entry.setValue(null);
+                fail("An entry of the view could be modified.");
+            } catch (UnsupportedOperationException ignored) {
+            }
+        }
+
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testCloneMatches() throws Exception {
+        Revision nway = new Revision("A");
+        TestArtifact original = new TestArtifact(LEFT, "a", NODE);
+        TestArtifact base = new TestArtifact(BASE, "a", NODE);
+        TestArtifact other = new TestArtifact(nway, "a", NODE);
+
+        original.addMatching(new Matching<>(original, base, 1));
+        original.addMatching(new Matching<>(original, other, 1));
+
+        TestArtifact copy = new TestArtifact(LEFT, "a", NODE);
+        copy.cloneMatches(original);
+
+        for (Revision rev : Arrays.asList(BASE, nway)) {
+            Matching<TestArtifact> matching = copy.getMatching(rev);
+
+            assertNotSame(original.getMatching(rev), matching);
+            assertSame(original.getMatching(rev).getMatchingArtifact(original), matching.getMatchingArtifact(copy));
+            assertSame(copy, matching.getMatchingArtifact(matching.getMatchingArtifact(copy)));
+        }
+
+        assertEquals(original.getMatches().keySet(), copy.getMatches().keySet());
+        assertEquals(Collections.emptyMap(), new TestArtifact(LEFT, "a", NODE).getMatches());
+    }
+
+    /**
+     * Returns a <code>Matching</code> of <code>artifact</code> and a new <code>TestArtifact</code> in the given
+     * <code>Revision</code>.
+     *
+     * @param artifact
+     *         the <code>TestArtifact</code> to match
+     * @param rev
+     *         the <code>Revision</code> of the matching <code>TestArtifact</code>
+     * @return the <code>Matching</code>
+     */
+    private static Matching<TestArtifact> matching(TestArtifact artifact, Revision rev) {
+        return new Matching<>(artifact, new TestArtifact(rev, "a", NODE), 1);
+    }
+}
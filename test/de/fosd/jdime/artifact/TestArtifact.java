@@ -23,6 +23,7 @@
  */
 package de.fosd.jdime.artifact;
 
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -59,6 +60,7 @@ public class TestArtifact extends Artifact<TestArtifact> {
     public TestArtifact addChild(TestArtifact child) {
         children.add(child);
         child.setParent(this);
+        invalidateSubtreeMetrics();
         return child;
     }
 
@@ -129,6 +131,11 @@ public class TestArtifact extends Artifact<TestArtifact> {
         return this.type == other.type && this.label.equals(other.label);
     }
 
+    @Override
+    public int getLabelHash() {
+        return Objects.hash(type, label);
+    }
+
     @Override
     public void merge(MergeOperation<TestArtifact> operation, MergeContext context) {
 
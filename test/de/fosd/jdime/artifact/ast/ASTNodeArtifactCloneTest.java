@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.File;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.stats.KeyEnums;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests the copy-on-write copies created by {@link ASTNodeArtifact#clone()}.
+ */
+public class ASTNodeArtifactCloneTest extends JDimeTest {
+
+    private static final String content = "package p;\n" +
+                                          "\n" +
+                                          "import java.util.List;\n" +
+                                          "\n" +
+                                          "class A<T> extends Object implements Runnable {\n" +
+                                          "  private List<T> l;\n" +
+                                          "  public void run() {\n" +
+                                          "    for (T t : l) {\n" +
+                                          "      if (t != null) {\n" +
+                                          "        System.out.println(t);\n" +
+                                          "      }\n" +
+                                          "    }\n" +
+                                          "  }\n" +
+                                          "  class Inner {\n" +
+                                          "    int x = 1 + 2;\n" +
+                                          "  }\n" +
+                                          "}\n";
+
+    @Test
+    public void testUnmodifiedCopy() throws Exception {
+        File file = scenario("clone", content, content, content)[0];
+        ASTNodeArtifact original = new ASTNodeArtifact(new FileArtifact(LEFT, file));
+        String expected = original.prettyPrint();
+
+        ASTNodeArtifact copy = original.clone();
+        ASTNodeArtifact deepCopy = original.clone();
+        materialize(deepCopy);
+
+        assertEquals(expected, copy.prettyPrint());
+        assertEquals(expected, deepCopy.prettyPrint());
+        assertEquals(expected, original.prettyPrint());
+    }
+
+    @Test
+    public void testPartiallyMaterializedCopy() throws Exception {
+        File file = scenario("clone", content, content, content)[0];
+        ASTNodeArtifact original = new ASTNodeArtifact(new FileArtifact(LEFT, file));
+        String expected = original.prettyPrint();
+
+        // only the path to the method is materialized, its siblings and its own subtree stay shared
+        ASTNodeArtifact copy = original.clone();
+        ASTNodeArtifact method = findMethod(copy);
+
+        assertNotNull(method);
+
+        ASTNodeArtifact deepCopy = original.clone();
+        materialize(deepCopy);
+
+        assertEquals(deepCopy.getTreeSize(), copy.getTreeSize());
+        assertEquals(expected, copy.prettyPrint());
+        assertEquals(expected, deepCopy.prettyPrint());
+        assertEquals(expected, original.prettyPrint());
+    }
+
+    /**
+     * Creates the children of every node in the tree rooted in <code>artifact</code>, which turns a copy-on-write
+     * copy into a deep copy.
+     *
+     * @param artifact
+     *         the root of the tree
+     */
+    private static void materialize(ASTNodeArtifact artifact) {
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            materialize(child);
+        }
+    }
+
+    /**
+     * Returns the first method in DFS pre-order in the tree rooted in <code>artifact</code>. Only the children of the
+     * nodes visited before the method are created.
+     *
+     * @param artifact
+     *         the root of the tree
+     * @return the method or <code>null</code>
+     */
+    private static ASTNodeArtifact findMethod(ASTNodeArtifact artifact) {
+
+        if (artifact.getType() == KeyEnums.Type.METHOD) {
+            return artifact;
+        }
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            ASTNodeArtifact method = findMethod(child);
+
+            if (method != null) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+}
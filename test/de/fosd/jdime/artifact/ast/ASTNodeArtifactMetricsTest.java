@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.stats.KeyEnums;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the cached subtree metrics of <code>ASTNodeArtifact</code>s follow changes to the tree.
+ */
+public class ASTNodeArtifactMetricsTest extends JDimeTest {
+
+    private static final String base = "class A {\n" +
+                                       "  void m() {\n" +
+                                       "    int x = 1;\n" +
+                                       "  }\n" +
+                                       "}\n";
+
+    private static final String left = "class A {\n" +
+                                       "  void m() {\n" +
+                                       "    int x = 1;\n" +
+                                       "  }\n" +
+                                       "  void n() {\n" +
+                                       "    if (true) {\n" +
+                                       "      if (true) {\n" +
+                                       "        m();\n" +
+                                       "      }\n" +
+                                       "    }\n" +
+                                       "  }\n" +
+                                       "}\n";
+
+    @Test
+    public void testMetricsAfterRemoveChild() throws Exception {
+        File[] files = scenario("metrics", left, base, base);
+        ASTNodeArtifact leftTree = new ASTNodeArtifact(new FileArtifact(LEFT, files[0]));
+        ASTNodeArtifact baseTree = new ASTNodeArtifact(new FileArtifact(BASE, files[1]));
+
+        List<ASTNodeArtifact> leftNodes = preOrder(leftTree, new ArrayList<>());
+        List<ASTNodeArtifact> baseNodes = preOrder(baseTree, new ArrayList<>());
+
+        ASTNodeArtifact added = leftNodes.stream().filter(a -> a.getType() == KeyEnums.Type.METHOD)
+                                         .reduce((first, second) -> second).get();
+        leftNodes.removeAll(preOrder(added, new ArrayList<>()));
+
+        assertEquals(baseNodes.size(), leftNodes.size());
+
+        for (int i = 0; i < leftNodes.size(); i++) {
+            ASTNodeArtifact l = leftNodes.get(i);
+            ASTNodeArtifact b = baseNodes.get(i);
+
+            assertTrue(l.matches(b));
+
+            Matching<ASTNodeArtifact> matching = new Matching<>(l, b, 1);
+            l.addMatching(matching);
+            b.addMatching(matching);
+        }
+
+        assertEquals(baseTree.getSubtreeSize() + added.getTreeSize(), leftTree.getSubtreeSize());
+        assertTrue(leftTree.getMaxDepth() > baseTree.getMaxDepth());
+        assertTrue(leftTree.hasChanges());
+        assertTrue(leftTree.hasChanges(BASE));
+        assertTrue(baseTree.hasChanges(LEFT));
+
+        added.getParent().removeChild(added);
+
+        assertEquals(baseTree.getSubtreeSize(), leftTree.getSubtreeSize());
+        assertEquals(baseTree.getMaxDepth(), leftTree.getMaxDepth());
+        assertFalse(leftTree.hasChanges());
+        assertFalse(leftTree.hasChanges(BASE));
+        assertFalse(baseTree.hasChanges(LEFT));
+    }
+
+    /**
+     * Collects the nodes of the tree rooted in <code>artifact</code> in DFS pre-order.
+     *
+     * @param artifact
+     *         the root of the tree
+     * @param nodes
+     *         the <code>List</code> to add the nodes to
+     * @return <code>nodes</code>
+     */
+    private static List<ASTNodeArtifact> preOrder(ASTNodeArtifact artifact, List<ASTNodeArtifact> nodes) {
+        nodes.add(artifact);
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            preOrder(child, nodes);
+        }
+
+        return nodes;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.Revision;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that lazily materialized <code>ASTNodeArtifact</code> trees are numbered like fully materialized ones.
+ */
+public class LazyASTNodeArtifactTest extends JDimeTest {
+
+    private static final Revision testRevision = new Revision("TEST");
+
+    private static final String lazyContent = "class Lazy {\n" +
+                                              "  int a = 1;\n" +
+                                              "  int m(int x) {\n" +
+                                              "    if (x > 0) {\n" +
+                                              "      return x + a;\n" +
+                                              "    }\n" +
+                                              "    return m(-x);\n" +
+                                              "  }\n" +
+                                              "  class Inner {\n" +
+                                              "    void n() { m(a); }\n" +
+                                              "  }\n" +
+                                              "}\n";
+
+    @Test
+    public void testLazyNumbering() throws Exception {
+        File file = scenario("lazy", lazyContent, lazyContent, lazyContent)[0];
+
+        // Renumbering materializes the whole tree and assigns the DFS indices from scratch.
+        ASTNodeArtifact eager = new ASTNodeArtifact(new FileArtifact(testRevision, file));
+        eager.renumber();
+
+        List<Artifact<ASTNodeArtifact>> nodes = new ArrayList<>();
+        preOrder(eager, nodes);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(i, nodes.get(i).getNumber());
+        }
+
+        ASTNodeArtifact lazy = new ASTNodeArtifact(new FileArtifact(testRevision, file));
+        assertEquals(nodes.size() - 1, lazy.getSubtreeSize());
+
+        // Look the nodes up back to front so that later subtrees are materialized before earlier ones.
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Artifact<ASTNodeArtifact> expected = nodes.get(i);
+            Optional<Artifact<ASTNodeArtifact>> found = lazy.find(i);
+
+            assertTrue("Node " + i + " was not found.", found.isPresent());
+
+            ASTNodeArtifact actual = (ASTNodeArtifact) found.get();
+
+            assertEquals(i, actual.getNumber());
+            assertTrue(actual.matches((ASTNodeArtifact) expected));
+            assertEquals(expected.getNumChildren(), actual.getNumChildren());
+            assertEquals(expected.getSubtreeSize(), actual.getSubtreeSize());
+        }
+
+        assertFalse(lazy.find(nodes.size()).isPresent());
+
+        lazy.renumber();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals(i, lazy.find(i).map(Artifact::getNumber).orElse(-1).intValue());
+        }
+    }
+
+    /**
+     * Materializes the whole tree rooted in <code>artifact</code> and collects its nodes in DFS pre-order.
+     *
+     * @param artifact
+     *         the root of the tree
+     * @param nodes
+     *         the <code>List</code> to add the nodes to
+     */
+    private static void preOrder(Artifact<ASTNodeArtifact> artifact, List<Artifact<ASTNodeArtifact>> nodes) {
+        nodes.add(artifact);
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            preOrder(child, nodes);
+        }
+    }
+}
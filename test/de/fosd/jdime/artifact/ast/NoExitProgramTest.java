@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import de.fosd.jdime.execption.ClassFileReadError;
+import org.apache.commons.io.IOUtils;
+import org.jastadd.extendj.ast.BodyDecl;
+import org.jastadd.extendj.ast.BytecodeParser;
+import org.jastadd.extendj.ast.MemberClassDecl;
+import org.jastadd.extendj.ast.Program;
+import org.jastadd.extendj.ast.TypeDecl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the <code>NoExitProgram</code> turns failures while reading class files into
+ * <code>ClassFileReadError</code>s.
+ */
+public class NoExitProgramTest {
+
+    @Test
+    public void testLibraryClassWithNestedClasses() throws Exception {
+        Program program = program();
+        program.initBytecodeReader((is, fullName, p) -> new BytecodeParser(is, fullName).parse(null, null, p));
+
+        // reading HashMap also reads the class files of its nested classes from NoExitProgram#getInputStream
+        TypeDecl hashMap = program.lookupType("java.util", "HashMap");
+
+        assertFalse(hashMap.isUnknown());
+        boolean hasNestedClass = false;
+
+        for (BodyDecl decl : hashMap.getBodyDeclList()) {
+            hasNestedClass |= decl instanceof MemberClassDecl;
+        }
+
+        assertTrue(hasNestedClass);
+    }
+
+    @Test
+    public void testReaderException() throws Exception {
+        Program program = program();
+        program.initBytecodeReader((is, fullName, p) -> {
+            throw new IOException("broken");
+        });
+
+        try {
+            program.lookupType("java.util", "HashMap");
+            fail("The exception thrown by the BytecodeReader was swallowed.");
+        } catch (ClassFileReadError e) {
+            assertEquals("broken", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testTruncatedClassFile() throws Exception {
+        byte[] classFile = read(HashMap.class);
+        Program program = program();
+
+        // the complete class file is read without reaching its end
+        new BytecodeParser(stream(classFile), "HashMap").parse(null, null, program);
+
+        try {
+            byte[] truncated = Arrays.copyOf(classFile, classFile.length / 2);
+            new BytecodeParser(stream(truncated), "HashMap").parse(null, null, program);
+            fail("A truncated class file was read.");
+        } catch (ClassFileReadError e) {
+            // expected, an EOFException would be caught by ExtendJ
+        }
+    }
+
+    @Test(expected = ClassFileReadError.class)
+    public void testSkipAtEnd() throws Exception {
+        InputStream in = stream(new byte[] { 1, 2 });
+
+        assertEquals(2, in.skip(5));
+        in.skip(1);
+    }
+
+    @Test(expected = ClassFileReadError.class)
+    public void testIOException() throws Exception {
+        InputStream broken = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw new IOException("broken");
+            }
+        };
+
+        new NoExitProgram.ClassFileInputStream(broken, "A").read();
+    }
+
+    /**
+     * Returns a new <code>NoExitProgram</code> with a reset ExtendJ state.
+     *
+     * @return the <code>Program</code>
+     */
+    private static Program program() {
+        Program program = new NoExitProgram();
+        program.state().reset();
+
+        return program;
+    }
+
+    /**
+     * Returns a <code>ClassFileInputStream</code> reading the given bytes.
+     *
+     * @param classFile
+     *         the content of the stream
+     * @return the <code>InputStream</code>
+     */
+    private static InputStream stream(byte[] classFile) {
+        return new NoExitProgram.ClassFileInputStream(new ByteArrayInputStream(classFile), "A");
+    }
+
+    /**
+     * Reads the class file of the given <code>Class</code>.
+     *
+     * @param cls
+     *         the <code>Class</code> to read
+     * @return the content of its class file
+     * @throws IOException
+     *         if the class file can not be read
+     */
+    private static byte[] read(Class<?> cls) throws IOException {
+        String name = cls.getName();
+
+        try (InputStream in = cls.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.config.merge.MergeType;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import org.jastadd.extendj.ast.CompilationUnit;
+import org.jastadd.extendj.ast.Program;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests for the <code>ParseCache</code>.
+ */
+public class ParseCacheTest {
+
+    private static final String CONTENT = "class A {\n    int a;\n}\n";
+    private static final String OTHER_CONTENT = "class A {\n    int b;\n}\n";
+
+    private FileArtifact first;
+    private FileArtifact second;
+    private FileArtifact other;
+    private MergeScenarioStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-parse-cache");
+
+        first = new FileArtifact(LEFT, write(dir.resolve("first"), CONTENT));
+        second = new FileArtifact(RIGHT, write(dir.resolve("second"), CONTENT));
+        other = new FileArtifact(BASE, write(dir.resolve("other"), OTHER_CONTENT));
+        statistics = new MergeScenarioStatistics(new MergeScenario<>(MergeType.THREEWAY, first, other, second));
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        ParseCache cache = new ParseCache(1024);
+
+        ASTNodeArtifact firstAST = cache.parse(first, statistics);
+        ASTNodeArtifact secondAST = cache.parse(second, statistics);
+        ASTNodeArtifact otherAST = cache.parse(other, statistics);
+        ASTNodeArtifact firstAgainAST = cache.parse(first, statistics);
+
+        assertEquals(2, statistics.getParseCacheHits());
+        assertEquals(2, statistics.getParseCacheMisses());
+        assertEquals(2, cache.size());
+
+        assertEquals(firstAST.prettyPrint(), secondAST.prettyPrint());
+        assertEquals(firstAST.prettyPrint(), firstAgainAST.prettyPrint());
+        assertEquals(new ASTNodeArtifact(other).prettyPrint(), otherAST.prettyPrint());
+    }
+
+    @Test
+    public void testSameContentDifferentPaths() throws Exception {
+        ParseCache cache = new ParseCache(1024);
+
+        Program firstProgram = (Program) cache.parse(first, statistics).getASTNode();
+        Program secondProgram = (Program) cache.parse(second, statistics).getASTNode();
+
+        assertEquals(1, statistics.getParseCacheHits());
+        assertNotSame(firstProgram, secondProgram);
+
+        CompilationUnit firstCU = firstProgram.getCompilationUnit(0);
+        CompilationUnit secondCU = secondProgram.getCompilationUnit(0);
+
+        assertNotSame(firstCU, secondCU);
+        assertEquals(first.getPath(), firstCU.pathName());
+        assertEquals(second.getPath(), secondCU.pathName());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ParseCache cache = new ParseCache(0);
+
+        cache.parse(first, statistics);
+        cache.parse(second, statistics);
+
+        assertEquals(0, statistics.getParseCacheHits());
+        assertEquals(0, statistics.getParseCacheMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        ParseCache cache = new ParseCache(CONTENT.length());
+
+        cache.parse(first, statistics);
+        cache.parse(other, statistics);
+        cache.parse(first, statistics);
+
+        // the entry for 'first' was evicted when the one for 'other' was added
+        assertEquals(0, statistics.getParseCacheHits());
+        assertEquals(3, statistics.getParseCacheMisses());
+        assertEquals(1, cache.size());
+    }
+
+    private static File write(Path dir, String content) throws Exception {
+        Path file = Files.createDirectories(dir).resolve("A.java");
+        return Files.write(file, content.getBytes(UTF_8)).toFile();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.File;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.stats.KeyEnums;
+import org.jastadd.extendj.ast.ASTNode;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests {@link ASTNodeArtifact#prettyPrintSpliced(ASTNodeArtifact, String)}.
+ */
+public class PrettyPrintSplicedTest extends JDimeTest {
+
+    private static final String method = "int m( int p ) {\n" +
+                                         "        return p ; // unchanged\n" +
+                                         "    }";
+
+    private static final String content = "class A {\n" +
+                                          "    // comment\n" +
+                                          "    " + method + "\n" +
+                                          "}\n";
+
+    @Test
+    public void testDeclarationParentIsRestored() throws Exception {
+        File file = scenario("A.java", content, content, content)[0];
+        ASTNodeArtifact tree = new ASTNodeArtifact(new FileArtifact(LEFT, file));
+        ASTNodeArtifact original = findMethod(tree);
+
+        assertNotNull(original);
+
+        ASTNode<?> parent = original.getASTNode().getParent();
+        int index = parent.getIndexOfChild(original.getASTNode());
+
+        ASTNodeArtifact merged = original.clone();
+        ASTNode<?> mergedParent = merged.getASTNode().getParent();
+
+        assertEquals(method, merged.prettyPrintSpliced(original, content));
+
+        assertSame(mergedParent, merged.getASTNode().getParent());
+        assertSame(parent, original.getASTNode().getParent());
+        assertSame(original.getASTNode(), parent.getChildNoTransform(index));
+    }
+
+    /**
+     * Returns the first method in DFS pre-order in the tree rooted in <code>artifact</code>.
+     *
+     * @param artifact
+     *         the root of the tree
+     * @return the method or <code>null</code>
+     */
+    private static ASTNodeArtifact findMethod(ASTNodeArtifact artifact) {
+
+        if (artifact.getType() == KeyEnums.Type.METHOD) {
+            return artifact;
+        }
+
+        for (ASTNodeArtifact child : artifact.getChildren()) {
+            ASTNodeArtifact method = findMethod(child);
+
+            if (method != null) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+}
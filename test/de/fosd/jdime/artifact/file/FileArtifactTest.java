@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.file;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.strategy.MergeStrategy;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>FileArtifact</code>.
+ */
+public class FileArtifactTest extends JDimeTest {
+
+    private static final String ORIGINAL = "// unchanged\nclass A {\n  int a;\n}\n";
+    private static final String CHANGED = "// changed\nclass A {\n  int b;\n}\n";
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("WARNING");
+    }
+
+    @Test
+    public void testTrivialMergeLeftEqualsRight() throws Exception {
+        assertTrivialMerge(scenario("A.java", CHANGED, ORIGINAL, CHANGED));
+    }
+
+    @Test
+    public void testTrivialMergeLeftEqualsBase() throws Exception {
+        assertTrivialMerge(scenario("A.java", ORIGINAL, ORIGINAL, CHANGED));
+    }
+
+    @Test
+    public void testTrivialMergeRightEqualsBase() throws Exception {
+        assertTrivialMerge(scenario("A.java", CHANGED, ORIGINAL, ORIGINAL));
+    }
+
+    @Test
+    public void testTrivialDirectoryMerge() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-directories");
+
+        for (String revision : new String[] { "left", "base", "right" }) {
+            Path root = dir.resolve(revision);
+
+            write(root.resolve("same/S.java"), ORIGINAL);
+            write(root.resolve("same/docs/notes.txt"), ORIGINAL); // no Java files, must not be copied
+            write(root.resolve("changed/C.java"), revision.equals("base") ? ORIGINAL : "// " + revision + "\n" + ORIGINAL);
+        }
+
+        MergeContext context = context(); // the fast path is enabled by default for the line based strategy
+        context.setFilterInputDirectories(false);
+
+        File out = merge(context, dir);
+
+        assertEquals(ORIGINAL, read(out, "same/S.java"));
+        assertTrue(read(out, "changed/C.java").startsWith("<<<<<<<"));
+        assertFalse(new File(out, "same/docs").exists());
+
+        int trivialMerges = 0;
+
+        for (MergeScenarioStatistics statistics : context.getStatistics().getScenarioStatistics()) {
+            trivialMerges += statistics.getTrivialMerges();
+        }
+
+        // 'same' is copied as a whole, 'changed/C.java' is merged by the strategy
+        assertEquals(1, trivialMerges);
+    }
+
+    @Test
+    public void testIdenticalSubdirectories() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-directories");
+
+        for (String revision : new String[] { "left", "base", "right" }) {
+            Path root = dir.resolve(revision);
+
+            write(root.resolve("a/same/S.java"), ORIGINAL);
+            write(root.resolve("a/changed/C.java"), revision.equals("right") ? CHANGED : ORIGINAL);
+            write(root.resolve("b/B.java"), revision.equals("left") ? CHANGED : ORIGINAL);
+        }
+
+        MergeContext context = context();
+        File out = merge(context, dir);
+
+        assertEquals(ORIGINAL, read(out, "a/same/S.java"));
+        assertEquals(CHANGED, read(out, "a/changed/C.java"));
+        assertEquals(CHANGED, read(out, "b/B.java"));
+
+        // the directories paired by their digests are matched like the rest of the trees
+        FileArtifact left = context.getInputFiles().get(0);
+        FileArtifact right = context.getInputFiles().get(2);
+        FileArtifact lSame = child(child(left, "a"), "same");
+        FileArtifact rSame = child(child(right, "a"), "same");
+
+        assertTrue(lSame.hasMatching(rSame));
+        assertTrue(child(lSame, "S.java").hasMatching(child(rSame, "S.java")));
+    }
+
+    @Test
+    public void testDigestIgnoresNonJavaFiles() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-directories");
+
+        write(dir.resolve("left/A.java"), ORIGINAL);
+        write(dir.resolve("left/notes.txt"), ORIGINAL);
+        write(dir.resolve("right/A.java"), ORIGINAL);
+        write(dir.resolve("right/notes.txt"), CHANGED);
+
+        FileArtifact left = new FileArtifact(LEFT, dir.resolve("left").toFile());
+        FileArtifact right = new FileArtifact(RIGHT, dir.resolve("right").toFile());
+
+        assertEquals(left.getContentDigest(), right.getContentDigest());
+
+        write(dir.resolve("right/A.java"), CHANGED);
+        right = new FileArtifact(RIGHT, dir.resolve("right").toFile());
+
+        assertNotEquals(left.getContentDigest(), right.getContentDigest());
+    }
+
+    @Test
+    public void testTrivialDirectoryMergeNumbering() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-directories");
+
+        for (String revision : new String[] { "left", "base", "right" }) {
+            Path root = dir.resolve(revision);
+
+            write(root.resolve("a/A.java"), ORIGINAL);
+            write(root.resolve("a/b/B.java"), ORIGINAL);
+            write(root.resolve("c/C.java"), ORIGINAL);
+        }
+
+        MergeContext context = context();
+        context.setFastPathTrivialMerges(true);
+
+        merge(context, dir);
+
+        List<Integer> numbers = new ArrayList<>();
+        collectNumbers(context.getOutputFile(), numbers);
+
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(i, (int) numbers.get(i));
+        }
+
+        assertTrue(numbers.size() > 1);
+    }
+
+    @Test
+    public void testScannedAttributes() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-directories");
+
+        write(dir.resolve("A.java"), ORIGINAL);
+        write(dir.resolve("notes.txt"), ORIGINAL);
+        write(dir.resolve("sub/B.java"), ORIGINAL);
+
+        FileArtifact root = new FileArtifact(LEFT, dir.toFile());
+        FileArtifact java = child(root, "A.java");
+        FileArtifact notes = child(root, "notes.txt");
+        FileArtifact sub = child(root, "sub");
+
+        assertTrue(java.isFile() && java.isJavaFile() && java.isLeaf() && !java.isDirectory());
+        assertTrue(notes.isFile() && !notes.isJavaFile());
+        assertTrue(sub.isDirectory() && !sub.isFile() && !sub.isLeaf());
+
+        // the attributes were read while scanning the directory, they are not queried again
+        Files.delete(dir.resolve("A.java"));
+
+        assertFalse(java.exists());
+        assertTrue(java.isJavaFile());
+
+        // removing the file through the FileArtifact discards them
+        sub.remove();
+
+        assertFalse(sub.exists());
+        assertFalse(sub.isDirectory());
+        assertTrue(sub.isLeaf());
+    }
+
+    /**
+     * Returns the child of <code>artifact</code> representing the file with the given name.
+     *
+     * @param artifact
+     *         the directory <code>FileArtifact</code>
+     * @param name
+     *         the name of the file
+     * @return the child
+     */
+    private static FileArtifact child(FileArtifact artifact, String name) {
+        return artifact.getChildren().stream().filter(c -> c.getFile().getName().equals(name)).findFirst().get();
+    }
+
+    /**
+     * Adds the numbers of the <code>FileArtifact</code>s in the tree rooted in <code>artifact</code> to
+     * <code>numbers</code> in depth-first order.
+     *
+     * @param artifact
+     *         the root of the tree
+     * @param numbers
+     *         the list to add the numbers to
+     */
+    private static void collectNumbers(FileArtifact artifact, List<Integer> numbers) {
+        numbers.add(artifact.getNumber());
+        artifact.getChildren().forEach(c -> collectNumbers(c, numbers));
+    }
+
+    /**
+     * Merges the directories 'left', 'base' and 'right' under <code>dir</code> line based into the directory
+     * 'merge'.
+     *
+     * @param context
+     *         the <code>MergeContext</code> to use
+     * @param dir
+     *         the directory containing the revisions
+     * @return the directory containing the merge result
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static File merge(MergeContext context, Path dir) throws Exception {
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(LEFT, dir.resolve("left").toFile()));
+        inputArtifacts.add(new FileArtifact(BASE, dir.resolve("base").toFile()));
+        inputArtifacts.add(new FileArtifact(RIGHT, dir.resolve("right").toFile()));
+
+        File out = dir.resolve("merge").toFile();
+
+        context.setMergeStrategy(MergeStrategy.parse("linebased"));
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MERGE, out, true, false));
+
+        Main.merge(context);
+
+        return out;
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(UTF_8));
+    }
+
+    private static String read(File dir, String path) throws Exception {
+        return new String(Files.readAllBytes(new File(dir, path).toPath()), UTF_8);
+    }
+
+    /**
+     * Asserts that the given scenario whose result is {@link #CHANGED} is merged trivially if the fast path for
+     * trivial merges is enabled and by the strategy if it is disabled. By default, only the structured strategy
+     * (which pretty-prints the AST instead) does not use the fast path.
+     *
+     * @param files
+     *         the left, base and right file
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static void assertTrivialMerge(File... files) throws Exception {
+
+        for (String strategy : new String[] { "linebased", "semistructured", "combined", "structured" }) {
+            boolean structured = strategy.equals("structured");
+
+            MergeContext context = context();
+            context.setFastPathTrivialMerges(true);
+
+            assertEquals(strategy, CHANGED, merge(context, strategy, files));
+            assertEquals(strategy, 1, statistics(context).getTrivialMerges());
+
+            context = context();
+            String output = merge(context, strategy, files);
+
+            assertEquals(strategy, structured ? 0 : 1, statistics(context).getTrivialMerges());
+
+            if (structured) {
+                // the merged AST is pretty-printed without the comment
+                assertEquals(strategy, normalize(CHANGED.substring(CHANGED.indexOf('\n') + 1)), normalize(output));
+            } else {
+                assertEquals(strategy, CHANGED, output);
+            }
+
+            context = context();
+            context.setFastPathTrivialMerges(false);
+            merge(context, strategy, files);
+
+            assertEquals(strategy, 0, statistics(context).getTrivialMerges());
+        }
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> writing the merge result to the output file and collecting statistics.
+     *
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context() {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+        context.collectStatistics(true);
+
+        return context;
+    }
+
+    /**
+     * Returns the statistics of the single file merged using the given <code>context</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code> used for the merge
+     * @return the <code>MergeScenarioStatistics</code>
+     */
+    private static MergeScenarioStatistics statistics(MergeContext context) {
+        assertEquals(1, context.getStatistics().getScenarioStatistics().size());
+        return context.getStatistics().getScenarioStatistics().get(0);
+    }
+}
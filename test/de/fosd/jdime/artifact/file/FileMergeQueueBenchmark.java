@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.file;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.strategy.MergeStrategy;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures how much faster a recursive merge gets if its files are merged on several threads (see
+ * {@link MergeContext#getFileMergeThreads()}). The benchmark only runs if the system property
+ * <code>jdime.benchmark</code> is <code>true</code> (the gradle task <code>benchmark</code> sets it). The number of
+ * threads defaults to the number of available processors and can be set using the system property
+ * <code>jdime.benchmark.threads</code>. The wall clock times of merging a generated directory with one and with that
+ * many threads are printed for every strategy.
+ */
+public class FileMergeQueueBenchmark {
+
+    private static final int FILES = 48;
+    private static final int METHODS = 30;
+    private static final int RUNS = 3;
+
+    private static Path dir;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        assumeTrue("Set jdime.benchmark to run the benchmark.", Boolean.getBoolean("jdime.benchmark"));
+
+        JDimeConfig.setLogLevel("SEVERE");
+        dir = scenario();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        int threads = Integer.getInteger("jdime.benchmark.threads", Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%d files, %d processors, %d threads%n", FILES, Runtime.getRuntime().availableProcessors(),
+                threads);
+        System.out.printf("%-15s %12s %12s %8s%n", "strategy", "1 thread", threads + " threads", "speedup");
+
+        for (String strategy : new String[] { "linebased", "semistructured", "combined", "structured" }) {
+            merge(strategy, threads); // warm up
+
+            long sequential = time(strategy, 1);
+            long parallel = time(strategy, threads);
+
+            System.out.printf("%-15s %10dms %10dms %7.2fx%n", strategy, sequential, parallel,
+                    (double) sequential / parallel);
+        }
+    }
+
+    /**
+     * Returns the shortest wall clock time in milliseconds of {@link #RUNS} merges of the scenario.
+     *
+     * @param strategy
+     *         the name of the strategy to use
+     * @param threads
+     *         the number of threads merging files
+     * @return the shortest time in milliseconds
+     * @throws Exception
+     *         if the merges fail
+     */
+    private static long time(String strategy, int threads) throws Exception {
+        long best = Long.MAX_VALUE;
+
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            merge(strategy, threads);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1000000;
+    }
+
+    /**
+     * Creates the directories 'left', 'base' and 'right' containing {@link #FILES} Java files. Both revisions change
+     * different methods of every file, every fourth file also has a conflict.
+     *
+     * @return the directory containing the revisions
+     * @throws Exception
+     *         if the files can not be written
+     */
+    private static Path scenario() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-benchmark");
+
+        for (int i = 0; i < FILES; i++) {
+            String name = String.format("p%d/C%d.java", i % 4, i);
+
+            write(dir.resolve("left").resolve(name), source(i, 1, i % 4 == 0 ? 2 : 0));
+            write(dir.resolve("base").resolve(name), source(i, 0, 0));
+            write(dir.resolve("right").resolve(name), source(i, 2, 3));
+        }
+
+        return dir;
+    }
+
+    /**
+     * Returns the source of a class with {@link #METHODS} methods. The method with index <code>changed</code> and
+     * the method with index <code>METHODS - 1 - changed</code> return <code>value</code>, all others return their
+     * index.
+     *
+     * @param number
+     *         the number of the class
+     * @param changed
+     *         the index of the changed methods
+     * @param value
+     *         the value returned by the changed methods
+     * @return the source code
+     */
+    private static String source(int number, int changed, int value) {
+        StringBuilder source = new StringBuilder(String.format("class C%d {%n", number));
+
+        for (int m = 0; m < METHODS; m++) {
+            int result = (m == changed || m == METHODS - 1 - changed) ? value * 100 + m : m;
+
+            source.append(String.format("%n    int m%d(int x) {%n", m));
+            source.append(String.format("        int y = x * %d;%n", m));
+            source.append(String.format("        for (int i = 0; i < x; i++) {%n"));
+            source.append(String.format("            y += i;%n"));
+            source.append(String.format("        }%n"));
+            source.append(String.format("        return y + %d;%n", result));
+            source.append(String.format("    }%n"));
+        }
+
+        return source.append(String.format("}%n")).toString();
+    }
+
+    /**
+     * Merges the revisions in {@link #dir} into its subdirectory 'merge'.
+     *
+     * @param strategy
+     *         the name of the strategy to use
+     * @param threads
+     *         the number of threads merging files
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static void merge(String strategy, int threads) throws Exception {
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(LEFT, dir.resolve("left").toFile()));
+        inputArtifacts.add(new FileArtifact(BASE, dir.resolve("base").toFile()));
+        inputArtifacts.add(new FileArtifact(RIGHT, dir.resolve("right").toFile()));
+
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+        context.setForceOverwriting(true);
+        context.setFileMergeThreads(threads);
+        context.setMergeStrategy(MergeStrategy.parse(strategy));
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MERGE, dir.resolve("merge").toFile(), true, false));
+
+        Main.merge(context);
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.strategy.MergeStrategy;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that merging the files of a recursive merge on several threads produces the same result as merging them
+ * one after the other.
+ */
+public class FileMergeQueueTest {
+
+    private static final int FILES = 8;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+    }
+
+    @Test
+    public void testLinebased() throws Exception {
+        assertSameResult("linebased");
+    }
+
+    @Test
+    public void testStructured() throws Exception {
+        assertSameResult("structured");
+    }
+
+    @Test
+    public void testSemistructured() throws Exception {
+        assertSameResult("semistructured");
+    }
+
+    /**
+     * Asserts that merging a directory with one and with several threads prints the same output in the same order
+     * and writes the same files.
+     *
+     * @param strategy
+     *         the name of the strategy to use
+     * @throws Exception
+     *         if the merges fail
+     */
+    private static void assertSameResult(String strategy) throws Exception {
+        Path dir = scenario();
+
+        String sequential = merge(strategy, 1, dir, "sequential");
+        String parallel = merge(strategy, 4, dir, "parallel");
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, parallel);
+
+        Map<String, String> sequentialFiles = read(dir.resolve("sequential"));
+        Map<String, String> parallelFiles = read(dir.resolve("parallel"));
+
+        assertEquals(FILES, sequentialFiles.size());
+        assertEquals(sequentialFiles, parallelFiles);
+        assertTrue(sequentialFiles.values().stream().anyMatch(content -> content.contains("<<<<<<<")));
+    }
+
+    /**
+     * Creates the directories 'left', 'base' and 'right' containing {@link #FILES} Java files in two packages. Every
+     * third file has a conflict, the others are changed in both revisions without a conflict.
+     *
+     * @return the directory containing the revisions
+     * @throws Exception
+     *         if the files can not be written
+     */
+    private static Path scenario() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-queue");
+
+        for (int i = 0; i < FILES; i++) {
+            String name = String.format("%s/C%d.java", i % 2 == 0 ? "a" : "b/c", i);
+
+            write(dir.resolve("left").resolve(name), source(i, "2", "1"));
+            write(dir.resolve("base").resolve(name), source(i, "1", "1"));
+            write(dir.resolve("right").resolve(name), source(i, i % 3 == 0 ? "3" : "1", i % 3 == 0 ? "1" : "2"));
+        }
+
+        return dir;
+    }
+
+    /**
+     * Returns the source of a class with two methods returning the given values.
+     *
+     * @param number
+     *         the number of the class
+     * @param first
+     *         the value returned by the first method
+     * @param second
+     *         the value returned by the second method
+     * @return the source code
+     */
+    private static String source(int number, String first, String second) {
+        return String.format("class C%d {%n" +
+                             "    int first() {%n" +
+                             "        return %s;%n" +
+                             "    }%n" +
+                             "%n" +
+                             "    int second() {%n" +
+                             "        return %s;%n" +
+                             "    }%n" +
+                             "}%n", number, first, second);
+    }
+
+    /**
+     * Merges the revisions in <code>dir</code> into the directory <code>output</code> and returns what was printed.
+     *
+     * @param strategy
+     *         the name of the strategy to use
+     * @param threads
+     *         the number of threads merging files
+     * @param dir
+     *         the directory containing the revisions
+     * @param output
+     *         the name of the output directory
+     * @return the output printed to <code>System.out</code>
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static String merge(String strategy, int threads, Path dir, String output) throws Exception {
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(LEFT, dir.resolve("left").toFile()));
+        inputArtifacts.add(new FileArtifact(BASE, dir.resolve("base").toFile()));
+        inputArtifacts.add(new FileArtifact(RIGHT, dir.resolve("right").toFile()));
+
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(false);
+        context.setPretend(false);
+        context.setFileMergeThreads(threads);
+        context.setMergeStrategy(MergeStrategy.parse(strategy));
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MERGE, dir.resolve(output).toFile(), true, false));
+
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+
+        System.setOut(new PrintStream(printed, true, UTF_8.name()));
+
+        try {
+            Main.merge(context);
+        } finally {
+            System.setOut(out);
+        }
+
+        return new String(printed.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Returns the contents of all files under <code>dir</code> indexed by their path relative to <code>dir</code>.
+     *
+     * @param dir
+     *         the directory to read
+     * @return the contents of the files
+     * @throws Exception
+     *         if the files can not be read
+     */
+    private static Map<String, String> read(Path dir) throws Exception {
+        Map<String, String> files = new TreeMap<>();
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                files.put(dir.relativize(path).toString(), new String(Files.readAllBytes(path), UTF_8));
+            }
+        }
+
+        return files;
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.config.merge;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.execption.MergeCancelledException;
+import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.strategy.LinebasedStrategy;
+import de.fosd.jdime.strategy.MergeStrategy;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the <code>CancellationToken</code> and its use by the <code>MergeContext</code>.
+ */
+public class CancellationTokenTest {
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+    }
+
+    @Test
+    public void testParent() throws Exception {
+        CancellationToken parent = new CancellationToken();
+        CancellationToken child = new CancellationToken(parent);
+        CancellationToken sibling = new CancellationToken(parent);
+
+        child.cancel();
+        assertTrue(child.isCancelled());
+        assertFalse(parent.isCancelled());
+        assertFalse(sibling.isCancelled());
+
+        parent.cancel();
+        assertTrue(parent.isCancelled());
+        assertTrue(sibling.isCancelled());
+    }
+
+    @Test
+    public void testContext() throws Exception {
+        CancellationToken parent = new CancellationToken();
+        MergeContext context = new MergeContext();
+        context.setCancellationToken(new CancellationToken(parent));
+
+        MergeContext scenarioContext = context.createScenarioContext();
+        scenarioContext.checkCancelled();
+
+        parent.cancel();
+
+        try {
+            scenarioContext.checkCancelled();
+            fail("The scenario context did not see the cancellation of the parent token.");
+        } catch (MergeCancelledException ignored) {
+        }
+    }
+
+    @Test
+    public void testCancelRunningMerge() throws Exception {
+        String[] names = { "A.java", "B.java", "C.java" };
+        Path dir = Files.createTempDirectory("jdime-cancel");
+
+        for (String revision : new String[] { "left", "base", "right" }) {
+            for (String name : names) {
+                String content = String.format("class %s {\n    int %s;\n}\n", name.charAt(0), revision);
+                Path file = dir.resolve(revision).resolve(name);
+
+                Files.createDirectories(file.getParent());
+                Files.write(file, content.getBytes(UTF_8));
+            }
+        }
+
+        MergeContext context = new MergeContext();
+        context.setQuiet(true);
+        context.setPretend(false);
+        context.setFileMergeThreads(1);
+
+        // cancels the merge from within after the first file was merged
+        context.setMergeStrategy(new MergeStrategy<FileArtifact>() {
+
+            private final LinebasedStrategy linebased = new LinebasedStrategy();
+
+            @Override
+            public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
+                linebased.merge(operation, context);
+                context.getCancellationToken().cancel();
+            }
+        });
+
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+        inputArtifacts.add(new FileArtifact(LEFT, dir.resolve("left").toFile()));
+        inputArtifacts.add(new FileArtifact(BASE, dir.resolve("base").toFile()));
+        inputArtifacts.add(new FileArtifact(RIGHT, dir.resolve("right").toFile()));
+        context.setInputFiles(inputArtifacts);
+
+        File out = dir.resolve("merge").toFile();
+        context.setOutputFile(new FileArtifact(MERGE, out, true, false));
+
+        try {
+            Main.merge(context);
+            fail("The merge was not cancelled.");
+        } catch (MergeCancelledException ignored) {
+        }
+
+        File[] merged = out.listFiles();
+        assertEquals(1, merged == null ? 0 : merged.length);
+    }
+}
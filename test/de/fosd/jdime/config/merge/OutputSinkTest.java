@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.config.merge;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.strategy.MergeStrategy;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>OutputSink</code> implementations.
+ */
+public class OutputSinkTest extends JDimeTest {
+
+    private static final String OUTPUT = "class A {\n}";
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("OFF");
+    }
+
+    @Test
+    public void testMemory() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-sink");
+        File target = dir.resolve("A.java").toFile();
+        OutputSink sink = OutputSink.memory();
+
+        assertTrue(sink.isEmpty());
+
+        sink.appendLine(OUTPUT);
+
+        assertEquals(OUTPUT.length() + System.lineSeparator().length(), sink.length());
+        assertEquals(OUTPUT + System.lineSeparator(), sink.getContent());
+
+        sink.writeTo(target);
+        sink.close();
+
+        assertEquals(OUTPUT + System.lineSeparator(), read(target));
+
+        sink.reset();
+
+        assertTrue(sink.isEmpty());
+        assertEquals("", sink.getContent());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-sink");
+        File target = dir.resolve("A.java").toFile();
+        OutputSink sink = OutputSink.discard();
+
+        sink.append(OUTPUT);
+
+        assertEquals(OUTPUT.length(), sink.length());
+        assertEquals("", sink.getContent());
+
+        sink.writeTo(target);
+
+        assertTrue(target.exists());
+        assertEquals("", read(target));
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-sink");
+        File target = dir.resolve("A.java").toFile();
+        File copy = dir.resolve("B.java").toFile();
+
+        Files.write(target.toPath(), "old".getBytes(Charset.defaultCharset()));
+
+        OutputSink sink = OutputSink.file(target);
+        sink.append(OUTPUT);
+
+        // the target is only replaced once the output is complete
+        assertEquals("old", read(target));
+        assertEquals(OUTPUT, sink.getContent());
+
+        sink.append("\n");
+        sink.writeTo(copy);
+        sink.writeTo(target);
+        sink.close();
+
+        assertEquals(OUTPUT + "\n", read(target));
+        assertEquals(OUTPUT + "\n", read(copy));
+        assertEquals(OUTPUT + "\n", sink.getContent());
+        assertArrayEquals(new String[] { "A.java", "B.java" }, sortedNames(dir));
+    }
+
+    @Test
+    public void testFileReset() throws Exception {
+        Path dir = Files.createTempDirectory("jdime-sink");
+        File target = dir.resolve("A.java").toFile();
+
+        OutputSink sink = OutputSink.file(target);
+        sink.append("partial");
+        sink.reset();
+
+        assertFalse(target.exists());
+        assertEquals(0, sortedNames(dir).length);
+        assertEquals("", sink.getContent());
+
+        sink.writeTo(target);
+
+        assertTrue(target.exists());
+        assertEquals("", read(target));
+    }
+
+    @Test
+    public void testFailedStrategyLeavesNoPartialOutput() throws Exception {
+        File[] files = scenario("A.java", "class A {\n  int a;\n}\n", "class A {\n}\n", "class A {\n  int b;\n}\n");
+        String expected = merge(context(), "linebased", files);
+
+        Path dir = Files.createTempDirectory("jdime-sink");
+        File target = dir.resolve("A.java").toFile();
+        MergeContext context = context();
+
+        // appends to the output before failing, the merge then falls back to the line based strategy
+        context.setMergeStrategy(new MergeStrategy<FileArtifact>() {
+
+            @Override
+            public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
+                context.append("partial output");
+                throw new RuntimeException("failed");
+            }
+        });
+
+        ArtifactList<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(LEFT, files[0]));
+        inputArtifacts.add(new FileArtifact(BASE, files[1]));
+        inputArtifacts.add(new FileArtifact(RIGHT, files[2]));
+
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MERGE, target, true, true));
+
+        Main.merge(context);
+
+        assertEquals(expected, read(target));
+        assertArrayEquals(new String[] { "A.java" }, sortedNames(dir));
+        assertEquals(1, context.getCrashes().size());
+    }
+
+    /**
+     * Returns a quiet <code>MergeContext</code> that writes the merge result to the output file but does not collect
+     * statistics, which makes the merge stream its output to the target file.
+     *
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context() {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+        context.collectStatistics(false);
+
+        return context;
+    }
+
+    /**
+     * Returns the sorted names of the files in <code>dir</code>.
+     *
+     * @param dir
+     *         the directory
+     * @return the names of the files
+     */
+    private static String[] sortedNames(Path dir) {
+        String[] names = dir.toFile().list();
+
+        Arrays.sort(names);
+        return names;
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+    }
+}
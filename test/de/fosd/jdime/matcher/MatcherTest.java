@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher;
+
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.matcher.matching.Color;
+import de.fosd.jdime.matcher.matching.LookAheadMatching;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.matcher.matching.Matchings;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.CLASS;
+import static de.fosd.jdime.stats.KeyEnums.Type.METHOD;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>Matcher</code>.
+ */
+public class MatcherTest {
+
+    /**
+     * A method is moved from class <code>A</code> to class <code>B</code> in the right revision. The anchors find the
+     * moved method although its parent does not match.
+     */
+    @Test
+    public void testMovedMethod() throws Exception {
+        TestArtifact left = movedMethodTree(LEFT, 0);
+        TestArtifact right = movedMethodTree(RIGHT, 1);
+        TestArtifact lA = left.getChild(0);
+        TestArtifact lM = lA.getChild(0);
+        TestArtifact rA = right.getChild(0);
+        TestArtifact rM = right.getChild(1).getChild(0);
+
+        MergeContext context = new MergeContext();
+        context.setUseAnchors(true);
+
+        Matchings<TestArtifact> matchings = new Matcher<TestArtifact>().match(context, left, right, Color.BLUE);
+
+        assertTrue(lM.hasMatching(rM));
+        assertTrue(lM.getChild(0).hasMatching(rM.getChild(0)));
+        assertTrue(lA.hasMatching(rA));
+
+        Matching<TestArtifact> matching = lM.getMatching(RIGHT);
+
+        assertTrue(matching instanceof LookAheadMatching);
+        assertTrue(matchings.contains(matching));
+        assertEquals(5, matching.getScore());
+    }
+
+    /**
+     * Without anchors the matchers never pair nodes below non-matching parents, the moved method is not matched.
+     */
+    @Test
+    public void testMovedMethodWithoutAnchors() throws Exception {
+        TestArtifact left = movedMethodTree(LEFT, 0);
+        TestArtifact right = movedMethodTree(RIGHT, 1);
+
+        new Matcher<TestArtifact>().match(new MergeContext(), left, right, Color.BLUE);
+
+        assertFalse(left.getChild(0).getChild(0).hasMatches());
+    }
+
+    /**
+     * Pairs registered as identical by the caller are anchored even if anchors are disabled.
+     */
+    @Test
+    public void testIdenticalPair() throws Exception {
+        TestArtifact left = movedMethodTree(LEFT, 0);
+        TestArtifact right = movedMethodTree(RIGHT, 1);
+        TestArtifact lM = left.getChild(0).getChild(0);
+        TestArtifact rM = right.getChild(1).getChild(0);
+
+        Matcher<TestArtifact> matcher = new Matcher<>();
+        matcher.addIdenticalPair(lM, rM);
+        matcher.match(new MergeContext(), left, right, Color.BLUE);
+
+        assertTrue(lM.hasMatching(rM));
+        assertTrue(lM.getChild(0).getChild(0).hasMatching(rM.getChild(0).getChild(0)));
+    }
+
+    /**
+     * Returns a file containing the classes <code>A</code> and <code>B</code> and a method in one of them.
+     *
+     * @param rev
+     *         the <code>Revision</code> of the tree
+     * @param methodClass
+     *         the index of the class containing the method
+     * @return the root of the tree
+     */
+    private static TestArtifact movedMethodTree(Revision rev, int methodClass) {
+        TestArtifact file = new TestArtifact(rev, "File", NODE);
+        file.addChild(new TestArtifact(rev, "A", CLASS));
+        file.addChild(new TestArtifact(rev, "B", CLASS));
+        file.getChild(methodClass).addChild(method(rev, 2));
+        file.renumber();
+
+        return file;
+    }
+
+    /**
+     * Returns a method containing <code>statements</code> statements with one expression each.
+     *
+     * @param rev
+     *         the <code>Revision</code> of the method
+     * @param statements
+     *         the number of statements
+     * @return the method
+     */
+    private static TestArtifact method(Revision rev, int statements) {
+        TestArtifact method = new TestArtifact(rev, "m", METHOD);
+
+        for (int i = 0; i < statements; i++) {
+            TestArtifact statement = method.addChild(new TestArtifact(rev, "s" + i, NODE));
+            statement.addChild(new TestArtifact(rev, "e" + i, NODE));
+        }
+
+        return method;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.unordered;
+
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.artifact.TestTrees;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.matcher.Matcher;
+import de.fosd.jdime.matcher.matching.Color;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.matcher.unordered.assignmentProblem.HungarianMatcher;
+import de.fosd.jdime.util.Tuple;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.CLASS;
+import static de.fosd.jdime.stats.KeyEnums.Type.METHOD;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the <code>GreedyMatcher</code>.
+ */
+public class GreedyMatcherTest {
+
+    @Test
+    public void testSameScoreAsHungarian() throws Exception {
+        Matching<TestArtifact> exact = match(0);
+        Matching<TestArtifact> greedy = match(1);
+
+        assertEquals(GreedyMatcher.class.getSimpleName(), greedy.getAlgorithm());
+        assertEquals(exact.getScore(), greedy.getScore());
+    }
+
+    @Test
+    public void testDuplicateLabels() throws Exception {
+        int width = 4 * GreedyMatcher.MAX_CANDIDATES;
+        Tuple<TestArtifact, TestArtifact> trees = wideTrees(width);
+        Matching<TestArtifact> greedy = match(trees, 1);
+
+        assertEquals(GreedyMatcher.class.getSimpleName(), greedy.getAlgorithm());
+        assertEquals(1 + 2 * width, greedy.getScore());
+    }
+
+    @Test
+    public void testThreshold() throws Exception {
+        int width = 10;
+
+        Matching<TestArtifact> exact = match(wideTrees(width), width);
+        Matching<TestArtifact> greedy = match(wideTrees(width), width - 1);
+
+        assertEquals(HungarianMatcher.class.getSimpleName(), exact.getAlgorithm());
+        assertEquals(GreedyMatcher.class.getSimpleName(), greedy.getAlgorithm());
+        assertEquals(exact.getScore(), greedy.getScore());
+    }
+
+    /**
+     * Returns two trees whose roots have <code>width</code> unordered children with equal labels. The children
+     * differ only in their own child. The right tree contains the children in a locally permuted order.
+     *
+     * @param width
+     *         the number of children of the roots
+     * @return the trees
+     */
+    private static Tuple<TestArtifact, TestArtifact> wideTrees(int width) {
+        TestArtifact left = new TestArtifact(LEFT, "root", CLASS);
+        TestArtifact right = new TestArtifact(RIGHT, "root", CLASS);
+
+        for (int i = 0; i < width; i++) {
+            int j = (i % 2 == 0) ? Math.min(i + 1, width - 1) : i - 1;
+
+            left.addChild(new TestArtifact(LEFT, "x", METHOD)).addChild(new TestArtifact(LEFT, "k" + i, NODE));
+            right.addChild(new TestArtifact(RIGHT, "x", METHOD)).addChild(new TestArtifact(RIGHT, "k" + j, NODE));
+        }
+
+        left.renumber();
+        right.renumber();
+
+        return Tuple.of(left, right);
+    }
+
+    private static Matching<TestArtifact> match(int greedyThreshold) {
+        return match(TestTrees.simpleTree(), greedyThreshold);
+    }
+
+    private static Matching<TestArtifact> match(Tuple<TestArtifact, TestArtifact> trees, int greedyThreshold) {
+        MergeContext context = new MergeContext();
+
+        context.setGreedyMatcherThreshold(greedyThreshold);
+
+        Matcher<TestArtifact> matcher = new Matcher<>();
+        return matcher.match(context, trees.x, trees.y, Color.BLUE).get(trees.x, trees.y).get();
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.merge.linebased;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.fosd.jdime.JDimeTest;
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests that <code>Diff3</code> produces the same output as <code>git merge-file -p</code>.
+ */
+public class Diff3Test extends JDimeTest {
+
+    private static boolean gitAvailable;
+
+    @BeforeClass
+    public static void checkGit() {
+
+        try {
+            gitAvailable = new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            gitAvailable = false;
+        }
+    }
+
+    /**
+     * Runs <code>git merge-file -q -p</code> on the given files.
+     *
+     * @return the output and the exit code (the number of conflicts, at most 127) of <code>git</code>
+     */
+    private static String[] gitMerge(File left, File base, File right) throws Exception {
+        Process pr = new ProcessBuilder("git", "merge-file", "-q", "-p", left.getPath(), base.getPath(), right.getPath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        String output = IOUtils.toString(pr.getInputStream(), UTF_8);
+        return new String[] { output, String.valueOf(pr.waitFor()) };
+    }
+
+    private static void assertConformance(File left, File base, File right) throws Exception {
+        String[] git = gitMerge(left, base, right);
+        Diff3.Result result = Diff3.merge(read(base), read(left), read(right), left.getPath(), right.getPath());
+
+        assertEquals("Unexpected output for " + left, git[0], result.getText());
+        assertEquals("Unexpected number of conflicts for " + left, Integer.parseInt(git[1]),
+                Math.min(result.getConflicts(), 127));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+
+    /**
+     * Merges every file of the three-way test scenarios and compares the result to the one of <code>git</code>.
+     */
+    @Test
+    public void testScenarios() throws Exception {
+        assumeTrue("git is not available", gitAvailable);
+
+        List<Path> files;
+
+        try (Stream<Path> paths = Files.walk(leftDir.toPath())) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        assertFalse(files.isEmpty());
+
+        for (Path path : files) {
+            Path relative = leftDir.toPath().relativize(path);
+            File base = baseDir.toPath().resolve(relative).toFile();
+            File right = rightDir.toPath().resolve(relative).toFile();
+
+            if (base.isFile() && right.isFile()) {
+                assertConformance(path.toFile(), base, right);
+                assertConformance(right, base, path.toFile());
+            }
+        }
+    }
+
+    /**
+     * Merges the test scenarios with the expected line based results that were produced by <code>git</code>.
+     */
+    @Test
+    public void testExpectedResults() throws Exception {
+        String[] scenarios = { "SimpleTests/Bag/Bag.java", "SimpleTests/Bag/Bag2.java", "SimpleTests/Bag/Bag3.java",
+                               "SimpleTests/ImportMess.java", "SimpleTests/ExprTest.java",
+                               "SimpleTests/DeletionInsertion.java", "SimpleTests/VariableDeclaration.java",
+                               "SimpleTests/ChangedMethod.java", "SimpleTests/ChangedMethod2.java" };
+
+        for (String scenario : scenarios) {
+            File left = file(leftDir, scenario);
+            File base = file(baseDir, scenario);
+            File right = file(rightDir, scenario);
+
+            Diff3.Result result = Diff3.merge(read(base), read(left), read(right), left.getPath(), right.getPath());
+            String expected = normalize(read(file("threeway", "linebased", scenario)));
+
+            assertEquals("Unexpected output for " + scenario, expected, normalize(result.getText()));
+        }
+    }
+
+    /**
+     * Merges texts exercising identical changes, adjacent changes, refined and joined conflicts, missing final line
+     * terminators and CRLF line endings.
+     */
+    @Test
+    public void testEdgeCases() throws Exception {
+        assumeTrue("git is not available", gitAvailable);
+
+        String[][] cases = {
+                { "a\nb\nc\n", "a\nB\nc\n", "a\nB\nc\n" },
+                { "a\nb\nc\nd\n", "a\nB\nc\nd\n", "a\nb\nC\nd\n" },
+                { "a\nb\nc\nd\ne\nf\ng\nh\n", "a\nX\nc\nd\ne\nf\nY\nh\n", "a\nZ\nc\nd\ne\nf\nW\nh\n" },
+                { "a\nb\nc\n{\n}\n\nd\ne\n", "a\nX\nc\n{\n}\n\nY\ne\n", "a\nZ\nc\n{\n}\n\nW\ne\n" },
+                { "a\nb\nc\nd\n", "a\nx\ny\nz\nd\n", "a\nx\nq\nz\nd\n" },
+                { "a\nb", "a\nc", "a\nd" },
+                { "a\r\nb\r\nc\r\n", "a\r\nx\r\nc\r\n", "a\r\ny\r\nc\r\n" },
+                { "", "a\n", "b\n" },
+                { "a\n", "", "a\nb\n" }
+        };
+
+        List<String> failures = new ArrayList<>();
+        Path dir = Files.createTempDirectory("jdime-diff3");
+        dir.toFile().deleteOnExit();
+
+        for (String[] c : cases) {
+            File base = write(dir, "base", c[0]);
+            File left = write(dir, "left", c[1]);
+            File right = write(dir, "right", c[2]);
+
+            try {
+                assertConformance(left, base, right);
+            } catch (AssertionError e) {
+                failures.add(e.getMessage());
+            }
+        }
+
+        assertTrue(String.join(System.lineSeparator(), failures), failures.isEmpty());
+    }
+
+    /**
+     * Checks the conflict regions and the mapping of the lines of the revisions to offsets in the merged text.
+     */
+    @Test
+    public void testRegions() {
+        Diff3.Result result = Diff3.merge("a\nb\nc\nd\ne\n", "a\nB\nC\nd\ne\n", "a\nX\nY\nd\nE\n", "l", "r");
+        String text = result.getText();
+
+        assertEquals("a\n<<<<<<< l\nB\nC\n=======\nX\nY\n>>>>>>> r\nd\nE\n", text);
+
+        List<Diff3.Region> conflicts = result.getConflictRegions();
+
+        assertEquals(1, conflicts.size());
+        assertEquals(2, conflicts.get(0).getStart());
+        assertEquals(38, conflicts.get(0).getEnd());
+
+        assertEquals(0, result.leftOffset(0, true));
+        assertEquals(2, result.leftOffset(1, true));
+        assertEquals(-1, result.leftOffset(2, true));
+        assertEquals(38, result.leftOffset(3, false));
+        assertEquals(38, result.rightOffset(3, true));
+        assertEquals(40, result.rightOffset(4, false));
+        assertEquals(text.length(), result.leftOffset(5, false));
+        assertEquals(-1, result.leftOffset(6, false));
+    }
+
+    private static File write(Path dir, String name, String content) throws IOException {
+        File file = dir.resolve(name).toFile();
+
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+        file.deleteOnExit();
+
+        return file;
+    }
+}
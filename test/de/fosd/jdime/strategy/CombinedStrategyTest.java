@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.LabelTable;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.config.merge.MergeType;
+import de.fosd.jdime.operations.MergeOperation;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>CombinedStrategy</code>.
+ */
+public class CombinedStrategyTest extends JDimeTest {
+
+    private static final String base = "class A {\n" +
+                                       "\n" +
+                                       "    int a() {\n" +
+                                       "        return 1;\n" +
+                                       "    }\n" +
+                                       "\n" +
+                                       "    int b() {\n" +
+                                       "        return 1;\n" +
+                                       "    }\n" +
+                                       "\n" +
+                                       "    int c() {\n" +
+                                       "        return 1;\n" +
+                                       "    }\n" +
+                                       "}\n";
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+    }
+
+    @Test
+    public void testSpeculativeLinebasedResult() throws Exception {
+        String left = base.replace("int a() {\n        return 1;", "int a() {\n        return 2;");
+        String right = base.replace("int c() {\n        return 1;", "int c() {\n        return 2;");
+
+        assertSpeculativeEqualsLazy(scenario("A.java", left, base, right));
+    }
+
+    @Test
+    public void testSpeculativeStructuredResult() throws Exception {
+        // both revisions add a method at the same position, only the structured strategy merges them
+        String left = base.replace("\n}\n", "\n\n    int d() {\n        return 1;\n    }\n}\n");
+        String right = base.replace("\n}\n", "\n\n    int e() {\n        return 1;\n    }\n}\n");
+
+        String output = assertSpeculativeEqualsLazy(scenario("A.java", left, base, right));
+
+        assertTrue(output.contains("int d()") && output.contains("int e()"));
+        assertFalse(output.contains("<<<<<<<"));
+    }
+
+    @Test
+    public void testSpeculativeConflict() throws Exception {
+        String left = base.replace("int b() {\n        return 1;", "int b() {\n        return 2;");
+        String right = base.replace("int b() {\n        return 1;", "int b() {\n        return 3;");
+
+        assertTrue(assertSpeculativeEqualsLazy(scenario("A.java", left, base, right)).contains("<<<<<<<"));
+    }
+
+    @Test
+    public void testNoSpeculationWithFileMergeThreads() throws Exception {
+        MergeContext context = context();
+        context.setCombinedSpeculative(true);
+        context.setFileMergeThreads(4);
+
+        assertFalse(CombinedStrategy.isSpeculative(context));
+
+        context.setFileMergeThreads(0);
+        assertFalse(CombinedStrategy.isSpeculative(context));
+
+        context.setCombinedSpeculative(false);
+        context.setFileMergeThreads(1);
+        assertFalse(CombinedStrategy.isSpeculative(context));
+    }
+
+    /**
+     * Asserts that the speculative combined merge of the given <code>files</code> produces the same output as the
+     * combined merge running the structured strategy only after the line based one produced conflicts.
+     *
+     * @param files
+     *         the left, base and right <code>File</code>
+     * @return the merge result
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static String assertSpeculativeEqualsLazy(File[] files) throws Exception {
+        String lazy = merge(context(), "combined", files);
+
+        MergeScenario<FileArtifact> triple = new MergeScenario<>(MergeType.THREEWAY, new FileArtifact(LEFT, files[0]),
+                new FileArtifact(BASE, files[1]), new FileArtifact(RIGHT, files[2]));
+        MergeOperation<FileArtifact> operation = new MergeOperation<>(triple, null, null, null);
+
+        // the speculative merge is run directly, the CombinedStrategy only uses it if there is a processor to spare
+        MergeContext speculative;
+
+        LabelTable.beginRun();
+
+        try {
+            speculative = CombinedStrategy.mergeSpeculatively(operation, context());
+        } finally {
+            LabelTable.endRun();
+        }
+
+        assertEquals(lazy, speculative.getStdIn());
+
+        return lazy;
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> writing the merge result to the output file.
+     *
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context() {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+
+        return context;
+    }
+}
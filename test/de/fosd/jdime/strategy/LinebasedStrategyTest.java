@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for the <code>LinebasedStrategy</code>.
+ */
+public class LinebasedStrategyTest extends JDimeTest {
+
+    private static boolean gitAvailable;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+
+        try {
+            gitAvailable = new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            gitAvailable = false;
+        }
+    }
+
+    @Test
+    public void testMissingFinalNewline() throws Exception {
+        File[] files = scenario("A.java", "A\nb\nc", "a\nb\nc", "a\nb\nC");
+
+        assertEquals("A\nb\nC", merge(context(LinebasedBackend.INTERNAL), "linebased", files));
+        assertBackendsAgree(files);
+    }
+
+    @Test
+    public void testCRLF() throws Exception {
+        File[] files = scenario("A.java", "A\r\nb\r\nc\r\n", "a\r\nb\r\nc\r\n", "a\r\nb\r\nC\r\n");
+
+        assertEquals("A\r\nb\r\nC\r\n", merge(context(LinebasedBackend.INTERNAL), "linebased", files));
+        assertBackendsAgree(files);
+    }
+
+    @Test
+    public void testConflict() throws Exception {
+        File[] files = scenario("A.java", "a\nL\nc", "a\nb\nc", "a\nR\nc");
+        String output = merge(context(LinebasedBackend.INTERNAL), "linebased", files);
+
+        assertTrue(output.startsWith("a\n<<<<<<< " + files[0].getPath() + "\nL\n=======\nR\n>>>>>>> "));
+        assertTrue(output.endsWith("\nc"));
+        assertBackendsAgree(files);
+    }
+
+    @Test
+    public void testConflictAtEnd() throws Exception {
+        assertBackendsAgree(scenario("A.java", "a\nL", "a\nb\n", "a\nR\n"));
+    }
+
+    /**
+     * Characters that are not ASCII are decoded and written in the platform default charset. They must survive the
+     * merge unchanged with both backends.
+     */
+    @Test
+    public void testPlatformCharset() throws Exception {
+        Charset charset = Charset.defaultCharset();
+        String text = "// äöüß\n";
+
+        assumeTrue("The platform charset can not encode the test characters.", charset.newEncoder().canEncode(text));
+
+        File[] files = scenario("A.java", text + "A\nb\nc\n", text + "a\nb\nc\n", text + "a\nb\nC\n");
+
+        for (File file : files) {
+            Files.write(file.toPath(), new String(Files.readAllBytes(file.toPath()), UTF_8).getBytes(charset));
+        }
+
+        // the output is read as UTF-8 by the merge helper, decode the expected bytes the same way
+        String expected = new String((text + "A\nb\nC\n").getBytes(charset), UTF_8);
+
+        assertEquals(expected, merge(context(LinebasedBackend.INTERNAL), "linebased", files));
+        assertBackendsAgree(files);
+    }
+
+    /**
+     * Asserts that merging the given files using <code>git</code> produces exactly the same output as merging them
+     * in-process.
+     *
+     * @param files
+     *         the left, base and right file
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static void assertBackendsAgree(File... files) throws Exception {
+        assumeTrue("git is not available", gitAvailable);
+
+        String internal = merge(context(LinebasedBackend.INTERNAL), "linebased", files);
+        String git = merge(context(LinebasedBackend.GIT), "linebased", files);
+
+        assertEquals(git, internal);
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> writing the merge result to the output file using the given backend.
+     *
+     * @param backend
+     *         the <code>LinebasedBackend</code> to use
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context(LinebasedBackend backend) {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+        context.setLinebasedBackend(backend);
+
+        return context;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>SemistructuredStrategy</code>.
+ */
+public class SemistructuredStrategyTest extends JDimeTest {
+
+    private static final String base = "package p;\n" +
+                                       "\n" +
+                                       "import java.util.List;\n" +
+                                       "\n" +
+                                       "class A {\n" +
+                                       "\n" +
+                                       "    // a comment\n" +
+                                       "    int m(int p) {\n" +
+                                       "        int a = 0;\n" +
+                                       "        int b = 0;\n" +
+                                       "        return a + b + p;\n" +
+                                       "    }\n" +
+                                       "\n" +
+                                       "    int m(String p) {\n" +
+                                       "        int a = 1;\n" +
+                                       "        int b = 1;\n" +
+                                       "        return a + b;\n" +
+                                       "    }\n" +
+                                       "\n" +
+                                       "    int n( ) { return 0 ; }\n" +
+                                       "}\n";
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+    }
+
+    @Test
+    public void testConflictInMethod() throws Exception {
+        String left = base.replace("int a = 0;", "int a = 2;");
+        String right = base.replace("int b = 0;", "int b = 3;");
+        File[] files = scenario("A.java", left, base, right);
+
+        assertTrue(merge(context(), "linebased", files).contains("<<<<<<<"));
+
+        // only the method is merged structurally, its formatting and the rest of the file are kept
+        String expected = base.replace("int a = 0;", "int a = 2;").replace("int b = 0;", "int b = 3;");
+
+        assertEquals(expected, merge(context(), "semistructured", files));
+    }
+
+    @Test
+    public void testOverloads() throws Exception {
+        // the overloads of m match each other, the base of the changed one must be told apart by its header
+        String left = base.replace("int a = 1;", "int a = 2;");
+        String right = base.replace("int b = 1;", "int b = 3;");
+        File[] files = scenario("A.java", left, base, right);
+
+        assertTrue(merge(context(), "linebased", files).contains("<<<<<<<"));
+
+        String expected = base.replace("int a = 1;", "int a = 2;").replace("int b = 1;", "int b = 3;");
+
+        assertEquals(expected, merge(context(), "semistructured", files));
+    }
+
+    @Test
+    public void testImportConflict() throws Exception {
+        String left = base.replace("import java.util.List;", "import java.util.List;\nimport java.util.Map;");
+        String right = base.replace("import java.util.List;", "import java.util.List;\nimport java.util.Set;");
+        File[] files = scenario("A.java", left, base, right);
+
+        assertTrue(merge(context(), "linebased", files).contains("<<<<<<<"));
+
+        // the conflict is not enclosed by a declaration, the whole file is merged structurally
+        String expected = merge(context(), "structured", files);
+
+        assertEquals(expected, merge(context(), "semistructured", files));
+    }
+
+    @Test
+    public void testCRLF() throws Exception {
+        String left = base.replace("int a = 0;", "int a = 2;");
+        String right = base.replace("int b = 0;", "int b = 3;");
+        File[] files = scenario("A.java", crlf(left), crlf(base), crlf(right));
+
+        String expected = crlf(base.replace("int a = 0;", "int a = 2;").replace("int b = 0;", "int b = 3;"));
+
+        assertEquals(expected, merge(context(), "semistructured", files));
+    }
+
+    @Test
+    public void testLoneCR() throws Exception {
+        String left = base.replace("int a = 0;", "int a = 2;");
+        String right = base.replace("int b = 0;", "int b = 3;");
+        File[] files = scenario("A.java", cr(left), cr(base), cr(right));
+
+        // the line numbers of the parser do not match the lines of Diff3, the whole file is merged structurally
+        String expected = merge(context(), "structured", files);
+
+        assertEquals(expected, merge(context(), "semistructured", files));
+    }
+
+    @Test
+    public void testTimeBudgetExceeded() throws Exception {
+        // the class is large enough for parsing and matching to take longer than the budget of one millisecond
+        File[] files = scenario("A.java", source(2), source(1), source(3));
+        String expected = merge(context(), "linebased", files);
+
+        MergeContext context = context();
+        context.collectStatistics(true);
+        context.setTimeBudget(1);
+
+        String output = merge(context, "semistructured", files);
+
+        assertTrue(output.contains("<<<<<<<"));
+        assertEquals(expected, output);
+        assertEquals(1, context.getStatistics().getScenarioStatistics().size());
+
+        MergeScenarioStatistics statistics = context.getStatistics().getScenarioStatistics().get(0);
+        assertEquals(KeyEnums.Degradation.LINEBASED, statistics.getDegradation());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        String left = base.replace("int a = 0;", "int a = 2;");
+        String right = base.replace("int b = 0;", "int b = 3;");
+        File[] files = scenario("A.java", left, base, right);
+
+        MergeContext context = context();
+        context.collectStatistics(true);
+
+        merge(context, "semistructured", files);
+
+        assertEquals(1, context.getStatistics().getScenarioStatistics().size());
+
+        MergeScenarioStatistics statistics = context.getStatistics().getScenarioStatistics().get(0);
+
+        assertEquals(KeyEnums.Degradation.NONE, statistics.getDegradation());
+        assertEquals(3, statistics.getParseCacheHits() + statistics.getParseCacheMisses());
+        assertEquals(0, statistics.getConflicts());
+
+        // the AST statistics of the declarations merged structurally are recorded
+        assertTrue(statistics.getLevelStatistics(MergeScenario.LEFT, KeyEnums.Level.METHOD).getTotal() > 0);
+        assertTrue(statistics.getLevelStatistics(MergeScenario.RIGHT, KeyEnums.Level.METHOD).getTotal() > 0);
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> writing the merge result to the output file.
+     *
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context() {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+
+        return context;
+    }
+
+    /**
+     * Replaces the line separators of the given <code>content</code> with CRLF.
+     *
+     * @param content
+     *         the content using LF line separators
+     * @return the content using CRLF line separators
+     */
+    private static String crlf(String content) {
+        return content.replace("\n", "\r\n");
+    }
+
+    /**
+     * Replaces the line separators of the given <code>content</code> with CR.
+     *
+     * @param content
+     *         the content using LF line separators
+     * @return the content using CR line separators
+     */
+    private static String cr(String content) {
+        return content.replace("\n", "\r");
+    }
+
+    /**
+     * Returns the source of a class with many methods. The first method initializes a variable with
+     * <code>value</code>.
+     *
+     * @param value
+     *         the value to use
+     * @return the source code
+     */
+    private static String source(int value) {
+        StringBuilder b = new StringBuilder("class A {\n");
+
+        for (int i = 0; i < 200; i++) {
+            b.append(String.format("    int m%d(int p) {\n", i));
+            b.append(String.format("        int a = %d;\n", i == 0 ? value : i));
+            b.append(String.format("        return a + p * %d;\n", i));
+            b.append("    }\n");
+        }
+
+        return b.append("}\n").toString();
+    }
+}
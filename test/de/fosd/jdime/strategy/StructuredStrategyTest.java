@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2015 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the <code>StructuredStrategy</code>.
+ */
+public class StructuredStrategyTest extends JDimeTest {
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("SEVERE");
+    }
+
+    @Test
+    public void testTimeBudgetExceeded() throws Exception {
+        // the class is large enough for the matching to take longer than the budget of one millisecond
+        File[] files = scenario("A.java", source(2), source(1), source(3));
+        String expected = merge(context(), "linebased", files);
+
+        MergeContext context = context();
+        context.collectStatistics(true);
+        context.setTimeBudget(1);
+
+        String output = merge(context, "structured", files);
+
+        assertEquals(expected, output);
+        assertEquals(1, context.getStatistics().getScenarioStatistics().size());
+
+        MergeScenarioStatistics statistics = context.getStatistics().getScenarioStatistics().get(0);
+        assertEquals(KeyEnums.Degradation.LINEBASED, statistics.getDegradation());
+    }
+
+    private static final String spliceBase = "/* header */\n" +
+                                             "package p;\n" +
+                                             "\n" +
+                                             "// a class\n" +
+                                             "class A {\n" +
+                                             "\n" +
+                                             "    /** Documentation of m. */\n" +
+                                             "    int m( int p ) { return p ; }   // trailing comment\n" +
+                                             "\n" +
+                                             "    // comment before n\n" +
+                                             "    int n(int p) {\n" +
+                                             "        return  p+1;\n" +
+                                             "    }\n" +
+                                             "}\n";
+
+    @Test
+    public void testSpliceUnchanged() throws Exception {
+        File[] files = scenario("A.java", spliceBase, spliceBase, spliceBase);
+
+        MergeContext context = context();
+        context.setSplicePrettyPrint(true);
+
+        assertEquals(spliceBase, merge(context, "structured", files));
+    }
+
+    @Test
+    public void testSpliceChangedMethod() throws Exception {
+        String right = spliceBase.replace("return  p+1;", "return  p+2;");
+        File[] files = scenario("A.java", spliceBase, spliceBase, right);
+
+        MergeContext context = context();
+        context.setSplicePrettyPrint(true);
+
+        // only the changed expression is pretty-printed, the rest of the method and its surroundings are copied
+        String expected = spliceBase.replace("return  p+1;", "return  p + 2;");
+
+        assertEquals(expected, merge(context, "structured", files));
+    }
+
+    /**
+     * Returns a new <code>MergeContext</code> writing the merge result to the output file.
+     *
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context() {
+        MergeContext context = new MergeContext();
+
+        context.setQuiet(true);
+        context.setPretend(false);
+
+        return context;
+    }
+
+    /**
+     * Returns the source of a class with many methods. The first method initializes a variable with
+     * <code>value</code>.
+     *
+     * @param value
+     *         the value to use
+     * @return the source code
+     */
+    private static String source(int value) {
+        StringBuilder b = new StringBuilder("class A {\n");
+
+        for (int i = 0; i < 200; i++) {
+            b.append(String.format("    int m%d(int p) {\n", i));
+            b.append(String.format("        int a = %d;\n", i == 0 ? value : i));
+            b.append(String.format("        return a + p * %d;\n", i));
+            b.append("    }\n");
+        }
+
+        return b.append("}\n").toString();
+    }
+}